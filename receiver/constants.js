@@ -1,4 +1,7 @@
 var NAMESPACE = 'urn:x-cast:de.martinmatysiak.mapracer';
+// Senders that ask for it during login send their positions here, so that
+// they don't hold up other messages on the main namespace
+var POSITION_NAMESPACE = 'urn:x-cast:de.martinmatysiak.mapracer.position';
 var MIN_PLAYERS = 1;
 var COUNTDOWN_DURATION = 5;
 var SCORE_DURATION = 10;
@@ -11,10 +14,13 @@ var MessageType = {
   LOGOUT: 'logout',
   REQUEST: 'request',
   POSITION: 'position',
+  PING: 'ping',
   // outgoing messages
   GAME_STATE: 'game_state',
   GAME_SCORES: 'game_scores',
-  PLAYER_STATE: 'player_state'
+  GAME_SCORES_DELTA: 'game_scores_delta',
+  PLAYER_STATE: 'player_state',
+  PONG: 'pong'
 };
 
 var GameState = {
@@ -24,6 +30,14 @@ var GameState = {
   SCORES: 'scores'
 };
 
+var PositionEncoding = {
+  JSON: 'json',
+  E7: 'e7',
+  E7_DELTA: 'e7_delta'
+};
+
+var E7 = 1e7;
+
 var PlayerState = {
   ACTIVE: 'active',
   WAITING: 'waiting',
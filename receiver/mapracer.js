@@ -40,6 +40,9 @@ MapRacer = function() {
   /** @type {cast.receiver.CastMessageBus} */
   this.messageBus = null;
 
+  /** @type {cast.receiver.CastMessageBus} */
+  this.positionBus = null;
+
   /** @type {google.maps.Map} */
   this.map = null;
 
@@ -71,6 +74,13 @@ MapRacer = function() {
    */
   this.senders = {};
 
+  /**
+   * The leaderboard entries as last transmitted to the senders, by Player ID.
+   * Used to only send the changes in between full score broadcasts.
+   * @private @type {Object.<string, Object>}
+   */
+  this.lastScores_ = {};
+
   this.initializeCast_();
   this.initializeMap_();
 };
@@ -86,6 +96,10 @@ MapRacer.prototype.initializeCast_ = function() {
       cast.receiver.CastMessageBus.MessageType.JSON);
   this.messageBus.onMessage = this.onCastMessage.bind(this);
 
+  this.positionBus = this.receiverManager.getCastMessageBus(POSITION_NAMESPACE,
+      cast.receiver.CastMessageBus.MessageType.JSON);
+  this.positionBus.onMessage = this.onPositionMessage.bind(this);
+
   this.receiverManager.start();
 };
 
@@ -116,17 +130,44 @@ MapRacer.prototype.broadcastState_ = function() {
 };
 
 
-/** Transmits a list of the full leaderboard to all players. */
-MapRacer.prototype.broadcastScores = function() {
+/**
+ * @return {Array.<Object>} The ordered leaderboard including finishing times.
+ * @private
+ */
+MapRacer.prototype.getScores_ = function() {
   // Append finishing times if they exist. This is kind of a
   // messy solution, TODO.
-  var scores = this.leaderboard.getOrderedList().map(function(player) {
+  return this.leaderboard.getOrderedList().map(function(player) {
     if (!!this.players[player.id].time) {
       player.time = this.players[player.id].time;
     }
 
     return player;
   }, this);
+};
+
+
+/**
+ * Remembers the given scores as the state that all senders know about.
+ * @param {Array.<Object>} scores The ordered leaderboard.
+ * @private
+ */
+MapRacer.prototype.rememberScores_ = function(scores) {
+  this.lastScores_ = {};
+  scores.forEach(function(player, rank) {
+    this.lastScores_[player.id] = {
+      rank: rank,
+      name: player.name,
+      time: player.time
+    };
+  }, this);
+};
+
+
+/** Transmits a list of the full leaderboard to all players. */
+MapRacer.prototype.broadcastScores = function() {
+  var scores = this.getScores_();
+  this.rememberScores_(scores);
 
   this.messageBus.broadcast({
     type: MessageType.GAME_SCORES,
@@ -135,6 +176,49 @@ MapRacer.prototype.broadcastScores = function() {
 };
 
 
+/**
+ * Transmits only the leaderboard entries that changed since the last
+ * broadcast, keyed by the players' IDs. As the scores of racing players change
+ * with every step, a player is only included if the senders would show
+ * something different: a new rank, a new name or a finishing time. The score
+ * that comes along is only up to date for the included players.
+ */
+MapRacer.prototype.broadcastScoreChanges = function() {
+  var scores = this.getScores_();
+  var previous = this.lastScores_;
+  var changes = [];
+
+  scores.forEach(function(player, rank) {
+    var last = previous[player.id];
+    if (!last || last.rank != rank || last.time !== player.time ||
+        last.name != player.name) {
+      changes.push({
+        id: player.id,
+        name: (!last || last.name != player.name) ? player.name : undefined,
+        rank: rank,
+        score: player.score,
+        time: player.time
+      });
+    }
+  });
+
+  this.rememberScores_(scores);
+  var removed = Object.keys(previous).filter(function(id) {
+    return !(id in this.lastScores_);
+  }, this);
+
+  if (changes.length == 0 && removed.length == 0) {
+    return;
+  }
+
+  this.messageBus.broadcast({
+    type: MessageType.GAME_SCORES_DELTA,
+    changes: changes,
+    removed: removed
+  });
+};
+
+
 /** @return {number} The number of players that are alive. */
 MapRacer.prototype.getPlayerCount = function() {
   var isAlive = function(playerId) {
@@ -162,11 +246,14 @@ MapRacer.prototype.setState = function(state) {
     case GameState.LOAD:
       this.infoEl.innerHTML = 'Get Ready!';
       this.countdown.start(COUNTDOWN_DURATION);
+      // Announce the start in advance so that senders can start on their own
+      // clock instead of waiting for the RACE state to arrive. The countdown
+      // finishes one tick after showing the last number.
+      this.race.startTime = Date.now() + (COUNTDOWN_DURATION + 1) * S_TO_MS;
       break;
     case GameState.RACE:
       this.broadcastScores();
       this.splashEl.style.opacity = '0';
-      this.race.startTime = Date.now();
       this.timerInterval_ = setInterval(this.updateTimer.bind(this), 10);
       break;
     case GameState.SCORES:
@@ -286,27 +373,28 @@ MapRacer.prototype.onStreetViewLocation = function(id, panorama, status) {
 /** Will be called when the order of players has changed in the leaderboard. */
 MapRacer.prototype.onLeaderboardChanged = function() {
   if (this.state === GameState.RACE) {
-    this.broadcastScores();
+    this.broadcastScoreChanges();
   }
 };
 
 
 /** @param {cast.receiver.CastMessageBus.Event} message The incoming message. */
 MapRacer.prototype.onCastMessage = function(message) {
-  console.dir(message);
-
   var data = message.data;
+  if (data.type === MessageType.PING) {
+    // Answer right away, anything else would only distort the measurement
+    this.onPing(message.senderId, data);
+    return;
+  }
+
+  console.dir(message);
   var playerId = this.senders[message.senderId];
   switch (data.type) {
     case MessageType.REQUEST:
       this.onGameRequest(playerId, data);
       break;
     case MessageType.POSITION:
-      if (playerId in this.players) {
-        var location = new google.maps.LatLng(
-            data.location.lat, data.location.lng);
-        this.players[playerId].onPosition(location);
-      }
+      this.onPosition_(playerId, data);
       break;
     case MessageType.LOGIN:
       this.onLogin(message.senderId, data);
@@ -318,6 +406,32 @@ MapRacer.prototype.onCastMessage = function(message) {
 };
 
 
+/**
+ * Handles messages on the position namespace, which only carries positions.
+ * @param {cast.receiver.CastMessageBus.Event} message The incoming message.
+ */
+MapRacer.prototype.onPositionMessage = function(message) {
+  if (message.data.type === MessageType.POSITION) {
+    this.onPosition_(this.senders[message.senderId], message.data);
+  }
+};
+
+
+/**
+ * @param {string} playerId The player's ID.
+ * @param {Object} payload The position message in any of the encodings.
+ * @private
+ */
+MapRacer.prototype.onPosition_ = function(playerId, payload) {
+  if (playerId in this.players) {
+    var location = this.players[playerId].decodePosition(payload);
+    if (!!location) {
+      this.players[playerId].onPosition(location);
+    }
+  }
+};
+
+
 /**
  * @param {string} playerId The player's ID.
  * @param {Object} payload The message payload.
@@ -344,6 +458,21 @@ MapRacer.prototype.onGameRequest = function(playerId, payload) {
 };
 
 
+/**
+ * Echoes a latency probe back to the sender it came from.
+ * @param {string} senderId The sender's cast ID.
+ * @param {Object} payload The ping message.
+ */
+MapRacer.prototype.onPing = function(senderId, payload) {
+  this.messageBus.send(senderId, {
+    type: MessageType.PONG,
+    id: payload.id,
+    sent_at: payload.sent_at,
+    received_at: Date.now()
+  });
+};
+
+
 /**
  * After connecting, the sender has to specify its ID and possibly name.
  * Using the senderId does not work with Android devices as the IDs change
@@ -363,8 +492,23 @@ MapRacer.prototype.onLogin = function(senderId, payload) {
         payload.name, senderId);
   }
 
+  // Every session starts with a fresh negotiation of the position encoding
+  // and namespace
+  this.players[payload.id].setPositionNamespace(payload.position_namespace);
+  this.players[payload.id].setPositionEncoding(payload.position_encoding);
+
   this.senders[senderId] = payload.id;
   this.broadcastState_();
+
+  // Senders only receive changes to the leaderboard during the race, so
+  // (re)joining players need a full copy first.
+  if (this.state == GameState.RACE || this.state == GameState.SCORES) {
+    this.messageBus.send(senderId, {
+      type: MessageType.GAME_SCORES,
+      scores: this.getScores_()
+    });
+  }
+
   this.maybeStartRace();
 };
 
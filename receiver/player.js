@@ -18,6 +18,18 @@ Player = function(id, game, opt_name, opt_senderId) {
   this.senderId = opt_senderId || null;
   this.suspendedState_ = null;
 
+  /** @type {PositionEncoding} */
+  this.positionEncoding = PositionEncoding.JSON;
+
+  /** @type {?string} */
+  this.positionNamespace = null;
+
+  /**
+   * The last position received in one of the E7 encodings, as [lat, lng].
+   * @private @type {Array.<number>}
+   */
+  this.lastE7_ = null;
+
   /** Determine the player's individual color */
   this.hue = Math.round(Math.random() * 360);
   this.colorDark = 'hsl(' + this.hue + ', 80%, 25%)';
@@ -91,6 +103,54 @@ Player.prototype.isActive = function() {
 };
 
 
+/**
+ * Accepts positions on the namespace requested by the sender, if we support
+ * it. The sender learns about it with the next state update.
+ * @param {string=} opt_namespace The requested namespace.
+ */
+Player.prototype.setPositionNamespace = function(opt_namespace) {
+  this.positionNamespace = opt_namespace === POSITION_NAMESPACE ?
+      opt_namespace : null;
+};
+
+
+/**
+ * Switches to the position encoding requested by the sender, if we support it,
+ * and lets the sender know which encoding will be accepted.
+ * @param {string=} opt_encoding The requested encoding.
+ */
+Player.prototype.setPositionEncoding = function(opt_encoding) {
+  var supported = [PositionEncoding.E7, PositionEncoding.E7_DELTA];
+  this.positionEncoding = supported.indexOf(opt_encoding) >= 0 ?
+      opt_encoding : PositionEncoding.JSON;
+  this.lastE7_ = null;
+  this.sendState_();
+};
+
+
+/**
+ * @param {Object} payload A position message in any of the encodings.
+ * @return {google.maps.LatLng} The decoded position or null if it can't be
+ *     decoded (e.g. a delta without a preceding full position).
+ */
+Player.prototype.decodePosition = function(payload) {
+  if (!!payload.location) {
+    return new google.maps.LatLng(payload.location.lat, payload.location.lng);
+  }
+
+  if (!!payload.p) {
+    this.lastE7_ = [payload.p[0], payload.p[1]];
+  } else if (!!payload.d && !!this.lastE7_) {
+    this.lastE7_ = [this.lastE7_[0] + payload.d[0],
+                    this.lastE7_[1] + payload.d[1]];
+  } else {
+    return null;
+  }
+
+  return new google.maps.LatLng(this.lastE7_[0] / E7, this.lastE7_[1] / E7);
+};
+
+
 /** @param {google.maps.LatLng} position The player's new position. */
 Player.prototype.onPosition = function(position) {
   if (this.state == PlayerState.ACTIVE) {
@@ -122,9 +182,17 @@ Player.prototype.setSenderId = function(senderId) {
   this.senderId = senderId;
 
   // Resend the player's state to make sure it has the right data
+  this.sendState_();
+};
+
+
+/** @private */
+Player.prototype.sendState_ = function() {
   this.game.messageBus.send(this.senderId, {
     type: MessageType.PLAYER_STATE,
-    state: this.state
+    state: this.state,
+    position_encoding: this.positionEncoding,
+    position_namespace: this.positionNamespace
   });
 };
 
@@ -170,13 +238,10 @@ Player.prototype.setState = function(state) {
       this.marker.setIcon(icon);
       this.game.leaderboard.update(this.id, -1 / this.time,
           this.name + ' (' + formatTime(this.time) + ')');
-      this.game.broadcastScores();
+      this.game.broadcastScoreChanges();
       this.game.maybeFinishRace();
       break;
   }
 
-  this.game.messageBus.send(this.senderId, {
-    type: MessageType.PLAYER_STATE,
-    state: this.state
-  });
+  this.sendState_();
 };
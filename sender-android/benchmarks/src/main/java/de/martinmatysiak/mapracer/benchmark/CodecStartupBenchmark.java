@@ -0,0 +1,73 @@
+package de.martinmatysiak.mapracer.benchmark;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import de.martinmatysiak.mapracer.data.GameScoresMessage;
+import de.martinmatysiak.mapracer.data.GameStateMessage;
+import de.martinmatysiak.mapracer.data.LoginMessage;
+import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.PlayerStateMessage;
+import de.martinmatysiak.mapracer.data.PongMessage;
+
+/**
+ * Cold start cost of the message codecs: the time until the first login has been encoded and the
+ * first messages of each type the receiver sends have been decoded, in a fresh JVM every time.
+ * The JSON is given literally, so that nothing is loaded or initialized before the measurement.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(20)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class CodecStartupBenchmark {
+
+    private static final String[] INBOUND = {
+            "{\"type\":\"player_state\",\"state\":\"waiting\",\"position_encoding\":\"e7_delta\"}",
+            "{\"type\":\"game_state\",\"players\":2,\"state\":\"race\",\"race\":{"
+                    + "\"start_location\":{\"lat\":37.413084,\"lng\":-122.069217},"
+                    + "\"start_time\":1412345678901,"
+                    + "\"target_location\":{\"lat\":37.420283,\"lng\":-122.083961},"
+                    + "\"target_title\":\"Android\"}}",
+            "{\"type\":\"pong\",\"id\":1,\"sent_at\":123456789,\"received_at\":1412345678901}",
+            "{\"type\":\"game_scores\",\"scores\":["
+                    + "{\"id\":\"a\",\"name\":\"Player 1\",\"score\":1.5,\"time\":81234},"
+                    + "{\"id\":\"b\",\"name\":\"Player 2\",\"score\":null,\"time\":0}]}"
+    };
+
+    private static final Class<?>[] INBOUND_TYPES = {
+            PlayerStateMessage.class,
+            GameStateMessage.class,
+            PongMessage.class,
+            GameScoresMessage.class
+    };
+
+    @Benchmark
+    public void generated(Blackhole blackhole) {
+        blackhole.consume(new LoginMessage.Builder().withId("a").withName("Player 1").build()
+                .toJson());
+        for (String json : INBOUND) {
+            blackhole.consume(Message.fromJson(json));
+        }
+    }
+
+    @Benchmark
+    public void gson(Blackhole blackhole) {
+        Gson gson = Message.getConfiguredGson();
+        blackhole.consume(gson.toJson(new LoginMessage.Builder().withId("a").withName("Player 1")
+                .build()));
+        for (int i = 0; i < INBOUND.length; i++) {
+            blackhole.consume(gson.fromJson(INBOUND[i], INBOUND_TYPES[i]));
+        }
+    }
+}
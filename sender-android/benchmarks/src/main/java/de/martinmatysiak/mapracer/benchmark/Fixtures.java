@@ -0,0 +1,148 @@
+package de.martinmatysiak.mapracer.benchmark;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import de.martinmatysiak.mapracer.data.GameScoresDeltaMessage;
+import de.martinmatysiak.mapracer.data.GameScoresMessage;
+import de.martinmatysiak.mapracer.data.GameState;
+import de.martinmatysiak.mapracer.data.GameStateMessage;
+import de.martinmatysiak.mapracer.data.GeoPoint;
+import de.martinmatysiak.mapracer.data.LoginMessage;
+import de.martinmatysiak.mapracer.data.LogoutMessage;
+import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.MessageType;
+import de.martinmatysiak.mapracer.data.PlayerState;
+import de.martinmatysiak.mapracer.data.PlayerStateMessage;
+import de.martinmatysiak.mapracer.data.PositionEncoding;
+import de.martinmatysiak.mapracer.data.PositionMessage;
+import de.martinmatysiak.mapracer.data.RequestMessage;
+
+/**
+ * Realistic sample messages for the benchmarks. All of them are created from a fixed seed so that
+ * results stay comparable between runs.
+ */
+public final class Fixtures {
+    private Fixtures() { /* non-instantiable */ }
+
+    public static final GeoPoint START = new GeoPoint(37.413084, -122.069217);
+    public static final GeoPoint TARGET = new GeoPoint(37.420283, -122.083961);
+
+    /**
+     * @return A representative message of the given type.
+     */
+    public static Message message(MessageType type) {
+        switch (type) {
+            case GAME_SCORES:
+                return gameScores(10);
+            case GAME_SCORES_DELTA:
+                return gameScoresDelta(10, 3);
+            case GAME_STATE:
+                GameStateMessage gsm = new GameStateMessage();
+                gsm.players = 4;
+                gsm.state = GameState.RACE;
+                gsm.race = new GameStateMessage.Race();
+                gsm.race.startLocation = START;
+                gsm.race.targetLocation = TARGET;
+                gsm.race.startTime = 1412345678901L;
+                gsm.race.targetTitle = "Android";
+                return gsm;
+            case LOGIN:
+                return new LoginMessage.Builder()
+                        .withId(new UUID(42, 42).toString())
+                        .withName("Player 1")
+                        .withPositionEncoding(PositionEncoding.E7_DELTA)
+                        .build();
+            case LOGOUT:
+                return new LogoutMessage.Builder().build();
+            case PLAYER_STATE:
+                PlayerStateMessage psm = new PlayerStateMessage();
+                psm.state = PlayerState.ACTIVE;
+                psm.positionEncoding = PositionEncoding.E7_DELTA;
+                return psm;
+            case POSITION:
+                return new PositionMessage.Builder().withLocation(START).build();
+            case REQUEST:
+                return new RequestMessage.Builder()
+                        .withStart(START)
+                        .withTarget("Android", TARGET)
+                        .build();
+            default:
+                throw new IllegalArgumentException("No fixture for " + type);
+        }
+    }
+
+    public static GameScoresMessage gameScores(int players) {
+        Random random = new Random(players);
+        GameScoresMessage message = new GameScoresMessage();
+        message.scores = new ArrayList<GameScoresMessage.PlayerInfo>();
+        for (int i = 0; i < players; i++) {
+            GameScoresMessage.PlayerInfo info = new GameScoresMessage.PlayerInfo();
+            info.id = new UUID(players, i).toString();
+            info.name = "Player " + (i + 1);
+            if (i < players / 10) {
+                // Some players have already finished
+                info.time = 60000 + random.nextInt(120000);
+                info.score = -1.0 / info.time;
+            } else {
+                info.score = 50 + random.nextDouble() * 1500;
+            }
+            message.scores.add(info);
+        }
+
+        return message;
+    }
+
+    public static GameScoresDeltaMessage gameScoresDelta(int players, int changes) {
+        Random random = new Random(changes);
+        GameScoresDeltaMessage message = new GameScoresDeltaMessage();
+        message.changes = new ArrayList<GameScoresDeltaMessage.Change>();
+        message.removed = new ArrayList<String>();
+        for (int i = 0; i < changes; i++) {
+            GameScoresDeltaMessage.Change change = new GameScoresDeltaMessage.Change();
+            change.id = new UUID(players, random.nextInt(players)).toString();
+            change.rank = i;
+            change.score = 50 + random.nextDouble() * 1500;
+            message.changes.add(change);
+        }
+
+        return message;
+    }
+
+    /**
+     * @return A walk of the given number of panorama steps (roughly 10m each) towards the target.
+     */
+    public static List<PositionMessage> positions(int count) {
+        Random random = new Random(count);
+        List<PositionMessage> result = new ArrayList<PositionMessage>(count);
+        double lat = START.latitude;
+        double lng = START.longitude;
+        for (int i = 0; i < count; i++) {
+            lat += (TARGET.latitude - lat) / (count - i) + (random.nextDouble() - 0.5) * 1e-4;
+            lng += (TARGET.longitude - lng) / (count - i) + (random.nextDouble() - 0.5) * 1e-4;
+            result.add(new PositionMessage.Builder().withLocation(new GeoPoint(lat, lng)).build());
+        }
+
+        return result;
+    }
+
+    /**
+     * Serializes the message the way the receiver does, i.e. with the "type" field first.
+     */
+    public static String toReceiverJson(Message message) {
+        JsonObject source = Message.getConfiguredGson().toJsonTree(message).getAsJsonObject();
+        JsonObject result = new JsonObject();
+        result.add("type", source.remove("type"));
+        for (Map.Entry<String, JsonElement> entry : source.entrySet()) {
+            result.add(entry.getKey(), entry.getValue());
+        }
+
+        return result.toString();
+    }
+}
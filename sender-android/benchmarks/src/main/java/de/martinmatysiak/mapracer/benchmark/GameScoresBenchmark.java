@@ -0,0 +1,46 @@
+package de.martinmatysiak.mapracer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.martinmatysiak.mapracer.data.GameScoresMessage;
+import de.martinmatysiak.mapracer.data.Message;
+
+/**
+ * Scoreboard snapshots are the largest messages we receive, so track how they scale with the
+ * number of players.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GameScoresBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int players;
+
+    private GameScoresMessage mMessage;
+    private String mJson;
+
+    @Setup
+    public void setUp() {
+        mMessage = Fixtures.gameScores(players);
+        mJson = Fixtures.toReceiverJson(mMessage);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return mMessage.toJson();
+    }
+
+    @Benchmark
+    public Message fromJson() {
+        return Message.fromJson(mJson);
+    }
+}
@@ -0,0 +1,61 @@
+package de.martinmatysiak.mapracer.benchmark;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.MessageType;
+
+/**
+ * Encoding and decoding cost of a representative message of every MessageType, with the codecs
+ * generated at build time (toJson, fromJson) and reflectively with Gson as the baseline.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MessageCodecBenchmark {
+
+    @Param({"GAME_SCORES", "GAME_SCORES_DELTA", "GAME_STATE", "LOGIN", "LOGOUT",
+            "PLAYER_STATE", "POSITION", "REQUEST"})
+    public MessageType type;
+
+    private Message mMessage;
+    private String mJson;
+    private Gson mGson;
+
+    @Setup
+    public void setUp() {
+        mMessage = Fixtures.message(type);
+        mJson = Fixtures.toReceiverJson(mMessage);
+        mGson = Message.getConfiguredGson();
+    }
+
+    @Benchmark
+    public String toJson() {
+        return mMessage.toJson();
+    }
+
+    @Benchmark
+    public Message fromJson() {
+        return Message.fromJson(mJson);
+    }
+
+    @Benchmark
+    public String gsonToJson() {
+        return mGson.toJson(mMessage);
+    }
+
+    @Benchmark
+    public Message gsonFromJson() {
+        return mGson.fromJson(mJson, mMessage.getClass());
+    }
+}
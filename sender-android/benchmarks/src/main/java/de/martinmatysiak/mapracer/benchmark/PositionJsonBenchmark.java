@@ -0,0 +1,62 @@
+package de.martinmatysiak.mapracer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.martinmatysiak.mapracer.data.GeoPoint;
+import de.martinmatysiak.mapracer.data.PositionCodec;
+import de.martinmatysiak.mapracer.data.PositionEncoding;
+import de.martinmatysiak.mapracer.data.PositionMessage;
+
+/**
+ * Plain JSON encoding of a single position through Gson and through the PositionCodec, which
+ * produces the same output. Run with the gc profiler (as the jmh task does): the allocation budget
+ * of the codec is gc.alloc.rate.norm of {@link #codec()}, which must not exceed the size of the
+ * returned String (its object plus its backing array, i.e. about 100-200 bytes for a position,
+ * depending on the VM).
+ * <p/>
+ * ROUNDED coordinates have six fraction digits like most coordinates entered by hand, FULL ones
+ * use all 17 significant digits and take the slow path of the number formatting.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PositionJsonBenchmark {
+
+    @Param({"ROUNDED", "FULL"})
+    public String precision;
+
+    private GeoPoint mLocation;
+    private PositionCodec mCodec;
+
+    @Setup
+    public void setUp() {
+        mLocation = Fixtures.positions(2).get(1).location;
+        if ("ROUNDED".equals(precision)) {
+            mLocation = new GeoPoint(Math.round(mLocation.latitude * 1e6) / 1e6,
+                    Math.round(mLocation.longitude * 1e6) / 1e6);
+        }
+        mCodec = new PositionCodec();
+        mCodec.setEncoding(PositionEncoding.JSON);
+        if (!codec().equals(gson())) {
+            throw new IllegalStateException("Codec output differs from Gson: " + codec());
+        }
+    }
+
+    @Benchmark
+    public String gson() {
+        return new PositionMessage.Builder().withLocation(mLocation).build().toJson();
+    }
+
+    @Benchmark
+    public String codec() {
+        return mCodec.encode(mLocation.latitude, mLocation.longitude);
+    }
+}
@@ -0,0 +1,52 @@
+package de.martinmatysiak.mapracer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+import de.martinmatysiak.mapracer.data.PositionCodec;
+import de.martinmatysiak.mapracer.data.PositionEncoding;
+import de.martinmatysiak.mapracer.data.PositionMessage;
+
+/**
+ * Encodes a whole race worth of positions, as sent during a race, in each of the supported
+ * position encodings. Scores are per position.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PositionStreamBenchmark {
+
+    private static final int STREAM_LENGTH = 200;
+
+    @Param({"JSON", "E7", "E7_DELTA"})
+    public PositionEncoding encoding;
+
+    private List<PositionMessage> mPositions;
+    private PositionCodec mCodec;
+
+    @Setup
+    public void setUp() {
+        mPositions = Fixtures.positions(STREAM_LENGTH);
+        mCodec = new PositionCodec();
+        mCodec.setEncoding(encoding);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM_LENGTH)
+    public void encode(Blackhole blackhole) {
+        for (int i = 0; i < STREAM_LENGTH; i++) {
+            blackhole.consume(mCodec.encode(mPositions.get(i)));
+        }
+    }
+}
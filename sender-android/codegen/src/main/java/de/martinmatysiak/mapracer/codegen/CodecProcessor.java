@@ -0,0 +1,616 @@
+package de.martinmatysiak.mapracer.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a JSON codec for every type annotated with GenerateCodec, see its documentation for
+ * the format. The codecs are plain static methods on top of Gson's JsonReader and JsonWriter, so
+ * neither reflection nor any Gson setup is needed at runtime.
+ * <p/>
+ * The annotations are referred to by name only, so that this module does not depend on the
+ * protocol it is generating code for.
+ */
+@SupportedAnnotationTypes(CodecProcessor.GENERATE_CODEC)
+public class CodecProcessor extends AbstractProcessor {
+
+    static final String PACKAGE = "de.martinmatysiak.mapracer.codec";
+    static final String GENERATE_CODEC = PACKAGE + ".GenerateCodec";
+    static final String CODEC_ADAPTER = PACKAGE + ".CodecAdapter";
+    static final String CODEC_DEFAULT = PACKAGE + ".CodecDefault";
+    static final String NULL_DEFAULT = PACKAGE + ".NullDefault";
+
+    private static final String HEADER = "// Generated by " + CodecProcessor.class.getName()
+            + " from %s, do not edit.";
+
+    // The package of the codec which is currently being generated
+    private String mPackage;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                TypeElement type = (TypeElement) element;
+                try {
+                    if (type.getKind() == ElementKind.ENUM) {
+                        generateEnumCodec(type);
+                    } else if (type.getKind() == ElementKind.CLASS) {
+                        generateClassCodec(type);
+                    } else {
+                        error(type, "Codecs can only be generated for classes and enums");
+                    }
+                } catch (IOException ex) {
+                    error(type, "Could not write codec: " + ex.getMessage());
+                }
+            }
+        }
+
+        return true;
+    }
+
+    // Enums
+
+    private void generateEnumCodec(TypeElement type) throws IOException {
+        String typeName = simpleName(type);
+        String codecName = codecName(type);
+        mPackage = packageName(type);
+        List<String> constants = new ArrayList<String>();
+        String fallback = null;
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.ENUM_CONSTANT) {
+                continue;
+            }
+
+            constants.add(member.getSimpleName().toString());
+            if (findAnnotation(member, CODEC_DEFAULT) != null) {
+                fallback = member.getSimpleName().toString();
+            }
+        }
+
+        SourceWriter out = new SourceWriter();
+        out.line(String.format(HEADER, type.getQualifiedName()));
+        out.line("package " + mPackage + ";");
+        out.line();
+        out.line("import com.google.gson.stream.JsonReader;");
+        out.line("import com.google.gson.stream.JsonToken;");
+        out.line("import com.google.gson.stream.JsonWriter;");
+        out.line();
+        out.line("import java.io.IOException;");
+        out.line("import java.util.Locale;");
+        out.line("import java.util.logging.Logger;");
+        out.line();
+        out.line("public final class " + codecName + " {");
+        out.line("private " + codecName + "() { /* non-instantiable */ }");
+        out.line();
+        out.line("public static final String TAG = \"" + codecName + "\";");
+        out.line();
+        out.line("// The JSON names by ordinal");
+        out.line("private static final String[] NAMES = {");
+        for (int i = 0; i < constants.size(); i++) {
+            out.line("\"" + constants.get(i).toLowerCase(Locale.US) + "\""
+                    + (i < constants.size() - 1 ? "," : ""));
+        }
+        out.line("};");
+        out.line();
+        out.line("public static void write(JsonWriter out, " + typeName + " value)"
+                + " throws IOException {");
+        out.line("if (value == null) {");
+        out.line("out.nullValue();");
+        out.line("return;");
+        out.line("}");
+        out.line();
+        out.line("out.value(NAMES[value.ordinal()]);");
+        out.line("}");
+        out.line();
+        out.line("public static " + typeName + " read(JsonReader in) throws IOException {");
+        out.line("if (in.peek() == JsonToken.NULL) {");
+        out.line("in.nextNull();");
+        out.line("return null;");
+        out.line("}");
+        out.line();
+        out.line("String name = in.nextString();");
+        out.line(typeName + " value = fromName(name);");
+        out.line("if (value == null) {");
+        out.line("value = fromName(name.trim().toLowerCase(Locale.US));");
+        out.line("}");
+        out.line("if (value == null) {");
+        out.line("Logger.getLogger(TAG).warning(\"Received invalid " + typeName
+                + " in message: \" + name);");
+        out.line("return " + (fallback != null ? typeName + "." + fallback : "null") + ";");
+        out.line("}");
+        out.line();
+        out.line("return value;");
+        out.line("}");
+        out.line();
+        out.line("private static " + typeName + " fromName(String name) {");
+        out.line("switch (name) {");
+        for (String constant : constants) {
+            out.line("case \"" + constant.toLowerCase(Locale.US) + "\":");
+            out.line("return " + typeName + "." + constant + ";");
+        }
+        out.line("default:");
+        out.line("return null;");
+        out.line("}");
+        out.line("}");
+        out.line("}");
+
+        write(type, codecName, out);
+    }
+
+    // Classes
+
+    /**
+     * A field as seen by the codec.
+     */
+    private static class Field {
+        String name;
+        String jsonName;
+        TypeMirror type;
+        boolean readable;
+        String nullDefault;
+    }
+
+    private void generateClassCodec(TypeElement type) throws IOException {
+        String typeName = simpleName(type);
+        String codecName = codecName(type);
+        mPackage = packageName(type);
+        List<Field> fields = collectFields(type);
+        if (fields == null) {
+            return;
+        }
+
+        // Hand-written adapters, by the name of the constant holding them
+        Map<String, String> adapters = new LinkedHashMap<String, String>();
+        for (Field field : fields) {
+            TypeMirror valueType = isList(field.type) ? elementType(field.type) : field.type;
+            String adapter = adapterType(valueType);
+            if (adapter != null) {
+                adapters.put(adapterConstant(valueType), adapter);
+            } else if (!isSupported(valueType)) {
+                error(type, "Unsupported type " + field.type + " of field " + field.name);
+                return;
+            }
+        }
+
+        boolean instantiable = !type.getModifiers().contains(Modifier.ABSTRACT)
+                && hasDefaultConstructor(type);
+
+        SourceWriter out = new SourceWriter();
+        out.line(String.format(HEADER, type.getQualifiedName()));
+        out.line("package " + mPackage + ";");
+        out.line();
+        out.line("import com.google.gson.stream.JsonReader;");
+        out.line("import com.google.gson.stream.JsonToken;");
+        out.line("import com.google.gson.stream.JsonWriter;");
+        out.line();
+        out.line("import java.io.IOException;");
+        out.line();
+        out.line("import " + PACKAGE + ".Codecs;");
+        out.line();
+        out.line("public final class " + codecName + " {");
+        out.line("private " + codecName + "() { /* non-instantiable */ }");
+        out.line();
+        for (Map.Entry<String, String> adapter : adapters.entrySet()) {
+            out.line("private static final " + adapter.getValue() + " " + adapter.getKey()
+                    + " = new " + adapter.getValue() + "();");
+        }
+        if (!adapters.isEmpty()) {
+            out.line();
+        }
+
+        out.line("public static void write(JsonWriter out, " + typeName + " value)"
+                + " throws IOException {");
+        out.line("if (value == null) {");
+        out.line("out.nullValue();");
+        out.line("return;");
+        out.line("}");
+        out.line();
+        out.line("out.beginObject();");
+        out.line("writeFields(out, value);");
+        out.line("out.endObject();");
+        out.line("}");
+        out.line();
+        out.line("/**");
+        out.line(" * Writes the fields of the given value into the current object.");
+        out.line(" */");
+        out.line("public static void writeFields(JsonWriter out, " + typeName + " value)"
+                + " throws IOException {");
+        for (Field field : fields) {
+            writeField(out, field);
+        }
+        out.line("}");
+        out.line();
+
+        if (instantiable) {
+            out.line("public static " + typeName + " read(JsonReader in) throws IOException {");
+            out.line("if (in.peek() == JsonToken.NULL) {");
+            out.line("in.nextNull();");
+            out.line("return null;");
+            out.line("}");
+            out.line();
+            out.line(typeName + " value = new " + typeName + "();");
+            out.line("in.beginObject();");
+            out.line("readFields(in, value);");
+            out.line("in.endObject();");
+            out.line("return value;");
+            out.line("}");
+            out.line();
+        }
+
+        out.line("/**");
+        out.line(" * Reads the remaining fields of the current object into the given value.");
+        out.line(" * Unknown fields are skipped.");
+        out.line(" */");
+        out.line("public static void readFields(JsonReader in, " + typeName + " value)"
+                + " throws IOException {");
+        out.line("while (in.hasNext()) {");
+        out.line("switch (in.nextName()) {");
+        for (Field field : fields) {
+            if (field.readable) {
+                out.line("case \"" + field.jsonName + "\":");
+                readField(out, field);
+                out.line("break;");
+            }
+        }
+        out.line("default:");
+        out.line("in.skipValue();");
+        out.line("}");
+        out.line("}");
+        out.line("}");
+        out.line("}");
+
+        write(type, codecName, out);
+    }
+
+    /**
+     * @return The fields of the given type and its superclasses in the order in which Gson writes
+     * them, i.e. subclass fields first, or null if the type cannot be handled.
+     */
+    private List<Field> collectFields(TypeElement type) {
+        List<Field> result = new ArrayList<Field>();
+        Set<String> jsonNames = new HashSet<String>();
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+            for (VariableElement element : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = element.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+
+                if (modifiers.contains(Modifier.PRIVATE)) {
+                    error(element, "Generated codecs cannot access private fields");
+                    return null;
+                }
+
+                Field field = new Field();
+                field.name = element.getSimpleName().toString();
+                field.jsonName = jsonName(field.name);
+                field.type = element.asType();
+                field.readable = !modifiers.contains(Modifier.FINAL);
+                field.nullDefault = nullDefault(element);
+                if (!jsonNames.add(field.jsonName)) {
+                    error(element, "Multiple fields named " + field.jsonName);
+                    return null;
+                }
+
+                result.add(field);
+            }
+
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ?
+                    (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+
+        return result;
+    }
+
+    private void writeField(SourceWriter out, Field field) {
+        String access = "value." + field.name;
+        switch (field.type.getKind()) {
+            case INT:
+            case LONG:
+            case DOUBLE:
+            case BOOLEAN:
+                out.line("out.name(\"" + field.jsonName + "\").value(" + access + ");");
+                return;
+            default:
+                break;
+        }
+
+        out.line("if (" + access + " != null) {");
+        out.line("out.name(\"" + field.jsonName + "\");");
+        if (isList(field.type)) {
+            out.line("out.beginArray();");
+            out.line("for (int i = 0, n = " + access + ".size(); i < n; i++) {");
+            out.line(writeValue(elementType(field.type), access + ".get(i)"));
+            out.line("}");
+            out.line("out.endArray();");
+        } else {
+            out.line(writeValue(field.type, access));
+        }
+        out.line("}");
+    }
+
+    private String writeValue(TypeMirror type, String access) {
+        if (isString(type)) {
+            return "out.value(" + access + ");";
+        }
+
+        String adapter = adapterType(type);
+        if (adapter != null) {
+            return adapterConstant(type) + ".write(out, " + access + ");";
+        }
+
+        return codecReference(asElement(type)) + ".write(out, " + access + ");";
+    }
+
+    private void readField(SourceWriter out, Field field) {
+        String access = "value." + field.name;
+        String fallback = field.nullDefault != null ? field.nullDefault : access;
+        switch (field.type.getKind()) {
+            case INT:
+                if (field.nullDefault != null) {
+                    fallback = "(int) " + fallback;
+                }
+                out.line(access + " = Codecs.nextInt(in, " + fallback + ");");
+                return;
+            case LONG:
+                if (field.nullDefault != null) {
+                    fallback = "(long) " + fallback;
+                }
+                out.line(access + " = Codecs.nextLong(in, " + fallback + ");");
+                return;
+            case DOUBLE:
+                out.line(access + " = Codecs.nextDouble(in, " + fallback + ");");
+                return;
+            case BOOLEAN:
+                out.line(access + " = Codecs.nextBoolean(in, " + access + ");");
+                return;
+            default:
+                break;
+        }
+
+        if (!isList(field.type)) {
+            out.line(access + " = " + readValue(field.type) + ";");
+            return;
+        }
+
+        String elementType = typeName(elementType(field.type));
+        out.line("if (in.peek() == JsonToken.NULL) {");
+        out.line("in.nextNull();");
+        out.line(access + " = null;");
+        out.line("} else {");
+        out.line(access + " = new java.util.ArrayList<" + elementType + ">();");
+        out.line("in.beginArray();");
+        out.line("while (in.hasNext()) {");
+        out.line(access + ".add(" + readValue(elementType(field.type)) + ");");
+        out.line("}");
+        out.line("in.endArray();");
+        out.line("}");
+    }
+
+    private String readValue(TypeMirror type) {
+        if (isString(type)) {
+            return "Codecs.nextString(in)";
+        }
+
+        String adapter = adapterType(type);
+        if (adapter != null) {
+            return adapterConstant(type) + ".read(in)";
+        }
+
+        return codecReference(asElement(type)) + ".read(in)";
+    }
+
+    // Types
+
+    private boolean isSupported(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+            case LONG:
+            case DOUBLE:
+            case BOOLEAN:
+                return true;
+            case DECLARED:
+                return isString(type) || findAnnotation(asElement(type), GENERATE_CODEC) != null;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isString(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED
+                && asElement(type).getQualifiedName().contentEquals("java.lang.String");
+    }
+
+    private static boolean isList(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED
+                && asElement(type).getQualifiedName().contentEquals("java.util.List")
+                && ((DeclaredType) type).getTypeArguments().size() == 1;
+    }
+
+    private static TypeMirror elementType(TypeMirror listType) {
+        return ((DeclaredType) listType).getTypeArguments().get(0);
+    }
+
+    private static TypeElement asElement(TypeMirror type) {
+        return (TypeElement) ((DeclaredType) type).asElement();
+    }
+
+    /**
+     * @return The name of the hand-written TypeAdapter for the given type, or null if it has none.
+     */
+    private String adapterType(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+
+        AnnotationMirror annotation = findAnnotation(asElement(type), CODEC_ADAPTER);
+        if (annotation == null) {
+            return null;
+        }
+
+        AnnotationValue value = annotationValue(annotation, "value");
+        return value != null ? typeName((TypeMirror) value.getValue()) : null;
+    }
+
+    private static String adapterConstant(TypeMirror type) {
+        return jsonName(asElement(type).getSimpleName().toString()).toUpperCase(Locale.US)
+                + "_ADAPTER";
+    }
+
+    private static boolean hasDefaultConstructor(TypeElement type) {
+        for (ExecutableElement constructor
+                : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()
+                    && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The literal to use if the field is null in the JSON, or null to keep its value.
+     */
+    private static String nullDefault(Element field) {
+        AnnotationMirror annotation = findAnnotation(field, NULL_DEFAULT);
+        AnnotationValue value = annotation != null ? annotationValue(annotation, "value") : null;
+        if (value == null) {
+            return null;
+        }
+
+        double fallback = (Double) value.getValue();
+        if (Double.isNaN(fallback)) {
+            return "Double.NaN";
+        } else if (fallback == Double.POSITIVE_INFINITY) {
+            return "Double.POSITIVE_INFINITY";
+        } else if (fallback == Double.NEGATIVE_INFINITY) {
+            return "Double.NEGATIVE_INFINITY";
+        }
+
+        return Double.toString(fallback);
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String name) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(name)) {
+                return annotation;
+            }
+        }
+
+        return null;
+    }
+
+    private static AnnotationValue annotationValue(AnnotationMirror annotation, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    // Names
+
+    /**
+     * Translates the given Java name the way Gson's LOWER_CASE_WITH_UNDERSCORES does.
+     */
+    static String jsonName(String name) {
+        StringBuilder result = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && result.length() > 0) {
+                result.append('_');
+            }
+            result.append(c);
+        }
+
+        return result.toString().toLowerCase(Locale.US);
+    }
+
+    private static String packageName(TypeElement type) {
+        Element element = type;
+        while (element.getKind() != ElementKind.PACKAGE) {
+            element = element.getEnclosingElement();
+        }
+
+        return element.toString();
+    }
+
+    /**
+     * @return The name of the type relative to its package, e.g. GameStateMessage.Race.
+     */
+    private static String simpleName(TypeElement type) {
+        String packageName = packageName(type);
+        String name = type.getQualifiedName().toString();
+        return packageName.isEmpty() ? name : name.substring(packageName.length() + 1);
+    }
+
+    private static String codecName(TypeElement type) {
+        return simpleName(type).replace('.', '_') + "Codec";
+    }
+
+    /**
+     * @return The name under which the codec of the given type can be used from the codec which
+     * is currently being generated.
+     */
+    private String codecReference(TypeElement type) {
+        String packageName = packageName(type);
+        return packageName.equals(mPackage) ?
+                codecName(type) : packageName + "." + codecName(type);
+    }
+
+    private static String typeName(TypeMirror type) {
+        return type.toString();
+    }
+
+    private void write(TypeElement type, String codecName, SourceWriter source)
+            throws IOException {
+        String name = packageName(type) + "." + codecName;
+        Writer writer = processingEnv.getFiler().createSourceFile(name, type).openWriter();
+        try {
+            writer.write(source.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,53 @@
+package de.martinmatysiak.mapracer.codegen;
+
+/**
+ * Collects generated Java source line by line and takes care of the indentation, based on the
+ * braces and case labels at the start and end of each line.
+ */
+class SourceWriter {
+
+    private static final String INDENT = "    ";
+    private static final int MAX_DEPTH = 32;
+
+    private final StringBuilder mBuilder = new StringBuilder(4096);
+    // Per brace level: the indentation of its lines and whether they follow a case label
+    private final int[] mIndent = new int[MAX_DEPTH];
+    private final boolean[] mInCase = new boolean[MAX_DEPTH];
+    private int mDepth = 0;
+
+    public SourceWriter line() {
+        mBuilder.append('\n');
+        return this;
+    }
+
+    public SourceWriter line(String line) {
+        if (line.startsWith("}")) {
+            mInCase[mDepth] = false;
+            mDepth--;
+        }
+
+        boolean label = line.startsWith("case ") || line.startsWith("default:");
+        if (label) {
+            mInCase[mDepth] = true;
+        }
+
+        int indent = mIndent[mDepth] + (mInCase[mDepth] && !label ? 1 : 0);
+        for (int i = 0; i < indent; i++) {
+            mBuilder.append(INDENT);
+        }
+        mBuilder.append(line).append('\n');
+
+        if (line.endsWith("{")) {
+            mDepth++;
+            mIndent[mDepth] = indent + 1;
+            mInCase[mDepth] = false;
+        }
+
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return mBuilder.toString();
+    }
+}
@@ -0,0 +1,202 @@
+package de.martinmatysiak.mapracer.loadgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import de.martinmatysiak.mapracer.data.GeoPoint;
+import de.martinmatysiak.mapracer.data.PositionEncoding;
+import de.martinmatysiak.mapracer.data.RequestMessage;
+
+/**
+ * Drives a growing number of virtual senders through a race against a {@link StandInReceiver} and
+ * reports the resulting traffic for each number of senders. Usage:
+ * <pre>
+ *   LoadGenerator [--senders 50,100,150,200] [--duration seconds] [--interval ms]
+ *                 [--encoding JSON|E7|E7_DELTA] [--trace file]
+ *   LoadGenerator --serve port
+ * </pre>
+ * Without a trace, all senders move straight from the start to the target, each at its own pace.
+ * The traffic is that of the stand-in receiver, which comes close to the real one but differs in
+ * a few details (see {@link StandInReceiver}).
+ * With --serve, only the stand-in receiver is started and listens on all interfaces, so that the
+ * app can connect to it (see DEBUG_LAN_RECEIVER_HOST).
+ */
+public class LoadGenerator {
+
+    public static final GeoPoint START = new GeoPoint(37.413084, -122.069217);
+    public static final GeoPoint TARGET = new GeoPoint(37.420283, -122.083961);
+
+    private static final long TIMEOUT = 10000;
+
+    private int[] mSenderCounts = {50, 100, 150, 200};
+    private long mDuration = 20000;
+    private long mInterval = 250;
+    private PositionEncoding mEncoding = PositionEncoding.E7_DELTA;
+    private File mTrace = null;
+    private int mServePort = 0;
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        generator.parse(args);
+        generator.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            if ("--senders".equals(args[i])) {
+                String[] counts = value.split(",");
+                mSenderCounts = new int[counts.length];
+                for (int j = 0; j < counts.length; j++) {
+                    mSenderCounts[j] = Integer.parseInt(counts[j].trim());
+                }
+            } else if ("--duration".equals(args[i])) {
+                mDuration = Long.parseLong(value) * 1000;
+            } else if ("--interval".equals(args[i])) {
+                mInterval = Long.parseLong(value);
+            } else if ("--encoding".equals(args[i])) {
+                mEncoding = PositionEncoding.valueOf(value.toUpperCase(Locale.US));
+            } else if ("--trace".equals(args[i])) {
+                mTrace = new File(value);
+            } else if ("--serve".equals(args[i])) {
+                mServePort = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        if (mServePort > 0) {
+            serve();
+            return;
+        }
+
+        Route route = mTrace != null ?
+                Route.fromTrace(mTrace) : Route.straight(START, TARGET, mDuration * 9 / 10);
+
+        System.out.println(String.format(Locale.US,
+                "%7s %10s %10s %10s %10s %8s %8s %8s %9s %8s %9s %9s %9s %8s",
+                "senders", "up msg/s", "up KB/s", "down msg/s", "down KB/s",
+                "enc ns", "dec ns", "rdec ns", "bcast/s", "fan-out", "B/bcast",
+                "rtt50 us", "rtt99 us", "finished"));
+        for (int count : mSenderCounts) {
+            runRound(route, count);
+        }
+    }
+
+    private void serve() throws Exception {
+        StandInReceiver receiver = new StandInReceiver(new LoadStats(), mServePort, null);
+        System.out.println("Stand-in receiver listening on port " + receiver.getPort());
+        while (true) {
+            Thread.sleep(TIMEOUT);
+            System.out.println(receiver.getPlayerCount() + " players, " + receiver.getState());
+        }
+    }
+
+    private void runRound(Route route, int count) throws Exception {
+        LoadStats stats = new LoadStats();
+        StandInReceiver receiver = new StandInReceiver(stats);
+        List<VirtualSender> senders = new ArrayList<VirtualSender>();
+        Random random = new Random(count);
+        ScheduledExecutorService scheduler =
+                Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+
+        try {
+            for (int i = 0; i < count; i++) {
+                VirtualSender sender = new VirtualSender("player-" + i, route,
+                        0.8 + 0.4 * random.nextDouble(), mEncoding, stats);
+                sender.connect(receiver.getPort());
+                senders.add(sender);
+            }
+
+            awaitPlayers(receiver, count);
+            senders.get(0).send(new RequestMessage.Builder()
+                    .withStart(route.getStart())
+                    .withTarget("Load test", route.getTarget())
+                    .build());
+            awaitRace(senders);
+
+            // Only measure the race itself, not the logins
+            stats.reset();
+            long start = System.nanoTime();
+            for (final VirtualSender sender : senders) {
+                scheduler.scheduleAtFixedRate(new Runnable() {
+                    @Override
+                    public void run() {
+                        sender.tick();
+                    }
+                }, random.nextInt((int) mInterval), mInterval, TimeUnit.MILLISECONDS);
+            }
+
+            Thread.sleep(mDuration);
+            scheduler.shutdownNow();
+            scheduler.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            int finished = 0;
+            for (VirtualSender sender : senders) {
+                finished += sender.isFinished() ? 1 : 0;
+            }
+
+            report(count, stats, seconds, finished);
+        } finally {
+            scheduler.shutdownNow();
+            for (VirtualSender sender : senders) {
+                sender.close();
+            }
+            receiver.close();
+        }
+    }
+
+    private static void awaitPlayers(StandInReceiver receiver, int count)
+            throws InterruptedException, IOException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (receiver.getPlayerCount() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Only " + receiver.getPlayerCount() + " of " + count
+                        + " senders logged in");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitRace(List<VirtualSender> senders)
+            throws InterruptedException, IOException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        for (VirtualSender sender : senders) {
+            while (!sender.isRacing()) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("Not all senders received the start of the race");
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static void report(int count, LoadStats stats, double seconds, int finished) {
+        System.out.println(String.format(Locale.US,
+                "%7d %10.0f %10.1f %10.0f %10.1f %8.0f %8.0f %8.0f %9.1f %8.1f %9.0f %9d %9d %8d",
+                count,
+                stats.upMessages.get() / seconds,
+                stats.upBytes.get() / seconds / 1024,
+                stats.downMessages.get() / seconds,
+                stats.downBytes.get() / seconds / 1024,
+                LoadStats.ratio(stats.encodeNanos, stats.encodeCount),
+                LoadStats.ratio(stats.senderDecodeNanos, stats.senderDecodeCount),
+                LoadStats.ratio(stats.receiverDecodeNanos, stats.receiverDecodeCount),
+                stats.broadcasts.get() / seconds,
+                LoadStats.ratio(stats.broadcastRecipients, stats.broadcasts),
+                LoadStats.ratio(stats.broadcastBytes, stats.broadcasts),
+                stats.roundTripTimes.getPercentile(50),
+                stats.roundTripTimes.getPercentile(99),
+                finished));
+    }
+}
@@ -0,0 +1,54 @@
+package de.martinmatysiak.mapracer.loadgen;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.martinmatysiak.mapracer.metrics.LatencyHistogram;
+
+/**
+ * Counters shared by all virtual senders and the stand-in receiver. "Up" is the direction from the
+ * senders to the receiver, "down" the other way round.
+ */
+public class LoadStats {
+    public final AtomicLong upMessages = new AtomicLong();
+    public final AtomicLong upBytes = new AtomicLong();
+    public final AtomicLong downMessages = new AtomicLong();
+    public final AtomicLong downBytes = new AtomicLong();
+
+    // Encoding of positions on the senders
+    public final AtomicLong encodeNanos = new AtomicLong();
+    public final AtomicLong encodeCount = new AtomicLong();
+
+    // Decoding of inbound messages on the senders
+    public final AtomicLong senderDecodeNanos = new AtomicLong();
+    public final AtomicLong senderDecodeCount = new AtomicLong();
+
+    // Decoding of inbound messages on the receiver
+    public final AtomicLong receiverDecodeNanos = new AtomicLong();
+    public final AtomicLong receiverDecodeCount = new AtomicLong();
+
+    // Messages that the receiver sent to all senders at once
+    public final AtomicLong broadcasts = new AtomicLong();
+    public final AtomicLong broadcastRecipients = new AtomicLong();
+    public final AtomicLong broadcastBytes = new AtomicLong();
+
+    // Round trip times of pings in microseconds, from handing the ping to the transport until the
+    // pong has been decoded
+    public final LatencyHistogram roundTripTimes = new LatencyHistogram();
+
+    public void reset() {
+        roundTripTimes.reset();
+        for (AtomicLong counter : new AtomicLong[]{
+                upMessages, upBytes, downMessages, downBytes,
+                encodeNanos, encodeCount,
+                senderDecodeNanos, senderDecodeCount,
+                receiverDecodeNanos, receiverDecodeCount,
+                broadcasts, broadcastRecipients, broadcastBytes}) {
+            counter.set(0);
+        }
+    }
+
+    static double ratio(AtomicLong value, AtomicLong count) {
+        long n = count.get();
+        return n == 0 ? 0 : (double) value.get() / n;
+    }
+}
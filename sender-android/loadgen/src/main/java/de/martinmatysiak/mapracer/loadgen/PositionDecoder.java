@@ -0,0 +1,48 @@
+package de.martinmatysiak.mapracer.loadgen;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import de.martinmatysiak.mapracer.data.GeoPoint;
+import de.martinmatysiak.mapracer.data.PositionCodec;
+
+/**
+ * Receiver side of the position encodings, mirroring Player.decodePosition in the receiver. Each
+ * sender needs its own instance, as deltas refer to the last position of that sender.
+ */
+class PositionDecoder {
+
+    private boolean mHasLast = false;
+    private int mLastLat;
+    private int mLastLng;
+
+    void reset() {
+        mHasLast = false;
+    }
+
+    /**
+     * @return The decoded position or null if it can't be decoded (e.g. a delta without a
+     * preceding full position).
+     */
+    GeoPoint decode(JsonObject payload) {
+        if (payload.has("location")) {
+            JsonObject location = payload.getAsJsonObject("location");
+            return new GeoPoint(location.get("lat").getAsDouble(), location.get("lng").getAsDouble());
+        }
+
+        if (payload.has("p")) {
+            JsonArray p = payload.getAsJsonArray("p");
+            mLastLat = p.get(0).getAsInt();
+            mLastLng = p.get(1).getAsInt();
+            mHasLast = true;
+        } else if (payload.has("d") && mHasLast) {
+            JsonArray d = payload.getAsJsonArray("d");
+            mLastLat += d.get(0).getAsInt();
+            mLastLng += d.get(1).getAsInt();
+        } else {
+            return null;
+        }
+
+        return PositionCodec.fromE7(mLastLat, mLastLng);
+    }
+}
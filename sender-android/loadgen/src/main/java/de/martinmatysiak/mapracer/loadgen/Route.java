@@ -0,0 +1,126 @@
+package de.martinmatysiak.mapracer.loadgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import de.martinmatysiak.mapracer.data.GameState;
+import de.martinmatysiak.mapracer.data.GeoPoint;
+import de.martinmatysiak.mapracer.trace.Trace;
+import de.martinmatysiak.mapracer.trace.TraceReader;
+
+/**
+ * The path a virtual sender follows during the race, as positions over time. Positions between
+ * two waypoints are interpolated linearly.
+ */
+public class Route {
+
+    private final long[] mTimes;
+    private final double[] mLatitudes;
+    private final double[] mLongitudes;
+
+    private Route(long[] times, double[] latitudes, double[] longitudes) {
+        mTimes = times;
+        mLatitudes = latitudes;
+        mLongitudes = longitudes;
+    }
+
+    /**
+     * @return A route that goes straight from start to target in the given time.
+     */
+    public static Route straight(GeoPoint start, GeoPoint target, long duration) {
+        return new Route(
+                new long[]{0, duration},
+                new double[]{start.latitude, target.latitude},
+                new double[]{start.longitude, target.longitude});
+    }
+
+    /**
+     * @return The route of a recorded race, starting at the time the race started (or at the first
+     * position if the trace doesn't contain the start).
+     * @throws IOException If the trace could not be read or contains no positions.
+     */
+    public static Route fromTrace(File file) throws IOException {
+        int count = 0;
+        long[] times = new long[64];
+        double[] latitudes = new double[64];
+        double[] longitudes = new double[64];
+        long raceStart = -1;
+
+        TraceReader reader = new TraceReader(file, 4096);
+        try {
+            while (reader.next()) {
+                if (reader.getType() == Trace.GAME_STATE && raceStart < 0
+                        && reader.getGameState() == GameState.RACE) {
+                    // Whatever happened before doesn't belong to the race
+                    raceStart = reader.getTime();
+                    count = 0;
+                } else if (reader.getType() == Trace.POSITION) {
+                    if (count == times.length) {
+                        times = Arrays.copyOf(times, count * 2);
+                        latitudes = Arrays.copyOf(latitudes, count * 2);
+                        longitudes = Arrays.copyOf(longitudes, count * 2);
+                    }
+
+                    times[count] = reader.getTime();
+                    latitudes[count] = reader.getLatitude();
+                    longitudes[count] = reader.getLongitude();
+                    count++;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        if (count == 0) {
+            throw new IOException("No positions in " + file);
+        }
+
+        long origin = raceStart >= 0 ? raceStart : times[0];
+        for (int i = 0; i < count; i++) {
+            times[i] -= origin;
+        }
+
+        return new Route(Arrays.copyOf(times, count), Arrays.copyOf(latitudes, count),
+                Arrays.copyOf(longitudes, count));
+    }
+
+    public GeoPoint getStart() {
+        return new GeoPoint(mLatitudes[0], mLongitudes[0]);
+    }
+
+    public GeoPoint getTarget() {
+        int last = mTimes.length - 1;
+        return new GeoPoint(mLatitudes[last], mLongitudes[last]);
+    }
+
+    /**
+     * @return The time in milliseconds it takes to follow the whole route.
+     */
+    public long getDuration() {
+        return mTimes[mTimes.length - 1];
+    }
+
+    /**
+     * @param time The time in milliseconds since the start.
+     * @return The position at the given time, the target once the route is finished.
+     */
+    public GeoPoint at(long time) {
+        int i = Arrays.binarySearch(mTimes, time);
+        if (i >= 0) {
+            return new GeoPoint(mLatitudes[i], mLongitudes[i]);
+        }
+
+        int next = -i - 1;
+        if (next == 0) {
+            return getStart();
+        } else if (next == mTimes.length) {
+            return getTarget();
+        }
+
+        double f = (double) (time - mTimes[next - 1]) / (mTimes[next] - mTimes[next - 1]);
+        return new GeoPoint(
+                mLatitudes[next - 1] + f * (mLatitudes[next] - mLatitudes[next - 1]),
+                mLongitudes[next - 1] + f * (mLongitudes[next] - mLongitudes[next - 1]));
+    }
+}
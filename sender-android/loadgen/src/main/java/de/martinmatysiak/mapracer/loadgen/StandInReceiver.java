@@ -0,0 +1,540 @@
+package de.martinmatysiak.mapracer.loadgen;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
+
+import de.martinmatysiak.mapracer.data.GameScoresDeltaMessage;
+import de.martinmatysiak.mapracer.data.GameScoresMessage;
+import de.martinmatysiak.mapracer.data.GameState;
+import de.martinmatysiak.mapracer.data.GameStateMessage;
+import de.martinmatysiak.mapracer.data.GeoPoint;
+import de.martinmatysiak.mapracer.data.LoginMessage;
+import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.PingMessage;
+import de.martinmatysiak.mapracer.data.PlayerState;
+import de.martinmatysiak.mapracer.data.PlayerStateMessage;
+import de.martinmatysiak.mapracer.data.PongMessage;
+import de.martinmatysiak.mapracer.data.PositionEncoding;
+import de.martinmatysiak.mapracer.data.RequestMessage;
+import de.martinmatysiak.mapracer.data.TargetDistance;
+import de.martinmatysiak.mapracer.transport.SocketTransport;
+
+/**
+ * A stand-in for the Cast receiver that speaks the same JSON protocol over TCP, framed like the
+ * {@link SocketTransport} expects it. It implements just enough of the receiver's game logic to produce realistic
+ * traffic: login, race setup, scoring by distance to the target and leaderboard updates to all
+ * senders. Like the real receiver, all messages are handled one at a time, while sending happens
+ * asynchronously (one writer thread per connection).
+ * <p/>
+ * The leaderboard messages follow receiver/mapracer.js: the same players are included in a delta,
+ * with the same names and scores (finished players get their time appended to the name and a
+ * score of -1/time). What remains different:
+ * <ul>
+ * <li>There is no countdown, the race starts right away.</li>
+ * <li>Once everyone has finished, the race stays in SCORES instead of going back to INIT.</li>
+ * <li>Players who haven't finished have a time of 0, which is included in the JSON. The
+ * receiver leaves the time out.</li>
+ * <li>Gson formats numbers differently than JSON.stringify, e.g. 1.0E-5 instead of 0.00001.</li>
+ * </ul>
+ * So the byte counts come close to the receiver's, but they are not exactly the same.
+ */
+public class StandInReceiver implements Closeable {
+
+    public static final String TAG = "StandInReceiver";
+
+    /** Same as WIN_DISTANCE_THRESHOLD in the receiver. */
+    public static final double WIN_DISTANCE = 50;
+
+    /** Same as CAST_NAMESPACE in the app, messages on other namespaces are ignored. */
+    public static final String NAMESPACE = "urn:x-cast:de.martinmatysiak.mapracer";
+
+    /** Same as CAST_POSITION_NAMESPACE in the app, which only carries positions. */
+    public static final String POSITION_NAMESPACE = "urn:x-cast:de.martinmatysiak.mapracer.position";
+
+    private static final String PREFIX = NAMESPACE + SocketTransport.SEPARATOR;
+    private static final String POSITION_PREFIX = POSITION_NAMESPACE + SocketTransport.SEPARATOR;
+
+    private class Connection implements Runnable {
+        final Socket mSocket;
+        final Writer mWriter;
+        final BlockingQueue<String> mOutbox = new LinkedBlockingQueue<String>();
+        Player mPlayer;
+
+        Connection(Socket socket) throws IOException {
+            mSocket = socket;
+            mSocket.setTcpNoDelay(true);
+            mWriter = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+        }
+
+        @Override
+        public void run() {
+            try {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(mSocket.getInputStream(), "UTF-8"));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    mStats.upBytes.addAndGet(line.length() + 1);
+                    if (line.startsWith(PREFIX)) {
+                        handle(this, line.substring(PREFIX.length()), false);
+                    } else if (line.startsWith(POSITION_PREFIX)) {
+                        handle(this, line.substring(POSITION_PREFIX.length()), true);
+                    }
+                }
+            } catch (IOException ex) {
+                // Connection closed
+            } finally {
+                disconnected(this);
+            }
+        }
+
+        void send(String json) {
+            mOutbox.add(json);
+        }
+
+        /**
+         * Writes queued messages until the connection is closed, flushing only once the queue has
+         * been drained.
+         */
+        void write() {
+            try {
+                while (!mSocket.isClosed()) {
+                    String line = mOutbox.take();
+                    do {
+                        mWriter.write(PREFIX);
+                        mWriter.write(line);
+                        mWriter.write('\n');
+                        line = mOutbox.poll();
+                    } while (line != null);
+                    mWriter.flush();
+                }
+            } catch (IOException ex) {
+                // The reader will notice as well and clean up
+            } catch (InterruptedException ex) {
+                // Shutting down
+            }
+        }
+    }
+
+    private static class Player {
+        final String id;
+        final String name;
+        final PositionDecoder decoder = new PositionDecoder();
+        Connection connection;
+        PlayerState state = PlayerState.WAITING;
+        PositionEncoding encoding = PositionEncoding.JSON;
+        String positionNamespace = null;
+        // Like the receiver, finished players show their time as part of the name
+        String displayName;
+        double score = Double.POSITIVE_INFINITY;
+        long time = 0;
+
+        Player(String id, String name) {
+            this.id = id;
+            this.name = name;
+            this.displayName = name;
+        }
+    }
+
+    /**
+     * A leaderboard entry as last transmitted to the senders.
+     */
+    private static class SentScore {
+        final int rank;
+        final String name;
+        final long time;
+
+        SentScore(int rank, String name, long time) {
+            this.rank = rank;
+            this.name = name;
+            this.time = time;
+        }
+    }
+
+    // Like the receiver: by remaining distance, finished players (score -1/time) first
+    private static final Comparator<Player> RANKING = new Comparator<Player>() {
+        @Override
+        public int compare(Player a, Player b) {
+            return Double.compare(a.score, b.score);
+        }
+    };
+
+    private final LoadStats mStats;
+    private final ServerSocket mServer;
+    private final Gson mGson = Message.getConfiguredGson();
+    private final JsonParser mParser = new JsonParser();
+
+    private final List<Connection> mConnections = new ArrayList<Connection>();
+    private final Map<String, Player> mPlayers = new HashMap<String, Player>();
+    private final List<Player> mLeaderboard = new ArrayList<Player>();
+    private Map<String, SentScore> mLastScores = new HashMap<String, SentScore>();
+    private int mPlayerNumber = 1;
+    private GameState mState = GameState.INIT;
+    private GameStateMessage.Race mRace;
+    private TargetDistance mDistance;
+
+    /**
+     * Listens on an arbitrary free port of the loopback interface.
+     */
+    public StandInReceiver(LoadStats stats) throws IOException {
+        this(stats, 0, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * @param stats   Where to count the traffic.
+     * @param port    The port to listen on, 0 for any free one.
+     * @param address The address to listen on, null for all of them.
+     */
+    public StandInReceiver(LoadStats stats, int port, InetAddress address) throws IOException {
+        mStats = stats;
+        mServer = new ServerSocket(port, 256, address);
+
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, TAG + "-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return mServer.getLocalPort();
+    }
+
+    private void accept() {
+        while (!mServer.isClosed()) {
+            try {
+                final Connection connection = new Connection(mServer.accept());
+                synchronized (this) {
+                    mConnections.add(connection);
+                }
+
+                Thread reader = new Thread(connection, TAG + "-reader");
+                reader.setDaemon(true);
+                reader.start();
+
+                Thread writer = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        connection.write();
+                    }
+                }, TAG + "-writer");
+                writer.setDaemon(true);
+                writer.start();
+            } catch (IOException ex) {
+                // Server closed
+            }
+        }
+    }
+
+    private synchronized void disconnected(Connection connection) {
+        mConnections.remove(connection);
+    }
+
+    public synchronized GameState getState() {
+        return mState;
+    }
+
+    public synchronized int getPlayerCount() {
+        return mPlayers.size();
+    }
+
+    /**
+     * @param positionsOnly Whether the message arrived on the position namespace, where anything
+     *                      but positions is ignored.
+     */
+    private synchronized void handle(Connection connection, String line, boolean positionsOnly) {
+        mStats.upMessages.incrementAndGet();
+
+        long start = System.nanoTime();
+        JsonObject payload = mParser.parse(line).getAsJsonObject();
+        String type = payload.has("type") ? payload.get("type").getAsString() : "";
+        GeoPoint position = null;
+        if ("position".equals(type) && connection.mPlayer != null) {
+            position = connection.mPlayer.decoder.decode(payload);
+        }
+        mStats.receiverDecodeNanos.addAndGet(System.nanoTime() - start);
+        mStats.receiverDecodeCount.incrementAndGet();
+
+        if (positionsOnly && !"position".equals(type)) {
+            Logger.getLogger(TAG).warning("Unexpected message on position namespace: " + line);
+        } else if ("login".equals(type)) {
+            onLogin(connection, mGson.fromJson(payload, LoginMessage.class));
+        } else if ("logout".equals(type)) {
+            onLogout(connection);
+        } else if ("request".equals(type)) {
+            onRequest(mGson.fromJson(payload, RequestMessage.class));
+        } else if ("position".equals(type)) {
+            if (position != null) {
+                onPosition(connection.mPlayer, position);
+            }
+        } else if ("ping".equals(type)) {
+            onPing(connection, mGson.fromJson(payload, PingMessage.class));
+        } else {
+            Logger.getLogger(TAG).warning("Unexpected message: " + line);
+        }
+    }
+
+    private void onLogin(Connection connection, LoginMessage message) {
+        Player player = mPlayers.get(message.id);
+        if (player == null) {
+            player = new Player(message.id,
+                    message.name != null ? message.name : "Player " + mPlayerNumber++);
+            mPlayers.put(player.id, player);
+        }
+
+        player.connection = connection;
+        connection.mPlayer = player;
+        player.encoding = message.positionEncoding != null ?
+                message.positionEncoding : PositionEncoding.JSON;
+        player.positionNamespace = POSITION_NAMESPACE.equals(message.positionNamespace) ?
+                POSITION_NAMESPACE : null;
+        player.decoder.reset();
+        sendState(player);
+        broadcastState();
+
+        // Senders only receive changes to the leaderboard during the race, so (re)joining
+        // players need a full copy first
+        if (mState == GameState.RACE || mState == GameState.SCORES) {
+            send(connection, getScores().toJson());
+        }
+    }
+
+    private void onPing(Connection connection, PingMessage ping) {
+        PongMessage pong = new PongMessage();
+        pong.id = ping.id;
+        pong.sentAt = ping.sentAt;
+        pong.receivedAt = System.currentTimeMillis();
+        send(connection, pong.toJson());
+    }
+
+    private void onLogout(Connection connection) {
+        Player player = connection.mPlayer;
+        if (player == null) {
+            return;
+        }
+
+        connection.mPlayer = null;
+        mPlayers.remove(player.id);
+        if (mLeaderboard.remove(player) && mState == GameState.RACE) {
+            broadcastScoreChanges();
+        }
+        broadcastState();
+        maybeFinishRace();
+    }
+
+    private void onRequest(RequestMessage request) {
+        if (mState != GameState.INIT) {
+            return;
+        }
+
+        mRace = new GameStateMessage.Race();
+        mRace.startLocation = request.startLocation;
+        mRace.targetLocation = request.targetLocation;
+        mRace.targetTitle = request.targetTitle;
+        mDistance = new TargetDistance(mRace.targetLocation);
+
+        // Unlike the receiver, there is no countdown. Everyone starts racing right away.
+        mState = GameState.LOAD;
+        mLeaderboard.clear();
+        for (Player player : mPlayers.values()) {
+            player.state = PlayerState.ACTIVE;
+            player.displayName = player.name;
+            player.score = mDistance.from(mRace.startLocation);
+            player.time = 0;
+            mLeaderboard.add(player);
+            sendState(player);
+        }
+        broadcastState();
+
+        mState = GameState.RACE;
+        mRace.startTime = System.currentTimeMillis();
+        broadcastState();
+        Collections.sort(mLeaderboard, RANKING);
+        broadcastScores();
+    }
+
+    private void onPosition(Player player, GeoPoint position) {
+        if (mState != GameState.RACE || player.state != PlayerState.ACTIVE) {
+            return;
+        }
+
+        player.score = mDistance.from(position);
+        if (player.score < WIN_DISTANCE) {
+            player.state = PlayerState.FINISHED;
+            // At least 1ms, so that the score stays finite
+            player.time = Math.max(1, System.currentTimeMillis() - mRace.startTime);
+            player.score = -1.0 / player.time;
+            player.displayName = player.name + " (" + formatTime(player.time) + ")";
+            sendState(player);
+        }
+
+        Collections.sort(mLeaderboard, RANKING);
+        broadcastScoreChanges();
+        maybeFinishRace();
+    }
+
+    /**
+     * Like the receiver, ends the race once nobody is racing anymore.
+     */
+    private void maybeFinishRace() {
+        if (mState != GameState.RACE) {
+            return;
+        }
+
+        for (Player player : mPlayers.values()) {
+            if (player.state == PlayerState.ACTIVE) {
+                return;
+            }
+        }
+
+        mState = GameState.SCORES;
+        broadcastState();
+        broadcastScores();
+    }
+
+    /**
+     * Same as formatTime in the receiver, including the milliseconds not being padded.
+     */
+    private static String formatTime(long time) {
+        long seconds = (time / 1000) % 60;
+        return (time / 60000) + (seconds < 10 ? ":0" : ":") + seconds + "." + (time % 1000);
+    }
+
+    private GameScoresMessage getScores() {
+        GameScoresMessage message = new GameScoresMessage();
+        message.scores = new ArrayList<GameScoresMessage.PlayerInfo>();
+        for (Player player : mLeaderboard) {
+            message.scores.add(toInfo(player, new GameScoresMessage.PlayerInfo()));
+        }
+        return message;
+    }
+
+    /**
+     * Remembers the current leaderboard as the state that all senders know about.
+     */
+    private void rememberScores() {
+        mLastScores = new HashMap<String, SentScore>();
+        for (int i = 0; i < mLeaderboard.size(); i++) {
+            Player player = mLeaderboard.get(i);
+            mLastScores.put(player.id, new SentScore(i, player.displayName, player.time));
+        }
+    }
+
+    private void broadcastScores() {
+        rememberScores();
+        broadcast(getScores());
+    }
+
+    /**
+     * Like the receiver, only sends the players whose rank, name or time changed since the last
+     * broadcast, plus the ones who left. Nothing is sent if there are no such players.
+     */
+    private void broadcastScoreChanges() {
+        Map<String, SentScore> previous = mLastScores;
+        List<GameScoresDeltaMessage.Change> changes = new ArrayList<GameScoresDeltaMessage.Change>();
+        for (int rank = 0; rank < mLeaderboard.size(); rank++) {
+            Player player = mLeaderboard.get(rank);
+            SentScore last = previous.get(player.id);
+            if (last == null || last.rank != rank || last.time != player.time
+                    || !last.name.equals(player.displayName)) {
+                GameScoresDeltaMessage.Change change = toInfo(player, new GameScoresDeltaMessage.Change());
+                if (last != null && last.name.equals(player.displayName)) {
+                    change.name = null;
+                }
+                change.rank = rank;
+                changes.add(change);
+            }
+        }
+
+        rememberScores();
+        List<String> removed = new ArrayList<String>();
+        for (String id : previous.keySet()) {
+            if (!mLastScores.containsKey(id)) {
+                removed.add(id);
+            }
+        }
+
+        if (changes.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        GameScoresDeltaMessage delta = new GameScoresDeltaMessage();
+        delta.changes = changes;
+        delta.removed = removed;
+        broadcast(delta);
+    }
+
+    private static <T extends GameScoresMessage.PlayerInfo> T toInfo(Player player, T info) {
+        info.id = player.id;
+        info.name = player.displayName;
+        info.score = player.score;
+        info.time = player.time;
+        return info;
+    }
+
+    private void sendState(Player player) {
+        PlayerStateMessage message = new PlayerStateMessage();
+        message.state = player.state;
+        message.positionEncoding = player.encoding;
+        message.positionNamespace = player.positionNamespace;
+        send(player.connection, message.toJson());
+    }
+
+    private void broadcastState() {
+        GameStateMessage message = new GameStateMessage();
+        message.players = mPlayers.size();
+        message.state = mState;
+        message.race = mRace;
+        broadcast(message);
+    }
+
+    private void broadcast(Message message) {
+        String json = message.toJson();
+        for (Connection connection : mConnections) {
+            send(connection, json);
+        }
+
+        mStats.broadcasts.incrementAndGet();
+        mStats.broadcastRecipients.addAndGet(mConnections.size());
+        mStats.broadcastBytes.addAndGet(PREFIX.length() + json.length() + 1);
+    }
+
+    private void send(Connection connection, String json) {
+        connection.send(json);
+        mStats.downMessages.incrementAndGet();
+        mStats.downBytes.addAndGet(PREFIX.length() + json.length() + 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mServer.close();
+        synchronized (this) {
+            for (Connection connection : mConnections) {
+                connection.mSocket.close();
+            }
+        }
+    }
+}
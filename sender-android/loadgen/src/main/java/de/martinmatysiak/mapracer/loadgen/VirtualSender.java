@@ -0,0 +1,197 @@
+package de.martinmatysiak.mapracer.loadgen;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+
+import de.martinmatysiak.mapracer.data.GameState;
+import de.martinmatysiak.mapracer.data.GameStateMessage;
+import de.martinmatysiak.mapracer.data.GeoPoint;
+import de.martinmatysiak.mapracer.data.LoginMessage;
+import de.martinmatysiak.mapracer.data.LogoutMessage;
+import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.PingMessage;
+import de.martinmatysiak.mapracer.data.PlayerState;
+import de.martinmatysiak.mapracer.data.PlayerStateMessage;
+import de.martinmatysiak.mapracer.data.PongMessage;
+import de.martinmatysiak.mapracer.data.PositionCodec;
+import de.martinmatysiak.mapracer.data.PositionEncoding;
+import de.martinmatysiak.mapracer.data.PositionMessage;
+import de.martinmatysiak.mapracer.transport.SendCallback;
+import de.martinmatysiak.mapracer.transport.SocketTransport;
+import de.martinmatysiak.mapracer.transport.Transport;
+import de.martinmatysiak.mapracer.transport.TransportListener;
+
+/**
+ * A simulated player. It logs in like the app does, follows its route once the race has started
+ * (sped up or slowed down by a per-player factor) and sends its position whenever {@link #tick()}
+ * is called. Every few ticks, it also probes the round trip time. Traffic goes through the same
+ * {@link SocketTransport} that the app uses for LAN receivers and inbound messages are decoded
+ * just like on the phone.
+ */
+public class VirtualSender implements TransportListener, Closeable {
+
+    /** Number of ticks after which another ping is sent. */
+    public static final int PING_INTERVAL = 10;
+
+    private final String mId;
+    private final Route mRoute;
+    private final double mPace;
+    private final LoadStats mStats;
+    private final PositionCodec mCodec = new PositionCodec();
+    private final PositionEncoding mRequestedEncoding;
+
+    private Transport mTransport;
+    private volatile String mPositionNamespace = StandInReceiver.NAMESPACE;
+    private long mTicks = 0;
+    private volatile long mRaceStart = 0;
+    private volatile boolean mFinished = false;
+
+    // Positions that didn't make it would break the receiver's delta decoding
+    private final SendCallback mPositionCallback = new SendCallback() {
+        @Override
+        public void onSendComplete(boolean success) {
+            if (!success) {
+                synchronized (VirtualSender.this) {
+                    mCodec.forceKeyframe();
+                }
+            }
+        }
+    };
+
+    /**
+     * @param id       The player's ID.
+     * @param route    The route to follow.
+     * @param pace     Factor for the time it takes to follow the route, 1 is the original speed.
+     * @param encoding The position encoding to ask for.
+     * @param stats    Where to count the traffic.
+     */
+    public VirtualSender(String id, Route route, double pace, PositionEncoding encoding,
+                         LoadStats stats) {
+        mId = id;
+        mRoute = route;
+        mPace = pace;
+        mRequestedEncoding = encoding;
+        mStats = stats;
+    }
+
+    /**
+     * Starts connecting to the receiver on the loopback interface. Logs in once connected.
+     */
+    public void connect(int port) {
+        mTransport = new SocketTransport(InetAddress.getLoopbackAddress().getHostAddress(), port);
+        mTransport.setListener(this);
+        mTransport.subscribe(StandInReceiver.NAMESPACE);
+        mTransport.connect();
+    }
+
+    public boolean isRacing() {
+        return mRaceStart > 0;
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * Sends the current position if the race is on.
+     */
+    public void tick() {
+        if (mRaceStart == 0 || mFinished) {
+            return;
+        }
+
+        if (mTicks++ % PING_INTERVAL == 0) {
+            send(new PingMessage.Builder()
+                    .withId(mTicks)
+                    .withSentAt(System.nanoTime() / 1000)
+                    .build());
+        }
+
+        long elapsed = (long) ((System.currentTimeMillis() - mRaceStart) / mPace);
+        GeoPoint position = mRoute.at(elapsed);
+        send(new PositionMessage.Builder().withLocation(position).build());
+    }
+
+    public synchronized void send(Message message) {
+        long start = System.nanoTime();
+        String json = message instanceof PositionMessage ?
+                mCodec.encode((PositionMessage) message) : message.toJson();
+        if (message instanceof PositionMessage) {
+            mStats.encodeNanos.addAndGet(System.nanoTime() - start);
+            mStats.encodeCount.incrementAndGet();
+            mTransport.send(mPositionNamespace, json, mPositionCallback);
+        } else {
+            mTransport.send(StandInReceiver.NAMESPACE, json, null);
+        }
+    }
+
+    @Override
+    public void onTransportConnected(boolean resumed) {
+        send(new LoginMessage.Builder()
+                .withId(mId)
+                .withName(mId)
+                .withPositionEncoding(mRequestedEncoding)
+                .withPositionNamespace(StandInReceiver.POSITION_NAMESPACE)
+                .build());
+    }
+
+    @Override
+    public void onTransportSuspended() {
+        // Not used by the socket transport
+    }
+
+    @Override
+    public void onTransportDisconnected(boolean sessionEnded) {
+        mFinished = true;
+    }
+
+    @Override
+    public void onTransportMessage(String namespace, String json) {
+        long start = System.nanoTime();
+        Message message = Message.fromJson(json);
+        mStats.senderDecodeNanos.addAndGet(System.nanoTime() - start);
+        mStats.senderDecodeCount.incrementAndGet();
+        onMessage(message);
+    }
+
+    private void onMessage(Message message) {
+        switch (message.type) {
+            case GAME_STATE:
+                GameStateMessage gsm = (GameStateMessage) message;
+                if (gsm.state == GameState.RACE && mRaceStart == 0) {
+                    mRaceStart = System.currentTimeMillis();
+                }
+                break;
+            case PLAYER_STATE:
+                PlayerStateMessage psm = (PlayerStateMessage) message;
+                synchronized (this) {
+                    if (psm.positionEncoding != mCodec.getEncoding()) {
+                        mCodec.setEncoding(psm.positionEncoding);
+                    }
+                }
+                mPositionNamespace = psm.positionNamespace != null ?
+                        psm.positionNamespace : StandInReceiver.NAMESPACE;
+                if (psm.state == PlayerState.FINISHED) {
+                    mFinished = true;
+                }
+                break;
+            case PONG:
+                PongMessage pong = (PongMessage) message;
+                mStats.roundTripTimes.record(System.nanoTime() / 1000 - pong.sentAt);
+                break;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mTransport == null) {
+            return;
+        }
+
+        if (mTransport.isConnected()) {
+            send(new LogoutMessage.Builder().build());
+        }
+        mTransport.disconnect(true);
+    }
+}
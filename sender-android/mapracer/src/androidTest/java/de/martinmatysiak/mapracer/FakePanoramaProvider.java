@@ -0,0 +1,121 @@
+package de.martinmatysiak.mapracer;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.StreetViewPanoramaLink;
+import com.google.android.gms.maps.model.StreetViewPanoramaLocation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A PanoramaProvider that answers from an in-memory panorama graph instead of a hidden
+ * StreetViewPanorama. Requests are only answered when the test calls {@link #answer()}, which
+ * mimics the asynchronous answers of the real provider.
+ */
+public class FakePanoramaProvider implements PanoramaProvider {
+
+    private static class Request {
+        final String panoId;
+        final PanoramaCallback callback;
+
+        Request(String panoId, PanoramaCallback callback) {
+            this.panoId = panoId;
+            this.callback = callback;
+        }
+    }
+
+    private final Map<String, StreetViewPanoramaLocation> mPanoramas =
+            new HashMap<String, StreetViewPanoramaLocation>();
+    private final LinkedList<Request> mPending = new LinkedList<Request>();
+    private final List<String> mLoaded = new ArrayList<String>();
+    private String mStart = null;
+    private int mMaxPending = 0;
+
+    /**
+     * Adds a panorama with links to the given neighbors. The first panorama added is the one that
+     * is found near any position.
+     */
+    public FakePanoramaProvider add(String panoId, String... links) {
+        StreetViewPanoramaLink[] panoramaLinks = new StreetViewPanoramaLink[links.length];
+        for (int i = 0; i < links.length; i++) {
+            panoramaLinks[i] = new StreetViewPanoramaLink(links[i], 0);
+        }
+
+        mPanoramas.put(panoId, new StreetViewPanoramaLocation(panoramaLinks,
+                new LatLng(mPanoramas.size(), 0), panoId));
+        if (mStart == null) {
+            mStart = panoId;
+        }
+        return this;
+    }
+
+    /**
+     * Makes the given panorama unavailable, so that requests for it time out.
+     */
+    public FakePanoramaProvider remove(String panoId) {
+        mPanoramas.remove(panoId);
+        return this;
+    }
+
+    public StreetViewPanoramaLocation get(String panoId) {
+        return mPanoramas.get(panoId);
+    }
+
+    @Override
+    public void load(String panoId, PanoramaCallback callback) {
+        mPending.add(new Request(panoId, callback));
+        mMaxPending = Math.max(mMaxPending, mPending.size());
+    }
+
+    @Override
+    public void load(LatLng position, PanoramaCallback callback) {
+        load(mStart, callback);
+    }
+
+    @Override
+    public void cancel() {
+        mPending.clear();
+    }
+
+    /**
+     * Answers the oldest pending request, with null if the panorama doesn't exist.
+     *
+     * @return Whether there was a request to answer.
+     */
+    public boolean answer() {
+        if (mPending.isEmpty()) {
+            return false;
+        }
+
+        Request request = mPending.removeFirst();
+        mLoaded.add(request.panoId);
+        request.callback.onPanoramaLoaded(mPanoramas.get(request.panoId));
+        return true;
+    }
+
+    /**
+     * Answers requests until none are left.
+     */
+    public void answerAll() {
+        while (answer()) {
+            // Answering may cause further requests
+        }
+    }
+
+    /**
+     * @return The IDs of all panoramas that have been requested and answered, in order.
+     */
+    public List<String> getLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * @return The largest number of requests that were pending at once.
+     */
+    public int getMaxPending() {
+        return mMaxPending;
+    }
+}
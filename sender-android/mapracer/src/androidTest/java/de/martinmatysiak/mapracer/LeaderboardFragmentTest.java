@@ -0,0 +1,113 @@
+package de.martinmatysiak.mapracer;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.martinmatysiak.mapracer.data.GameScoresMessage;
+
+public class LeaderboardFragmentTest extends AndroidTestCase {
+
+    private static GameScoresMessage.PlayerInfo player(String id) {
+        GameScoresMessage.PlayerInfo player = new GameScoresMessage.PlayerInfo();
+        player.id = id;
+        player.name = id.toUpperCase();
+        player.score = 100;
+        return player;
+    }
+
+    private static List<GameScoresMessage.PlayerInfo> snapshot(String... ids) {
+        List<GameScoresMessage.PlayerInfo> scores = new ArrayList<GameScoresMessage.PlayerInfo>();
+        for (String id : ids) {
+            scores.add(player(id));
+        }
+        return scores;
+    }
+
+    public void testRowIdsSurviveSnapshots() {
+        LeaderboardFragment fragment = new LeaderboardFragment();
+        LeaderboardFragment.LeaderboardAdapter adapter = fragment.new LeaderboardAdapter(getContext());
+        fragment.mAdapter = adapter;
+
+        fragment.setData(snapshot("a", "b", "c"));
+        long a = adapter.getItemId(0);
+        long b = adapter.getItemId(1);
+        long c = adapter.getItemId(2);
+
+        // b left, d joined and the order changed
+        fragment.setData(snapshot("c", "a", "d"));
+        assertEquals(c, adapter.getItemId(0));
+        assertEquals(a, adapter.getItemId(1));
+        long d = adapter.getItemId(2);
+        assertTrue(d != a && d != b && d != c);
+
+        // A player coming back gets a new row
+        fragment.setData(snapshot("b", "c"));
+        assertTrue(adapter.getItemId(0) != b);
+        assertEquals(c, adapter.getItemId(1));
+    }
+
+    public void testRowIdsAreUnique() {
+        LeaderboardFragment fragment = new LeaderboardFragment();
+        LeaderboardFragment.LeaderboardAdapter adapter = fragment.new LeaderboardAdapter(getContext());
+        fragment.mAdapter = adapter;
+        fragment.setData(snapshot("a", "b", "c", "d", "e"));
+
+        Set<Long> ids = new HashSet<Long>();
+        for (int i = 0; i < adapter.getCount(); i++) {
+            assertTrue(ids.add(adapter.getItemId(i)));
+        }
+    }
+
+    public void testBindOnlyTracksChanges() {
+        LeaderboardFragment.RowHolder holder = new LeaderboardFragment.RowHolder(
+                new TextView(getContext()), new TextView(getContext()), new TextView(getContext()));
+        GameScoresMessage.PlayerInfo player = player("a");
+        player.time = 83045;
+
+        // Racing players don't show a time
+        holder.bind(11, player);
+        assertEquals(11, holder.boundPosition);
+        assertSame(player.name, holder.boundName);
+        assertEquals(-1, holder.boundTime);
+        assertEquals("12", new String(holder.positionChars, 8, 2));
+
+        player.score = -1.0 / player.time;
+        holder.bind(0, player);
+        assertEquals(0, holder.boundPosition);
+        assertEquals(83045, holder.boundTime);
+        assertEquals("01:23.045", new String(holder.timeChars));
+    }
+
+    public void testRebindingUnchangedRowDoesNotAllocate() {
+        LeaderboardFragment.RowHolder holder = new LeaderboardFragment.RowHolder(
+                new TextView(getContext()), new TextView(getContext()), new TextView(getContext()));
+        GameScoresMessage.PlayerInfo racing = player("a");
+        GameScoresMessage.PlayerInfo finished = player("b");
+        finished.time = 83045;
+        finished.score = -1.0 / finished.time;
+        LeaderboardFragment.RowHolder finishedHolder = new LeaderboardFragment.RowHolder(
+                new TextView(getContext()), new TextView(getContext()), new TextView(getContext()));
+        holder.bind(3, racing);
+        finishedHolder.bind(0, finished);
+
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocCount();
+            for (int i = 0; i < 100000; i++) {
+                holder.bind(3, racing);
+                finishedHolder.bind(0, finished);
+            }
+            int allocated = Debug.getThreadAllocSize();
+            // Leaves some room for the counting itself
+            assertTrue("Allocated " + allocated + " bytes", allocated < 4096);
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package de.martinmatysiak.mapracer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.martinmatysiak.mapracer.data.GameScoresDeltaMessage;
+import de.martinmatysiak.mapracer.data.GameScoresMessage;
+
+import junit.framework.TestCase;
+
+public class LeaderboardModelTest extends TestCase {
+
+    private LeaderboardModel mModel;
+    private int mDataSetChanges;
+    private int mRangeStart;
+    private int mRangeEnd;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mModel = new LeaderboardModel();
+        mModel.setListener(new LeaderboardModel.Listener() {
+            @Override
+            public void onDataSetChanged() {
+                mDataSetChanges++;
+            }
+
+            @Override
+            public void onRangeChanged(int start, int end) {
+                mRangeStart = start;
+                mRangeEnd = end;
+            }
+        });
+
+        List<GameScoresMessage.PlayerInfo> scores = new ArrayList<GameScoresMessage.PlayerInfo>();
+        for (String id : new String[]{"a", "b", "c", "d", "e"}) {
+            GameScoresMessage.PlayerInfo player = new GameScoresMessage.PlayerInfo();
+            player.id = id;
+            player.name = id.toUpperCase();
+            player.score = 100;
+            scores.add(player);
+        }
+        mModel.setSnapshot(scores);
+        mDataSetChanges = 0;
+        mRangeStart = mRangeEnd = -1;
+    }
+
+    private static GameScoresDeltaMessage.Change change(String id, int rank) {
+        GameScoresDeltaMessage.Change change = new GameScoresDeltaMessage.Change();
+        change.id = id;
+        change.rank = rank;
+        change.score = 50;
+        return change;
+    }
+
+    private static GameScoresDeltaMessage delta(List<String> removed,
+                                                GameScoresDeltaMessage.Change... changes) {
+        GameScoresDeltaMessage delta = new GameScoresDeltaMessage();
+        delta.changes = Arrays.asList(changes);
+        delta.removed = removed;
+        return delta;
+    }
+
+    private void assertOrder(String... ids) {
+        assertEquals(ids.length, mModel.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], mModel.get(i).id);
+            assertEquals(i, mModel.indexOf(ids[i]));
+        }
+    }
+
+    public void testSnapshot() {
+        assertOrder("a", "b", "c", "d", "e");
+        assertEquals(-1, mModel.indexOf("x"));
+    }
+
+    public void testOvertake() {
+        // d overtakes b and c
+        mModel.applyDelta(delta(null, change("d", 1), change("b", 2), change("c", 3)));
+
+        assertOrder("a", "d", "b", "c", "e");
+        assertEquals(0, mDataSetChanges);
+        assertEquals(1, mRangeStart);
+        assertEquals(4, mRangeEnd);
+        assertEquals(50.0, mModel.get(1).score);
+        assertEquals("D", mModel.get(1).name);
+    }
+
+    public void testUnchangedPlayersFillTheGaps() {
+        // Only the leader is part of the delta, everybody else moves up
+        mModel.applyDelta(delta(null, change("a", 4)));
+
+        assertOrder("b", "c", "d", "e", "a");
+        assertEquals(0, mRangeStart);
+        assertEquals(5, mRangeEnd);
+    }
+
+    public void testFinishKeepsPosition() {
+        GameScoresDeltaMessage.Change finished = change("c", 2);
+        finished.name = "C (1:23)";
+        finished.score = -1;
+        finished.time = 83000;
+        mModel.applyDelta(delta(null, finished));
+
+        assertOrder("a", "b", "c", "d", "e");
+        assertEquals(2, mRangeStart);
+        assertEquals(3, mRangeEnd);
+        assertEquals("C (1:23)", mModel.get(2).name);
+        assertEquals(83000, mModel.get(2).time);
+    }
+
+    public void testJoinAndLeave() {
+        mModel.applyDelta(delta(Arrays.asList("b", "x"), change("f", 0)));
+
+        assertOrder("f", "a", "c", "d", "e");
+        assertEquals("f", mModel.get(0).id);
+        assertNull(mModel.get(0).name);
+        assertEquals(-1, mModel.indexOf("b"));
+        assertEquals(0, mDataSetChanges);
+
+        mModel.applyDelta(delta(Arrays.asList("a"), change("g", 1), change("h", 2)));
+        assertOrder("f", "g", "h", "c", "d", "e");
+        assertEquals(1, mDataSetChanges);
+    }
+
+    public void testRanksOutOfRange() {
+        // Conflicting and impossible ranks don't lose anybody
+        mModel.applyDelta(delta(null, change("e", 0), change("d", 0), change("c", 7)));
+
+        assertOrder("e", "a", "b", "d", "c");
+    }
+
+    public void testDuplicateChange() {
+        mModel.applyDelta(delta(null, change("e", 0), change("e", 3), change("x", 1),
+                change("x", 4)));
+
+        assertOrder("e", "x", "a", "b", "c", "d");
+    }
+
+    public void testEmptyDelta() {
+        GameScoresDeltaMessage delta = new GameScoresDeltaMessage();
+        mModel.applyDelta(delta);
+
+        assertOrder("a", "b", "c", "d", "e");
+        assertEquals(0, mDataSetChanges);
+        assertEquals(-1, mRangeStart);
+    }
+
+    public void testManyDeltas() {
+        // Rotate the last player to the top, over and over
+        String[] expected = {"a", "b", "c", "d", "e"};
+        for (int i = 0; i < 20; i++) {
+            String last = expected[4];
+            System.arraycopy(expected, 0, expected, 1, 4);
+            expected[0] = last;
+            mModel.applyDelta(delta(null, change(last, 0)));
+            assertOrder(expected);
+        }
+    }
+}
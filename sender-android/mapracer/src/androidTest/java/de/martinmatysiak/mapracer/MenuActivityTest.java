@@ -0,0 +1,35 @@
+package de.martinmatysiak.mapracer;
+
+import junit.framework.TestCase;
+
+public class MenuActivityTest extends TestCase {
+
+    private static final String ROUTE = "com.google.android.gms/.cast.media.CastMediaRouteProviderService:abc";
+
+    public void testRestoresSavedRoute() {
+        assertTrue(MenuActivity.shouldRestoreRoute(ROUTE, ROUTE, false, false, true));
+    }
+
+    public void testNothingSaved() {
+        // The user unselected the route last time
+        assertFalse(MenuActivity.shouldRestoreRoute(null, ROUTE, false, false, true));
+    }
+
+    public void testOtherRoute() {
+        assertFalse(MenuActivity.shouldRestoreRoute(ROUTE, ROUTE + "-other", false, false, true));
+        assertFalse(MenuActivity.shouldRestoreRoute(ROUTE, null, false, false, true));
+    }
+
+    public void testAlreadySelected() {
+        assertFalse(MenuActivity.shouldRestoreRoute(ROUTE, ROUTE, true, false, true));
+    }
+
+    public void testDeviceAlreadyChosen() {
+        // E.g. the user picked a device before the saved route showed up
+        assertFalse(MenuActivity.shouldRestoreRoute(ROUTE, ROUTE, false, true, true));
+    }
+
+    public void testRouteWithoutOurApp() {
+        assertFalse(MenuActivity.shouldRestoreRoute(ROUTE, ROUTE, false, false, false));
+    }
+}
@@ -0,0 +1,69 @@
+package de.martinmatysiak.mapracer;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.StreetViewPanoramaLink;
+import com.google.android.gms.maps.model.StreetViewPanoramaLocation;
+
+import junit.framework.TestCase;
+
+public class PanoramaCacheTest extends TestCase {
+
+    private static StreetViewPanoramaLocation panorama(String panoId) {
+        return new StreetViewPanoramaLocation(new StreetViewPanoramaLink[0], new LatLng(0, 0),
+                panoId);
+    }
+
+    public void testCountsPerSource() {
+        PanoramaCache cache = new PanoramaCache(10);
+        cache.put(panorama("a"), PanoramaCache.Source.PREFETCH);
+        cache.put(panorama("b"), PanoramaCache.Source.PREFETCH);
+        cache.put(panorama("c"), PanoramaCache.Source.RACE);
+
+        assertEquals(PanoramaCache.Source.PREFETCH, cache.lookup("a"));
+        assertEquals(PanoramaCache.Source.RACE, cache.lookup("c"));
+        assertEquals(PanoramaCache.Source.RACE, cache.lookup("c"));
+        assertNull(cache.lookup("d"));
+
+        assertEquals(2, cache.getInsertCount(PanoramaCache.Source.PREFETCH));
+        assertEquals(1, cache.getInsertCount(PanoramaCache.Source.RACE));
+        assertEquals(1, cache.getHitCount(PanoramaCache.Source.PREFETCH));
+        assertEquals(2, cache.getHitCount(PanoramaCache.Source.RACE));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    public void testRevisitKeepsPrefetchSource() {
+        PanoramaCache cache = new PanoramaCache(10);
+        cache.put(panorama("a"), PanoramaCache.Source.PREFETCH);
+        cache.put(panorama("a"), PanoramaCache.Source.RACE);
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getInsertCount(PanoramaCache.Source.PREFETCH));
+        assertEquals(0, cache.getInsertCount(PanoramaCache.Source.RACE));
+        assertEquals(PanoramaCache.Source.PREFETCH, cache.lookup("a"));
+    }
+
+    public void testEvictsLeastRecentlyUsed() {
+        PanoramaCache cache = new PanoramaCache(2);
+        cache.put(panorama("a"), PanoramaCache.Source.PREFETCH);
+        cache.put(panorama("b"), PanoramaCache.Source.PREFETCH);
+        cache.lookup("a");
+        cache.put(panorama("c"), PanoramaCache.Source.RACE);
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+    }
+
+    public void testClear() {
+        PanoramaCache cache = new PanoramaCache(2);
+        cache.put(panorama("a"), PanoramaCache.Source.RACE);
+        cache.lookup("a");
+        cache.lookup("b");
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getInsertCount(PanoramaCache.Source.RACE));
+        assertEquals(0, cache.getHitCount(PanoramaCache.Source.RACE));
+        assertEquals(0, cache.getMissCount());
+    }
+}
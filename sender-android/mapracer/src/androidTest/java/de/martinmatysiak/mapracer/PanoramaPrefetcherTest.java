@@ -0,0 +1,108 @@
+package de.martinmatysiak.mapracer;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs the PanoramaPrefetcher against a FakePanoramaProvider.
+ */
+public class PanoramaPrefetcherTest extends TestCase {
+
+    private static final LatLng START = new LatLng(52.5163, 13.3777);
+
+    private FakePanoramaProvider mProvider;
+    private PanoramaCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // A street: a - b - c - d - e, with a side street b - x - y
+        mProvider = new FakePanoramaProvider()
+                .add("a", "b")
+                .add("b", "a", "c", "x")
+                .add("c", "b", "d")
+                .add("d", "c", "e")
+                .add("e", "d")
+                .add("x", "b", "y")
+                .add("y", "x");
+        mCache = new PanoramaCache(100);
+    }
+
+    public void testBreadthFirstUpToMaxDepth() {
+        PanoramaPrefetcher prefetcher = new PanoramaPrefetcher(mProvider, mCache, 2);
+        prefetcher.start(START);
+        assertTrue(prefetcher.isRunning());
+        mProvider.answerAll();
+
+        assertFalse(prefetcher.isRunning());
+        // d and y are three hops away
+        assertEquals(Arrays.asList("a", "b", "c", "x"), mProvider.getLoaded());
+        assertEquals(4, mCache.size());
+        assertFalse(mCache.contains("d"));
+        assertFalse(mCache.contains("y"));
+    }
+
+    public void testOneRequestAtATime() {
+        new PanoramaPrefetcher(mProvider, mCache, 10).start(START);
+        mProvider.answerAll();
+        assertEquals(1, mProvider.getMaxPending());
+        assertEquals(7, mProvider.getLoaded().size());
+    }
+
+    public void testCountsAsPrefetch() {
+        new PanoramaPrefetcher(mProvider, mCache, 1).start(START);
+        mProvider.answerAll();
+
+        assertEquals(2, mCache.getInsertCount(PanoramaCache.Source.PREFETCH));
+        assertEquals(0, mCache.getInsertCount(PanoramaCache.Source.RACE));
+        assertEquals(PanoramaCache.Source.PREFETCH, mCache.lookup("b"));
+    }
+
+    public void testSkipsCachedPanoramas() {
+        mCache.put(mProvider.get("c"), PanoramaCache.Source.RACE);
+        new PanoramaPrefetcher(mProvider, mCache, 3).start(START);
+        mProvider.answerAll();
+
+        assertFalse(mProvider.getLoaded().contains("c"));
+        // Nothing behind c is reachable without loading c
+        assertFalse(mCache.contains("d"));
+        assertEquals(PanoramaCache.Source.RACE, mCache.lookup("c"));
+    }
+
+    public void testTimeoutsAreSkipped() {
+        mProvider.remove("c");
+        new PanoramaPrefetcher(mProvider, mCache, 3).start(START);
+        mProvider.answerAll();
+
+        assertTrue(mProvider.getLoaded().contains("c"));
+        assertFalse(mCache.contains("c"));
+        assertTrue(mCache.contains("y"));
+    }
+
+    public void testStop() {
+        PanoramaPrefetcher prefetcher = new PanoramaPrefetcher(mProvider, mCache, 10);
+        prefetcher.start(START);
+        mProvider.answer();
+        mProvider.answer();
+        prefetcher.stop();
+
+        assertFalse(prefetcher.isRunning());
+        assertFalse(mProvider.answer());
+        assertEquals(2, mCache.size());
+    }
+
+    public void testRestart() {
+        PanoramaPrefetcher prefetcher = new PanoramaPrefetcher(mProvider, mCache, 1);
+        prefetcher.start(START);
+        mProvider.answer();
+        prefetcher.start(START);
+        mProvider.answerAll();
+
+        assertFalse(prefetcher.isRunning());
+        assertTrue(mCache.contains("b"));
+        assertEquals(1, mProvider.getMaxPending());
+    }
+}
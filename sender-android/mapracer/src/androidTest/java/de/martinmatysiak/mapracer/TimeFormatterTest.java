@@ -0,0 +1,37 @@
+package de.martinmatysiak.mapracer;
+
+import junit.framework.TestCase;
+
+public class TimeFormatterTest extends TestCase {
+
+    private static String format(long millis) {
+        char[] out = new char[TimeFormatter.LENGTH];
+        int length = TimeFormatter.format(millis, out);
+        return new String(out, 0, length);
+    }
+
+    private static String formatInt(int value, int size) {
+        char[] out = new char[size];
+        int offset = TimeFormatter.formatInt(value, out);
+        return new String(out, offset, size - offset);
+    }
+
+    public void testFormat() {
+        assertEquals("00:00.000", format(0));
+        assertEquals("00:00.007", format(7));
+        assertEquals("01:23.045", format(83045));
+        assertEquals("59:59.999", format(3599999));
+        // Minutes wrap at one hour
+        assertEquals("00:00.000", format(3600000));
+        assertEquals("00:00.000", format(-5));
+    }
+
+    public void testFormatInt() {
+        assertEquals("0", formatInt(0, 10));
+        assertEquals("7", formatInt(7, 10));
+        assertEquals("1024", formatInt(1024, 10));
+        assertEquals(String.valueOf(Integer.MAX_VALUE), formatInt(Integer.MAX_VALUE, 10));
+        // Only the lowest digits fit
+        assertEquals("24", formatInt(1024, 2));
+    }
+}
@@ -2,85 +2,360 @@ package de.martinmatysiak.mapracer;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
-import com.google.android.gms.cast.Cast;
 import com.google.android.gms.cast.CastDevice;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.PendingResult;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.common.api.Status;
 
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.martinmatysiak.mapracer.data.LoginMessage;
 import de.martinmatysiak.mapracer.data.LogoutMessage;
 import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.MessageType;
+import de.martinmatysiak.mapracer.data.PingMessage;
+import de.martinmatysiak.mapracer.data.PlayerStateMessage;
+import de.martinmatysiak.mapracer.data.PongMessage;
+import de.martinmatysiak.mapracer.data.PositionCodec;
+import de.martinmatysiak.mapracer.data.PositionMessage;
+import de.martinmatysiak.mapracer.metrics.ClockSync;
+import de.martinmatysiak.mapracer.metrics.LatencyHistogram;
+import de.martinmatysiak.mapracer.transport.MessageCallback;
+import de.martinmatysiak.mapracer.transport.MessageCallbackRegistry;
+import de.martinmatysiak.mapracer.transport.OutboundQueue;
+import de.martinmatysiak.mapracer.transport.SendCallback;
+import de.martinmatysiak.mapracer.transport.SendRateController;
+import de.martinmatysiak.mapracer.transport.SocketTransport;
+import de.martinmatysiak.mapracer.transport.Transport;
+import de.martinmatysiak.mapracer.transport.TransportListener;
 
 /**
  * A helper class which takes care of all things related to handling the connection to the
- * Google APIs.
+ * receiver. The connection itself is made by a {@link Transport}, which is a {@link CastTransport}
+ * for the selected Cast device or, for local receivers and testing, a {@link SocketTransport} (see
+ * {@link Constants#DEBUG_LAN_RECEIVER_HOST}).
+ * <p/>
+ * There is only one instance per process (see {@link #getInstance(Context)}), so that all
+ * activities share the same Cast session. Visible components {@link #acquire()} the session in
+ * onStart and {@link #release()} it in onStop; the API client is only disconnected once nobody
+ * holds on to it anymore.
+ * <p/>
+ * Encoding and decoding of messages happens on a dedicated I/O thread, so that neither large
+ * scoreboards nor a steady stream of positions compete with the UI thread. Callbacks are still
+ * invoked on the main thread. Outbound messages wait in an {@link OutboundQueue}, where control
+ * messages take precedence over positions and only the newest position is kept. If the receiver
+ * supports it, positions are sent on a namespace of their own.
+ * <p/>
+ * Only a limited number of messages are handed to the transport before it reports them as sent,
+ * so that a congested network makes messages wait (and positions get replaced) in our queue
+ * rather than pile up inside Play Services. The completions also drive the
+ * {@link SendRateController}, which tells the PositionSender how often positions can be sent.
  */
-public class ApiClientManager
-        implements CastProvider,
-        GoogleApiClient.ConnectionCallbacks,
-        GoogleApiClient.OnConnectionFailedListener,
-        ResultCallback<Cast.ApplicationConnectionResult>,
-        Cast.MessageReceivedCallback {
+public class ApiClientManager implements CastProvider {
 
     public static final String TAG = ApiClientManager.class.getSimpleName();
 
+    private static ApiClientManager sInstance;
+
     private Context mContext;
     private CastDevice mSelectedDevice;
-    private GoogleApiClient mApiClient;
+    private volatile Transport mTransport;
     private SharedPreferences mPreferences;
     private ConnectionStatus mConnectionStatus = ConnectionStatus.NOT_AVAILABLE;
     private List<ConnectionStatusChangeCallback> mConnectionStatusChangeCallbacks = new ArrayList<ConnectionStatusChangeCallback>();
-    private Map<String, List<Cast.MessageReceivedCallback>> mMessageReceivedCallbacks = new HashMap<String, List<Cast.MessageReceivedCallback>>();
+    // Both are copied on write, so that callbacks can (un)subscribe while messages are dispatched
+    private Map<String, MessageReceivedCallback[]> mMessageReceivedCallbacks = new ConcurrentHashMap<String, MessageReceivedCallback[]>();
+    private Map<String, MessageCallbackRegistry> mMessageCallbacks = new ConcurrentHashMap<String, MessageCallbackRegistry>();
     private boolean mAutoConnect = false;
+    private PositionCodec mPositionCodec = new PositionCodec();
+    private Handler mHandler = new Handler(Looper.getMainLooper());
+    private HandlerThread mIoThread;
+    private Handler mIoHandler;
+    private int mReferenceCount = 0;
+    private long mConnectStartTime = 0;
+    private long mLastConnectDuration = -1;
+    // The manager is created right when the app starts, so this is our cold start timestamp
+    private final long mCreatedAt = SystemClock.elapsedRealtime();
+    private long mColdStartDuration = -1;
+    private boolean mLastConnectResumed = false;
+    private OutboundQueue mOutbound = new OutboundQueue(Constants.OUTBOUND_QUEUE_SIZE,
+            Constants.SEND_WINDOW);
+    private volatile int mSendGeneration = 0;
+    private SendRateController mSendRate = new SendRateController(
+            Constants.POSITION_SEND_INTERVAL, Constants.POSITION_SEND_INTERVAL_MAX,
+            Constants.POSITION_SEND_INTERVAL_STEP, Constants.SEND_LATENCY_TARGET);
+    private String mPositionNamespace = null;
+    private Backoff mBackoff = new Backoff(Constants.RECONNECT_MIN_DELAY, Constants.RECONNECT_MAX_DELAY);
+    private LatencyHistogram mRoundTripTimes = new LatencyHistogram();
+    private LatencyHistogram mSendTimes = new LatencyHistogram();
+    private long mNextPingId = 0;
+    private ClockSync mClockSync = new ClockSync();
+
+    // Disconnects once the last reference has been released and no one took over in the meantime
+    Runnable mReleaseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mReferenceCount == 0) {
+                Log.d(TAG, "Session no longer referenced, disconnecting");
+                setAutoConnect(false);
+                disconnect();
+            }
+        }
+    };
+
+    // Retries to establish the session until we are casting again or nobody needs it anymore
+    Runnable mReconnectRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mAutoConnect || mTransport == null
+                    || mConnectionStatus == ConnectionStatus.CASTING) {
+                return;
+            }
+
+            Log.d(TAG, "Reconnect attempt " + mBackoff.getAttempt());
+            connect();
+            scheduleReconnect();
+        }
+    };
 
-    Cast.Listener mCastClientListener = new Cast.Listener() {
+    // Periodically probes the round trip time to the receiver while casting
+    Runnable mPingRunnable = new Runnable() {
         @Override
-        public void onApplicationStatusChanged() {
-            if (mApiClient != null) {
-                Log.d(TAG, "onApplicationStatusChanged: "
-                        + Cast.CastApi.getApplicationStatus(mApiClient));
+        public void run() {
+            if (mConnectionStatus != ConnectionStatus.CASTING) {
+                return;
+            }
+
+            PingMessage ping = new PingMessage.Builder()
+                    .withId(mNextPingId++)
+                    .withSentAt(ClockSync.now())
+                    .build();
+            sendMessage(Constants.CAST_NAMESPACE, ping);
+
+            if (mNextPingId % Constants.LATENCY_LOG_INTERVAL == 0) {
+                Log.i(TAG, "Round trip (us): " + mRoundTripTimes);
+                Log.i(TAG, "Send completion (us): " + mSendTimes);
+                Log.i(TAG, "Outbound queue: " + mOutbound);
+                Log.i(TAG, "Send rate: " + mSendRate);
             }
+
+            mHandler.postDelayed(this, Constants.PING_INTERVAL);
         }
+    };
 
+    // Watches for the receiver's answer to the position encoding and namespace we asked for during
+    // login
+    MessageCallback mSessionCallback = new MessageCallback() {
         @Override
-        public void onApplicationDisconnected(int errorCode) {
-            Log.w(TAG, "onApplicationDisconnected: " + errorCode);
-            setSelectedDevice(null);
-            setConnectionStatus(mApiClient.isConnected() ?
-                    ConnectionStatus.CONNECTED : ConnectionStatus.DISCONNECTED);
+        public void onMessageReceived(String namespace, Message message) {
+            if (message.type == MessageType.PLAYER_STATE) {
+                final PlayerStateMessage psm = (PlayerStateMessage) message;
+
+                // The codec and the position namespace are owned by the I/O thread
+                mIoHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (psm.positionEncoding != mPositionCodec.getEncoding()) {
+                            Log.d(TAG, "Using position encoding " + psm.positionEncoding);
+                            mPositionCodec.setEncoding(psm.positionEncoding);
+                        }
+
+                        if (psm.positionNamespace != null
+                                && !psm.positionNamespace.equals(mPositionNamespace)) {
+                            Log.d(TAG, "Using position namespace " + psm.positionNamespace);
+                        }
+                        mPositionNamespace = psm.positionNamespace;
+                    }
+                });
+            }
         }
     };
 
-    public ApiClientManager() { /* empty constructor */ }
+    // Resets everything that was negotiated for the previous session, see onSessionStarted
+    Runnable mResetCodecRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mPositionCodec.reset();
+            mPositionNamespace = null;
 
-    public ApiClientManager(Context context) {
-        init(context);
-    }
+            // Completions of the previous session's messages may never come, start over
+            mSendGeneration++;
+            mOutbound.resetWindow();
+        }
+    };
+
+    // Sends whatever is waiting in the outbound queue
+    Runnable mPumpRunnable = new Runnable() {
+        @Override
+        public void run() {
+            pump();
+        }
+    };
+
+    /**
+     * Moves the events of a transport to the main thread and drops them once the transport has
+     * been replaced.
+     */
+    private class SessionListener implements TransportListener {
+        private final Transport mOwner;
+
+        SessionListener(Transport owner) {
+            mOwner = owner;
+        }
+
+        private void runOnMainThread(final Runnable runnable) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                if (mTransport == mOwner) {
+                    runnable.run();
+                }
+                return;
+            }
+
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mTransport == mOwner) {
+                        runnable.run();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onTransportConnected(final boolean resumed) {
+            runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    onSessionStarted(resumed);
+                }
+            });
+        }
+
+        @Override
+        public void onTransportSuspended() {
+            runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    Log.w(TAG, "Transport suspended");
+                    setConnectionStatus(ConnectionStatus.SUSPENDED);
+                    scheduleReconnect();
+                }
+            });
+        }
 
-    public ApiClientManager(Context context, CastDevice castDevice) {
-        init(context, castDevice);
+        @Override
+        public void onTransportDisconnected(final boolean sessionEnded) {
+            runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    Log.w(TAG, "Transport disconnected, session ended: " + sessionEnded);
+                    if (sessionEnded && mSelectedDevice != null) {
+                        setSelectedDevice(null);
+                    } else {
+                        setConnectionStatus(ConnectionStatus.DISCONNECTED);
+                        scheduleReconnect();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onTransportMessage(final String namespace, final String message) {
+            // Typed listeners share a single instance, which is deserialized on the I/O thread
+            // right away. Whether anyone is still interested is checked once it has been parsed.
+            mIoHandler.post(new DecodeTask(mOwner, namespace, message, ClockSync.now()));
+
+            if (!mMessageReceivedCallbacks.containsKey(namespace)) {
+                return;
+            }
+
+            runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    MessageReceivedCallback[] callbacks = mMessageReceivedCallbacks.get(namespace);
+                    if (callbacks == null) {
+                        return;
+                    }
+
+                    for (int i = 0; i < callbacks.length; i++) {
+                        callbacks[i].onMessageReceived(namespace, message);
+                    }
+                }
+            });
+        }
     }
 
-    public void init(Context context) {
-        init(context, null);
+    /**
+     * @param context Any context, only its application context will be kept.
+     * @return The process-wide instance.
+     */
+    public static synchronized ApiClientManager getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ApiClientManager(context.getApplicationContext());
+        }
+
+        return sInstance;
     }
 
-    public void init(Context context, CastDevice castDevice) {
+    private ApiClientManager(Context context) {
         mContext = context;
         mPreferences = context.getSharedPreferences(Constants.PREFERENCES, Context.MODE_PRIVATE);
-        setSelectedDevice(castDevice);
+        mIoThread = new HandlerThread(TAG + "-io");
+        mIoThread.start();
+        mIoHandler = new Handler(mIoThread.getLooper());
+        addMessageCallback(Constants.CAST_NAMESPACE, mSessionCallback, MessageType.PLAYER_STATE);
+        setTransport(createLanTransport());
+    }
+
+    /**
+     * @return A transport to the receiver configured in the constants, if any.
+     */
+    private static Transport createLanTransport() {
+        if (Constants.DEBUG_LAN_RECEIVER_HOST == null) {
+            return null;
+        }
+
+        return new SocketTransport(Constants.DEBUG_LAN_RECEIVER_HOST,
+                Constants.DEBUG_LAN_RECEIVER_PORT);
+    }
+
+    /**
+     * Registers a component that needs the Cast session. Connects if this is the first one.
+     */
+    public void acquire() {
+        mReferenceCount++;
+        Log.d(TAG, "acquire: " + mReferenceCount);
+        mHandler.removeCallbacks(mReleaseRunnable);
+        setAutoConnect(true);
+        connect();
+    }
+
+    /**
+     * Unregisters a component that needed the Cast session. The session is disconnected shortly
+     * after the last reference is gone, so that the hand-over between two activities (where the
+     * old one is stopped only after the new one has been started) or a configuration change does
+     * not tear down the connection.
+     */
+    public void release() {
+        if (mReferenceCount == 0) {
+            Log.w(TAG, "release called without matching acquire");
+            return;
+        }
+
+        mReferenceCount--;
+        Log.d(TAG, "release: " + mReferenceCount);
+        if (mReferenceCount == 0) {
+            mHandler.postDelayed(mReleaseRunnable, Constants.SESSION_RELEASE_DELAY);
+        }
     }
 
     public void setSelectedDevice(CastDevice newDevice) {
@@ -89,64 +364,56 @@ public class ApiClientManager
             return;
         }
 
-        CastDevice oldDevice = mSelectedDevice;
+        // Without a Cast device, fall back to the LAN receiver (if there is one)
         mSelectedDevice = newDevice;
+        setTransport(newDevice != null ?
+                new CastTransport(mContext, newDevice, mPreferences) : createLanTransport());
+    }
 
-        // If the device changed, we have to reinitialize the API client
-        if (oldDevice != null) {
-            destroy();
-        }
-
-        if (newDevice != null) {
-            create();
+    /**
+     * Replaces the transport to the receiver, ending the session over the previous one.
+     *
+     * @param transport The new transport or null if there is no receiver to connect to.
+     */
+    public void setTransport(Transport transport) {
+        if (mTransport != null) {
+            Log.d(TAG, "Closing " + mTransport.getClass().getSimpleName());
+            disconnect(true);
+            mTransport.setListener(null);
         }
-    }
 
-    private void create() {
-        Log.d(TAG, "create");
-        if (mSelectedDevice == null) {
+        mTransport = transport;
+        if (transport == null) {
+            setConnectionStatus(ConnectionStatus.NOT_AVAILABLE);
             return;
         }
 
-        Cast.CastOptions.Builder apiOptionsBuilder = Cast.CastOptions
-                .builder(mSelectedDevice, mCastClientListener);
+        Log.d(TAG, "Using " + transport.getClass().getSimpleName());
+        transport.setListener(new SessionListener(transport));
+        Set<String> namespaces = new HashSet<String>(mMessageReceivedCallbacks.keySet());
+        namespaces.addAll(mMessageCallbacks.keySet());
+        for (String namespace : namespaces) {
+            transport.subscribe(namespace);
+        }
 
-        mApiClient = new GoogleApiClient.Builder(mContext)
-                .addApi(Cast.API, apiOptionsBuilder.build())
-                .addConnectionCallbacks(this)
-                .addOnConnectionFailedListener(this)
-                .build();
         setConnectionStatus(ConnectionStatus.DISCONNECTED);
-
         if (mAutoConnect) {
             connect();
         }
     }
 
-    private void destroy() {
-        Log.d(TAG, "destroy");
-        disconnect(true);
-
-        if (mApiClient != null) {
-            // Always disconnect the API client onStop as per Guidelines, otherwise we might end up
-            // with "ghost" clients still connected to the cast receiver.
-            mApiClient.unregisterConnectionCallbacks(this);
-            mApiClient.unregisterConnectionFailedListener(this);
-        }
-
-        mApiClient = null;
-        setConnectionStatus(ConnectionStatus.NOT_AVAILABLE);
-    }
-
     public void setAutoConnect(boolean autoConnect) {
         mAutoConnect = autoConnect;
     }
 
     public void connect() {
         Log.d(TAG, "connect");
-        if (mApiClient != null && !mApiClient.isConnected()) {
-            setConnectionStatus(ConnectionStatus.CONNECTING);
-            mApiClient.connect();
+        if (mTransport != null && !mTransport.isConnected()) {
+            if (mConnectionStatus != ConnectionStatus.CONNECTING) {
+                mConnectStartTime = SystemClock.elapsedRealtime();
+                setConnectionStatus(ConnectionStatus.CONNECTING);
+            }
+            mTransport.connect();
         }
     }
 
@@ -156,16 +423,26 @@ public class ApiClientManager
 
     public void disconnect(boolean logout) {
         Log.d(TAG, "disconnect:" + logout);
-        if (mApiClient != null && mApiClient.isConnected()) {
-            if (logout) {
-                // Indicate that the player won't be coming back anytime soon
-                sendMessage(Constants.CAST_NAMESPACE, new LogoutMessage());
-                Cast.CastApi.leaveApplication(mApiClient);
-            }
 
-            mApiClient.disconnect();
-            setConnectionStatus(ConnectionStatus.DISCONNECTED);
+        // Intentional disconnect, so neither retry nor replay anything later on
+        mHandler.removeCallbacks(mReconnectRunnable);
+        mHandler.removeCallbacks(mPingRunnable);
+        mBackoff.reset();
+        mOutbound.clear();
+
+        if (mTransport == null) {
+            return;
+        }
+
+        if (logout && mTransport.isConnected()) {
+            // Indicate that the player won't be coming back anytime soon. This has to go out
+            // right away, as the transport is disconnected before the I/O thread would get to it.
+            mIoHandler.removeCallbacksAndMessages(null);
+            mTransport.send(Constants.CAST_NAMESPACE, new LogoutMessage().toJson(), null);
         }
+
+        mTransport.disconnect(logout);
+        setConnectionStatus(ConnectionStatus.DISCONNECTED);
     }
 
     private void setConnectionStatus(ConnectionStatus connectionStatus) {
@@ -179,6 +456,10 @@ public class ApiClientManager
         }
     }
 
+    /**
+     * @return The Cast device for which a session is managed, or null if there is none (or a LAN
+     * receiver is used instead).
+     */
     @Override
     public CastDevice getSelectedDevice() {
         return mSelectedDevice;
@@ -202,107 +483,349 @@ public class ApiClientManager
     }
 
     @Override
-    public PendingResult<Status> sendMessage(String namespace, Message message) {
-        return Cast.CastApi.sendMessage(mApiClient, namespace, message.toJson());
+    public void sendMessage(String namespace, Message message) {
+        if (mTransport == null) {
+            Log.d(TAG, "Not casting, discarding " + message.type);
+            return;
+        }
+
+        // While the session is (re)connecting, the queue holds on to the message until it is back
+        mOutbound.add(namespace, message);
+        if (mConnectionStatus == ConnectionStatus.CASTING) {
+            schedulePump();
+        }
     }
 
-    @Override
-    public void addMessageReceivedCallback(String namespace, Cast.MessageReceivedCallback callback) {
-        if (!mMessageReceivedCallbacks.containsKey(namespace)) {
-            // First request for this namespace, subscribe to it ourselves if we're currently
-            // casting (otherwise it will be done in onResult).
-            if (mConnectionStatus == ConnectionStatus.CASTING) {
-                try {
-                    Cast.CastApi.setMessageReceivedCallbacks(mApiClient, namespace, this);
-                } catch (IOException ex) {
-                    Log.w(TAG, "Could not subscribe to channel for " + namespace, ex);
+    private void schedulePump() {
+        mIoHandler.removeCallbacks(mPumpRunnable);
+        mIoHandler.post(mPumpRunnable);
+    }
+
+    /**
+     * Sends queued control messages and then the newest position, as long as the send window has
+     * room. Only one position is in flight at a time, so that a slow channel makes us skip
+     * outdated positions instead of piling them up in the transport. Runs on the I/O thread.
+     */
+    private void pump() {
+        Transport transport = mTransport;
+        if (transport == null || !transport.isConnected()) {
+            // Stays queued until the session is back
+            return;
+        }
+
+        OutboundQueue.Entry entry;
+        while ((entry = mOutbound.next()) != null) {
+            transmit(transport, entry);
+        }
+    }
+
+    /**
+     * Encodes and sends the given message, which occupies a slot of the send window until the
+     * transport reports it as sent. Runs on the I/O thread.
+     */
+    private void transmit(Transport transport, final OutboundQueue.Entry entry) {
+        final int generation = mSendGeneration;
+        final boolean position = entry.message instanceof PositionMessage;
+        String namespace = entry.namespace;
+        if (position && mPositionNamespace != null
+                && Constants.CAST_NAMESPACE.equals(namespace)) {
+            namespace = mPositionNamespace;
+        }
+
+        final long submitted = ClockSync.now();
+        String json = position ?
+                mPositionCodec.encode((PositionMessage) entry.message) : entry.message.toJson();
+        transport.send(namespace, json, new SendCallback() {
+            @Override
+            public void onSendComplete(boolean success) {
+                long completed = ClockSync.now();
+                if (success) {
+                    mSendTimes.record(completed - submitted);
+                }
+
+                if (generation != mSendGeneration) {
+                    // Belongs to a previous session
+                    return;
                 }
+
+                mSendRate.onSendComplete(submitted, completed, success);
+                if (position && !success) {
+                    // The receiver lacks the base of the next delta, so the position lane is
+                    // only freed once the codec has dropped it
+                    mIoHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation == mSendGeneration) {
+                                mPositionCodec.forceKeyframe();
+                                mOutbound.complete(entry);
+                            }
+                        }
+                    });
+                } else {
+                    mOutbound.complete(entry);
+                }
+                schedulePump();
             }
+        });
+    }
+
+    @Override
+    public long getPositionSendInterval() {
+        return mSendRate.getInterval();
+    }
+
+    /**
+     * @return The controller of the position send rate, which also counts late and failed sends.
+     */
+    public SendRateController getSendRate() {
+        return mSendRate;
+    }
+
+    /**
+     * @return The number of messages that have been handed to the transport but not reported as
+     * sent yet.
+     */
+    public int getInFlightCount() {
+        return mOutbound.getInFlight();
+    }
+
+    /**
+     * @return The largest number of messages that were in flight at once.
+     */
+    public int getMaxInFlightCount() {
+        return mOutbound.getMaxInFlight();
+    }
+
+    /**
+     * @return The queue of outbound messages, which also provides per lane metrics.
+     */
+    public OutboundQueue getOutboundQueue() {
+        return mOutbound;
+    }
+
+    @Override
+    public ClockSync getClockSync() {
+        return mClockSync;
+    }
+
+    /**
+     * @return Round trip times of the periodic pings in microseconds, i.e. from sending the ping
+     * until its pong has been received.
+     */
+    public LatencyHistogram getRoundTripTimes() {
+        return mRoundTripTimes;
+    }
 
-            mMessageReceivedCallbacks.put(namespace, new ArrayList<Cast.MessageReceivedCallback>());
+    /**
+     * @return The time in microseconds from handing a message to the transport until it reported
+     * the message as sent. The time spent in the outbound queue before is not included, see
+     * {@link #getOutboundQueue()}.
+     */
+    public LatencyHistogram getSendTimes() {
+        return mSendTimes;
+    }
+
+    @Override
+    public synchronized void addMessageReceivedCallback(String namespace,
+                                                        MessageReceivedCallback callback) {
+        MessageReceivedCallback[] current = mMessageReceivedCallbacks.get(namespace);
+        if (current == null) {
+            subscribe(namespace);
+            current = new MessageReceivedCallback[0];
         }
 
-        // Add the callback to the queue
-        mMessageReceivedCallbacks.get(namespace).add(callback);
+        MessageReceivedCallback[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = callback;
+        mMessageReceivedCallbacks.put(namespace, updated);
     }
 
     @Override
-    public void removeMessageReceivedCallback(String namespace, Cast.MessageReceivedCallback callback) {
-        if (!mMessageReceivedCallbacks.containsKey(namespace)) {
+    public synchronized void removeMessageReceivedCallback(String namespace,
+                                                           MessageReceivedCallback callback) {
+        MessageReceivedCallback[] current = mMessageReceivedCallbacks.get(namespace);
+        int index = current != null ? Arrays.asList(current).indexOf(callback) : -1;
+        if (index < 0) {
             // invalid request
             return;
         }
 
-        mMessageReceivedCallbacks.get(namespace).remove(callback);
-        if (mMessageReceivedCallbacks.get(namespace).size() == 0) {
-            // Listening no longer needed, remove ourselves
-            if (mConnectionStatus == ConnectionStatus.CASTING) {
-                try {
-                    Cast.CastApi.removeMessageReceivedCallbacks(mApiClient, namespace);
-                } catch (IOException ex) {
-                    Log.w(TAG, "Could not remove listener for " + namespace, ex);
-                }
-            }
-
+        if (current.length == 1) {
             mMessageReceivedCallbacks.remove(namespace);
+            unsubscribe(namespace);
+            return;
         }
+
+        MessageReceivedCallback[] updated = new MessageReceivedCallback[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index + 1, updated, index, updated.length - index);
+        mMessageReceivedCallbacks.put(namespace, updated);
     }
 
     @Override
-    public void onConnected(Bundle bundle) {
-        setConnectionStatus(ConnectionStatus.CONNECTED);
-
-        try {
-            Cast.CastApi.launchApplication(mApiClient, Constants.CAST_APP_ID, false)
-                    .setResultCallback(this);
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to launch application", e);
+    public synchronized void addMessageCallback(String namespace, MessageCallback callback,
+                                                MessageType... types) {
+        MessageCallbackRegistry registry = mMessageCallbacks.get(namespace);
+        if (registry == null) {
+            subscribe(namespace);
+            registry = new MessageCallbackRegistry();
+            mMessageCallbacks.put(namespace, registry);
         }
+
+        registry.add(callback, types);
     }
 
     @Override
-    public void onResult(Cast.ApplicationConnectionResult result) {
-        if (result.getStatus().isSuccess()) {
-            // Resubscribe to all watched message channels
-            for (String namespace : mMessageReceivedCallbacks.keySet()) {
-                try {
-                    Cast.CastApi.setMessageReceivedCallbacks(mApiClient, namespace, this);
-                } catch (IOException ex) {
-                    Log.e(TAG, "Could not subscribe to channel " + namespace, ex);
-                }
-            }
+    public synchronized void removeMessageCallback(String namespace, MessageCallback callback) {
+        MessageCallbackRegistry registry = mMessageCallbacks.get(namespace);
+        if (registry == null) {
+            // invalid request
+            return;
+        }
 
-            // Login with our UUID
-            LoginMessage message = new LoginMessage.Builder()
-                    .withId(mPreferences.getString(Constants.PREF_UUID, ""))
-                    .build();
+        registry.remove(callback);
+        if (registry.isEmpty()) {
+            mMessageCallbacks.remove(namespace);
+            unsubscribe(namespace);
+        }
+    }
+
+    /**
+     * @return Whether any raw or typed callback is currently watching the given namespace.
+     */
+    private boolean isWatched(String namespace) {
+        return mMessageReceivedCallbacks.containsKey(namespace)
+                || mMessageCallbacks.containsKey(namespace);
+    }
 
-            sendMessage(Constants.CAST_NAMESPACE, message);
-            setConnectionStatus(ConnectionStatus.CASTING);
-        } else {
-            Log.w(TAG, "ApplicationConnection is not success: " + result.getStatus());
+    private void subscribe(String namespace) {
+        // First request for this namespace, let the transport deliver it from now on
+        if (isWatched(namespace) || mTransport == null) {
+            return;
         }
+
+        mTransport.subscribe(namespace);
     }
 
-    @Override
-    public void onConnectionSuspended(int cause) {
-        Log.w(TAG, "GoogleApi connection suspended: " + cause);
-        setConnectionStatus(ConnectionStatus.SUSPENDED);
+    private void unsubscribe(String namespace) {
+        // Listening no longer needed
+        if (isWatched(namespace) || mTransport == null) {
+            return;
+        }
+
+        mTransport.unsubscribe(namespace);
     }
 
-    @Override
-    public void onConnectionFailed(ConnectionResult connectionResult) {
-        Log.w(TAG, "GoogleApi connection failed: " + connectionResult.toString());
-        setConnectionStatus(ConnectionStatus.DISCONNECTED);
+    private void scheduleReconnect() {
+        if (!mAutoConnect || mTransport == null) {
+            return;
+        }
+
+        long delay = mBackoff.nextDelay();
+        Log.d(TAG, "Scheduling reconnect in " + delay + " ms");
+        mHandler.removeCallbacks(mReconnectRunnable);
+        mHandler.postDelayed(mReconnectRunnable, delay);
     }
 
-    @Override
-    public void onMessageReceived(CastDevice castDevice, String namespace, String message) {
-        // Propagate to all subscribed listeners
-        if (mMessageReceivedCallbacks.containsKey(namespace)) {
-            for (Cast.MessageReceivedCallback cb : mMessageReceivedCallbacks.get(namespace)) {
-                cb.onMessageReceived(castDevice, namespace, message);
+    /**
+     * @return The time in milliseconds it took from connecting the transport until the session
+     * was established the last time, or -1 if it never was.
+     */
+    public long getLastConnectDuration() {
+        return mLastConnectDuration;
+    }
+
+    /**
+     * @return The time in milliseconds from the start of the app until we were casting for the
+     * first time, including the discovery of the route, or -1 if we haven't been casting yet.
+     */
+    public long getColdStartDuration() {
+        return mColdStartDuration;
+    }
+
+    /**
+     * @return Whether the last established session was an existing one that could be rejoined.
+     */
+    public boolean wasLastConnectResumed() {
+        return mLastConnectResumed;
+    }
+
+    private void onSessionStarted(boolean resumed) {
+        mLastConnectDuration = SystemClock.elapsedRealtime() - mConnectStartTime;
+        mLastConnectResumed = resumed;
+        Log.i(TAG, (resumed ? "Resumed" : "Started") + " session in "
+                + mLastConnectDuration + " ms");
+        if (mColdStartDuration < 0) {
+            mColdStartDuration = SystemClock.elapsedRealtime() - mCreatedAt;
+            Log.i(TAG, "Casting " + mColdStartDuration + " ms after cold start");
+        }
+
+        // Login with our UUID. This is needed even when rejoining, as the receiver has to
+        // associate our new sender ID with the player. Positions are sent as plain JSON and on
+        // the main namespace until the receiver has confirmed the requested encoding and
+        // namespace, so that older receivers keep working. The login goes out before anything
+        // that was queued while we were away.
+        mIoHandler.post(mResetCodecRunnable);
+        mSendRate.reset();
+        mOutbound.addFirst(Constants.CAST_NAMESPACE, new LoginMessage.Builder()
+                .withId(mPreferences.getString(Constants.PREF_UUID, ""))
+                .withPositionEncoding(Constants.POSITION_ENCODING)
+                .withPositionNamespace(Constants.CAST_POSITION_NAMESPACE)
+                .build());
+
+        // Catch up on everything that was sent while we were away
+        mHandler.removeCallbacks(mReconnectRunnable);
+        mBackoff.reset();
+        schedulePump();
+
+        setConnectionStatus(ConnectionStatus.CASTING);
+        mHandler.removeCallbacks(mPingRunnable);
+        mHandler.post(mPingRunnable);
+    }
+
+    /**
+     * Parses a received message on the I/O thread and then posts it back to the main thread for
+     * dispatching it to the typed callbacks, unless none of them is interested in its type.
+     */
+    private class DecodeTask implements Runnable {
+        private final Transport mOwner;
+        private final String mNamespace;
+        private final String mJson;
+        private final long mReceivedAt;
+        private Message mParsed;
+
+        DecodeTask(Transport owner, String namespace, String json, long receivedAt) {
+            mOwner = owner;
+            mNamespace = namespace;
+            mJson = json;
+            mReceivedAt = receivedAt;
+        }
+
+        @Override
+        public void run() {
+            if (mParsed == null) {
+                Log.d(TAG, "onMessageReceived: " + mJson);
+                mParsed = Message.fromJson(mJson);
+                if (mParsed.type == MessageType.PONG) {
+                    PongMessage pong = (PongMessage) mParsed;
+                    mRoundTripTimes.record(mReceivedAt - pong.sentAt);
+                    mClockSync.addSample(pong.sentAt, pong.receivedAt, mReceivedAt);
+                }
+
+                MessageCallbackRegistry registry = mMessageCallbacks.get(mNamespace);
+                if (registry != null && registry.isWatched(mParsed.type)) {
+                    mHandler.post(this);
+                }
+                return;
             }
+
+            // Back on the main thread. Listeners may have unsubscribed (or the transport may have
+            // been replaced) in the meantime.
+            MessageCallbackRegistry registry = mMessageCallbacks.get(mNamespace);
+            if (registry == null || mTransport != mOwner) {
+                return;
+            }
+
+            registry.dispatch(mNamespace, mParsed);
         }
     }
 }
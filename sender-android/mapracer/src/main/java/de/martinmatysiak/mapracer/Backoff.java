@@ -0,0 +1,55 @@
+package de.martinmatysiak.mapracer;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter for retrying connection attempts. Each delay is drawn uniformly
+ * from the upper half of the current window, which doubles with every attempt up to a maximum.
+ * The jitter keeps multiple senders that lost the connection at the same time (e.g. because the
+ * Wi-Fi went down) from hammering the receiver in lockstep.
+ */
+public class Backoff {
+
+    private final long mMinDelay;
+    private final long mMaxDelay;
+    private final Random mRandom = new Random();
+    private int mAttempt = 0;
+
+    /**
+     * @param minDelay The window for the first attempt in milliseconds.
+     * @param maxDelay The largest window in milliseconds.
+     */
+    public Backoff(long minDelay, long maxDelay) {
+        mMinDelay = minDelay;
+        mMaxDelay = maxDelay;
+    }
+
+    /**
+     * @return The time in milliseconds to wait before the next attempt.
+     */
+    public long nextDelay() {
+        long window = mMinDelay << Math.min(mAttempt, 30);
+        if (window <= 0 || window > mMaxDelay) {
+            window = mMaxDelay;
+        } else {
+            mAttempt++;
+        }
+
+        long half = window / 2;
+        return half + (long) (mRandom.nextDouble() * (window - half));
+    }
+
+    /**
+     * @return The number of attempts since the last reset.
+     */
+    public int getAttempt() {
+        return mAttempt;
+    }
+
+    /**
+     * Starts over with the smallest window, e.g. after a successful connection.
+     */
+    public void reset() {
+        mAttempt = 0;
+    }
+}
@@ -1,20 +1,21 @@
 package de.martinmatysiak.mapracer;
 
-import com.google.android.gms.cast.Cast;
 import com.google.android.gms.cast.CastDevice;
-import com.google.android.gms.common.api.PendingResult;
-import com.google.android.gms.common.api.Status;
 
 import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.MessageType;
+import de.martinmatysiak.mapracer.metrics.ClockSync;
+import de.martinmatysiak.mapracer.transport.MessageCallback;
 
 public interface CastProvider {
     /**
-     * @return The device to which the application is currently casting. Might be null.
+     * @return The device to which the application is currently casting. Might be null, also while
+     * connected to a receiver that is not a Cast device.
      */
     public CastDevice getSelectedDevice();
 
     /**
-     * @return The connection status of the internally managed API client.
+     * @return The connection status of the session with the receiver.
      */
     public ConnectionStatus getConnectionStatus();
 
@@ -34,13 +35,13 @@ public interface CastProvider {
 
     /**
      * Adds the given callback to be notified in case of messages for the given namespace. Do not
-     * call CastApi.setMessageReceivedCallback directly as there can be only one listener at a time
-     * which would break usage by multiple fragments or clients.
+     * subscribe at the transport (e.g. CastApi.setMessageReceivedCallbacks) directly as there can
+     * be only one listener at a time which would break usage by multiple fragments or clients.
      *
      * @param namespace The namespace to listen for.
      * @param callback  The callback function to call.
      */
-    public void addMessageReceivedCallback(String namespace, Cast.MessageReceivedCallback callback);
+    public void addMessageReceivedCallback(String namespace, MessageReceivedCallback callback);
 
     /**
      * Removes the given callback from watching for the given namespace.
@@ -48,15 +49,49 @@ public interface CastProvider {
      * @param namespace The namespace from which to remove the callback.
      * @param callback  The callback function to remove.
      */
-    public void removeMessageReceivedCallback(String namespace, Cast.MessageReceivedCallback callback);
+    public void removeMessageReceivedCallback(String namespace, MessageReceivedCallback callback);
 
     /**
-     * Sends the given message via the CastApi or discards it if the client is currently
-     * not casting.
+     * Adds the given callback to be notified in case of messages for the given namespace. In
+     * contrast to a MessageReceivedCallback, the callback receives the already parsed Message,
+     * which is deserialized only once regardless of the number of subscribers. It is only called
+     * for messages of the given types.
+     *
+     * @param namespace The namespace to listen for.
+     * @param callback  The callback function to call.
+     * @param types     The message types to listen for. All types if none given.
+     */
+    public void addMessageCallback(String namespace, MessageCallback callback,
+                                   MessageType... types);
+
+    /**
+     * Removes the given typed callback from watching for the given namespace, for all types.
+     *
+     * @param namespace The namespace from which to remove the callback.
+     * @param callback  The callback function to remove.
+     */
+    public void removeMessageCallback(String namespace, MessageCallback callback);
+
+    /**
+     * @return The estimate of the offset between our clock and the receiver's clock, which is
+     * refined continuously while casting.
+     */
+    public ClockSync getClockSync();
+
+    /**
+     * @return The time in milliseconds that should at least pass between two positions, so that
+     * the connection to the receiver keeps up with them. Adapts to the observed send latency.
+     */
+    public long getPositionSendInterval();
+
+    /**
+     * Sends the given message to the receiver. The message is encoded and sent asynchronously, so
+     * it must not be modified afterwards. While the session is being (re)established, the message
+     * is buffered and sent as soon as we are casting again. Without a selected device it is
+     * discarded.
      *
      * @param namespace The namespace for which to send a message.
      * @param message   The message to send.
-     * @return The CastApi's response.
      */
-    public PendingResult<Status> sendMessage(String namespace, Message message);
+    public void sendMessage(String namespace, Message message);
 }
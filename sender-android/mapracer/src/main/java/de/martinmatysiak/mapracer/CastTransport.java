@@ -0,0 +1,294 @@
+package de.martinmatysiak.mapracer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.google.android.gms.cast.Cast;
+import com.google.android.gms.cast.CastDevice;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import de.martinmatysiak.mapracer.transport.SendCallback;
+import de.martinmatysiak.mapracer.transport.Transport;
+import de.martinmatysiak.mapracer.transport.TransportListener;
+
+/**
+ * A transport to a Cast device, which connects the Google API client and then launches or, if
+ * possible, rejoins the receiver application. The session is persisted, so that it can be
+ * rejoined after a disconnect or process restart.
+ * <p/>
+ * The listener is invoked on the main thread.
+ */
+public class CastTransport
+        implements Transport,
+        GoogleApiClient.ConnectionCallbacks,
+        GoogleApiClient.OnConnectionFailedListener,
+        ResultCallback<Cast.ApplicationConnectionResult>,
+        Cast.MessageReceivedCallback {
+
+    public static final String TAG = CastTransport.class.getSimpleName();
+
+    private final CastDevice mDevice;
+    private final SharedPreferences mPreferences;
+    private final GoogleApiClient mApiClient;
+    private final Set<String> mNamespaces = new CopyOnWriteArraySet<String>();
+    private volatile TransportListener mListener;
+    private volatile boolean mConnected = false;
+    private boolean mActive = false;
+    private boolean mJoining = false;
+    private boolean mLaunching = false;
+
+    Cast.Listener mCastClientListener = new Cast.Listener() {
+        @Override
+        public void onApplicationStatusChanged() {
+            Log.d(TAG, "onApplicationStatusChanged: "
+                    + Cast.CastApi.getApplicationStatus(mApiClient));
+        }
+
+        @Override
+        public void onApplicationDisconnected(int errorCode) {
+            Log.w(TAG, "onApplicationDisconnected: " + errorCode);
+            forgetSession();
+            mConnected = false;
+            if (mActive && mListener != null) {
+                mListener.onTransportDisconnected(true);
+            }
+        }
+    };
+
+    /**
+     * @param context     The context to use for the API client.
+     * @param device      The device to cast to.
+     * @param preferences Where to persist the session.
+     */
+    public CastTransport(Context context, CastDevice device, SharedPreferences preferences) {
+        mDevice = device;
+        mPreferences = preferences;
+
+        Cast.CastOptions.Builder apiOptionsBuilder = Cast.CastOptions
+                .builder(device, mCastClientListener);
+
+        mApiClient = new GoogleApiClient.Builder(context)
+                .addApi(Cast.API, apiOptionsBuilder.build())
+                .addConnectionCallbacks(this)
+                .addOnConnectionFailedListener(this)
+                .build();
+    }
+
+    public CastDevice getDevice() {
+        return mDevice;
+    }
+
+    @Override
+    public void setListener(TransportListener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void connect() {
+        mActive = true;
+        if (mApiClient.isConnected()) {
+            // Only the application connection failed, retry that part
+            if (!mConnected && !mJoining && !mLaunching) {
+                onConnected(null);
+            }
+        } else if (!mApiClient.isConnecting()) {
+            mApiClient.connect();
+        }
+    }
+
+    @Override
+    public void disconnect(boolean leave) {
+        mActive = false;
+        mConnected = false;
+        mJoining = false;
+        mLaunching = false;
+
+        if (mApiClient.isConnected()) {
+            if (leave) {
+                Cast.CastApi.leaveApplication(mApiClient);
+                forgetSession();
+            }
+
+            mApiClient.disconnect();
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return mConnected && mApiClient.isConnected();
+    }
+
+    @Override
+    public void subscribe(String namespace) {
+        if (!mNamespaces.add(namespace) || !mConnected) {
+            // Will be done once the application is connected
+            return;
+        }
+
+        try {
+            Cast.CastApi.setMessageReceivedCallbacks(mApiClient, namespace, this);
+        } catch (IOException ex) {
+            Log.w(TAG, "Could not subscribe to channel for " + namespace, ex);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String namespace) {
+        if (!mNamespaces.remove(namespace) || !mConnected) {
+            return;
+        }
+
+        try {
+            Cast.CastApi.removeMessageReceivedCallbacks(mApiClient, namespace);
+        } catch (IOException ex) {
+            Log.w(TAG, "Could not remove listener for " + namespace, ex);
+        }
+    }
+
+    @Override
+    public void send(String namespace, String message, final SendCallback callback) {
+        if (!mApiClient.isConnected()) {
+            if (callback != null) {
+                callback.onSendComplete(false);
+            }
+            return;
+        }
+
+        PendingResult<Status> result = Cast.CastApi.sendMessage(mApiClient, namespace, message);
+        if (callback != null) {
+            result.setResultCallback(new ResultCallback<Status>() {
+                @Override
+                public void onResult(Status status) {
+                    callback.onSendComplete(status.isSuccess());
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onConnected(Bundle bundle) {
+        if (!mActive) {
+            return;
+        }
+
+        // Try to rejoin the session we were part of before, which saves the receiver from having
+        // to (re)launch the application. Only applies if we are still talking to the same device.
+        String sessionId = mPreferences.getString(Constants.PREF_SESSION_ID, null);
+        String deviceId = mPreferences.getString(Constants.PREF_DEVICE_ID, null);
+        if (sessionId != null && mDevice.getDeviceId().equals(deviceId)) {
+            try {
+                Log.d(TAG, "Rejoining session " + sessionId);
+                mJoining = true;
+                Cast.CastApi.joinApplication(mApiClient, Constants.CAST_APP_ID, sessionId)
+                        .setResultCallback(this);
+                return;
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to rejoin session " + sessionId, e);
+                mJoining = false;
+            }
+        }
+
+        launchApplication();
+    }
+
+    private void launchApplication() {
+        try {
+            mLaunching = true;
+            Cast.CastApi.launchApplication(mApiClient, Constants.CAST_APP_ID, false)
+                    .setResultCallback(this);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to launch application", e);
+            mLaunching = false;
+        }
+    }
+
+    /**
+     * Removes the persisted session, i.e. the next connection will launch the application.
+     */
+    private void forgetSession() {
+        mPreferences.edit()
+                .remove(Constants.PREF_SESSION_ID)
+                .remove(Constants.PREF_DEVICE_ID)
+                .apply();
+    }
+
+    @Override
+    public void onResult(Cast.ApplicationConnectionResult result) {
+        boolean joined = mJoining;
+        mJoining = false;
+        mLaunching = false;
+        if (!mActive) {
+            // We have been disconnected while we were waiting
+            return;
+        }
+
+        if (result.getStatus().isSuccess()) {
+            Log.i(TAG, (joined ? "Resumed" : "Launched") + " session " + result.getSessionId());
+
+            // Remember the session so that we can rejoin it after a disconnect or process restart
+            mPreferences.edit()
+                    .putString(Constants.PREF_SESSION_ID, result.getSessionId())
+                    .putString(Constants.PREF_DEVICE_ID, mDevice.getDeviceId())
+                    .apply();
+
+            // Resubscribe to all watched message channels
+            for (String namespace : mNamespaces) {
+                try {
+                    Cast.CastApi.setMessageReceivedCallbacks(mApiClient, namespace, this);
+                } catch (IOException ex) {
+                    Log.e(TAG, "Could not subscribe to channel " + namespace, ex);
+                }
+            }
+
+            mConnected = true;
+            if (mListener != null) {
+                mListener.onTransportConnected(joined);
+            }
+        } else if (joined) {
+            // The old session is gone (e.g. the receiver was restarted), start a new one instead
+            Log.d(TAG, "Could not rejoin session: " + result.getStatus());
+            forgetSession();
+            launchApplication();
+        } else {
+            Log.w(TAG, "ApplicationConnection is not success: " + result.getStatus());
+            if (mListener != null) {
+                mListener.onTransportDisconnected(false);
+            }
+        }
+    }
+
+    @Override
+    public void onConnectionSuspended(int cause) {
+        Log.w(TAG, "GoogleApi connection suspended: " + cause);
+        mConnected = false;
+        if (mActive && mListener != null) {
+            mListener.onTransportSuspended();
+        }
+    }
+
+    @Override
+    public void onConnectionFailed(ConnectionResult connectionResult) {
+        Log.w(TAG, "GoogleApi connection failed: " + connectionResult.toString());
+        mConnected = false;
+        if (mActive && mListener != null) {
+            mListener.onTransportDisconnected(false);
+        }
+    }
+
+    @Override
+    public void onMessageReceived(CastDevice castDevice, String namespace, String message) {
+        if (mListener != null) {
+            mListener.onTransportMessage(namespace, message);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package de.martinmatysiak.mapracer;
 
-import com.google.android.gms.maps.model.LatLng;
+import de.martinmatysiak.mapracer.data.GeoPoint;
+import de.martinmatysiak.mapracer.data.PositionEncoding;
 
 /**
  * Just some application wide constants in a single place.
@@ -8,18 +9,46 @@ import com.google.android.gms.maps.model.LatLng;
 public class Constants {
     public static final String CAST_APP_ID = "807AB2E8";
     public static final String CAST_NAMESPACE = "urn:x-cast:de.martinmatysiak.mapracer";
+    public static final String CAST_POSITION_NAMESPACE = "urn:x-cast:de.martinmatysiak.mapracer.position";
 
     public static final String INTENT_DEVICE = "device";
     public static final String INTENT_STATE = "state";
     public static final String INTENT_RACE = "race";
 
-    public static final LatLng DEBUG_START_LOCATION = new LatLng(37.413084, -122.069217);
-    public static final LatLng DEBUG_TARGET_LOCATION = new LatLng(37.420283, -122.083961);
+    public static final GeoPoint DEBUG_START_LOCATION = new GeoPoint(37.413084, -122.069217);
+    public static final GeoPoint DEBUG_TARGET_LOCATION = new GeoPoint(37.420283, -122.083961);
     public static final String DEBUG_TARGET_TITLE = "Android";
+    // Replays the previous race as a ghost instead of sending the live position
+    public static final boolean DEBUG_GHOST_REPLAY = false;
+    // Connects to a receiver on the local network instead of a Cast device if set, e.g. the
+    // stand-in receiver of the load generator (see SocketTransport for the framing)
+    public static final String DEBUG_LAN_RECEIVER_HOST = null;
+    public static final int DEBUG_LAN_RECEIVER_PORT = 8765;
 
     public static final String PREFERENCES = "preferences";
     public static final String PREF_UUID = "uuid";
+    public static final String PREF_SESSION_ID = "session_id";
+    public static final String PREF_DEVICE_ID = "device_id";
+    public static final String PREF_ROUTE_ID = "route_id";
 
     public static final int VIBRATE_DURATION = 400;
-    public static final String TIME_FORMAT = "mm:ss.SSS";
+    public static final long START_RECHECK_INTERVAL = 500;
+    public static final int PANORAMA_CACHE_SIZE = 64;
+    public static final int PREFETCH_DEPTH = 3;
+    public static final long PANORAMA_LOAD_TIMEOUT = 3000;
+    public static final String TRACE_DIRECTORY = "traces";
+    public static final int TRACE_BUFFER_SIZE = 4096;
+    public static final int TRACE_KEEP_COUNT = 10;
+    public static final long POSITION_SEND_INTERVAL = 250;
+    public static final long POSITION_SEND_INTERVAL_MAX = 2000;
+    public static final long POSITION_SEND_INTERVAL_STEP = 10;
+    public static final long SEND_LATENCY_TARGET = 200;
+    public static final int SEND_WINDOW = 4;
+    public static final long SESSION_RELEASE_DELAY = 5000;
+    public static final long RECONNECT_MIN_DELAY = 500;
+    public static final long RECONNECT_MAX_DELAY = 30000;
+    public static final int OUTBOUND_QUEUE_SIZE = 32;
+    public static final long PING_INTERVAL = 2000;
+    public static final int LATENCY_LOG_INTERVAL = 30;
+    public static final PositionEncoding POSITION_ENCODING = PositionEncoding.E7_DELTA;
 }
@@ -0,0 +1,20 @@
+package de.martinmatysiak.mapracer;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import de.martinmatysiak.mapracer.data.GeoPoint;
+
+/**
+ * Conversions between the protocol's GeoPoint and the Play Services LatLng.
+ */
+public final class GeoPoints {
+    private GeoPoints() { /* non-instantiable */ }
+
+    public static LatLng toLatLng(GeoPoint point) {
+        return point == null ? null : new LatLng(point.latitude, point.longitude);
+    }
+
+    public static GeoPoint fromLatLng(LatLng latLng) {
+        return latLng == null ? null : new GeoPoint(latLng.latitude, latLng.longitude);
+    }
+}
@@ -0,0 +1,118 @@
+package de.martinmatysiak.mapracer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.io.File;
+import java.io.IOException;
+
+import de.martinmatysiak.mapracer.data.GameState;
+import de.martinmatysiak.mapracer.trace.Trace;
+import de.martinmatysiak.mapracer.trace.TraceReader;
+
+/**
+ * Plays back the positions of a recorded race with their original timing, relative to the start
+ * of that race. The positions are handed to a PositionSender just like live input, so the receiver
+ * can't tell the difference.
+ */
+public class GhostReplay implements Runnable {
+
+    public static final String TAG = GhostReplay.class.getSimpleName();
+
+    private final PositionSender mPositionSender;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private TraceReader mReader;
+    private long mTraceStart;
+    private long mReplayStart;
+    private LatLng mNext;
+
+    public GhostReplay(PositionSender positionSender) {
+        mPositionSender = positionSender;
+    }
+
+    /**
+     * Starts replaying the given trace right away, i.e. the time at which the recorded race started
+     * is mapped to now. A replay that is still running is stopped.
+     *
+     * @return Whether the replay could be started.
+     */
+    public boolean start(File trace) {
+        stop();
+        try {
+            mReader = new TraceReader(trace, Constants.TRACE_BUFFER_SIZE);
+
+            // Skip everything that happened before the race started
+            mTraceStart = -1;
+            while (mTraceStart < 0 && mReader.next()) {
+                if (mReader.getType() == Trace.GAME_STATE
+                        && mReader.getGameState() == GameState.RACE) {
+                    mTraceStart = mReader.getTime();
+                }
+            }
+
+            if (mTraceStart < 0) {
+                Log.w(TAG, "Trace does not contain a race: " + trace);
+                stop();
+                return false;
+            }
+        } catch (IOException ex) {
+            Log.w(TAG, "Could not read trace " + trace, ex);
+            stop();
+            return false;
+        }
+
+        Log.d(TAG, "Replaying " + trace);
+        mReplayStart = SystemClock.uptimeMillis();
+        scheduleNext();
+        return true;
+    }
+
+    public boolean isRunning() {
+        return mReader != null;
+    }
+
+    public void stop() {
+        mHandler.removeCallbacks(this);
+        mNext = null;
+        if (mReader != null) {
+            try {
+                mReader.close();
+            } catch (IOException ex) {
+                Log.w(TAG, "Could not close trace", ex);
+            }
+            mReader = null;
+        }
+    }
+
+    private void scheduleNext() {
+        try {
+            while (mReader.next()) {
+                if (mReader.getType() == Trace.POSITION) {
+                    mNext = new LatLng(mReader.getLatitude(), mReader.getLongitude());
+                    mHandler.postAtTime(this, mReplayStart + mReader.getTime() - mTraceStart);
+                    return;
+                }
+            }
+        } catch (IOException ex) {
+            Log.w(TAG, "Could not read trace", ex);
+        }
+
+        Log.d(TAG, "Replay finished");
+        stop();
+    }
+
+    @Override
+    public void run() {
+        if (mNext == null) {
+            return;
+        }
+
+        mPositionSender.offer(mNext);
+        scheduleNext();
+    }
+}
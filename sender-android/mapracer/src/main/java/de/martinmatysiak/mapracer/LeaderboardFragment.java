@@ -8,65 +8,177 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
 import android.widget.TextView;
 
-import com.google.android.gms.cast.Cast;
-import com.google.android.gms.cast.CastDevice;
-
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import de.martinmatysiak.mapracer.data.GameScoresDeltaMessage;
 import de.martinmatysiak.mapracer.data.GameScoresMessage;
 import de.martinmatysiak.mapracer.data.Message;
 import de.martinmatysiak.mapracer.data.MessageType;
+import de.martinmatysiak.mapracer.transport.MessageCallback;
 
-public class LeaderboardFragment extends ListFragment implements Cast.MessageReceivedCallback {
+public class LeaderboardFragment extends ListFragment implements MessageCallback, LeaderboardModel.Listener {
 
     public static final String TAG = LeaderboardFragment.class.getSimpleName();
 
-    class LeaderboardAdapter extends ArrayAdapter<GameScoresMessage.PlayerInfo> {
-        public LeaderboardAdapter(Context context, List<GameScoresMessage.PlayerInfo> data) {
-            super(context, R.layout.leaderboard_item, data);
+    /**
+     * Caches a row's views and the values they currently show, so that rebinding an unchanged row
+     * neither looks up views nor allocates anything.
+     */
+    static class RowHolder {
+        TextView position;
+        TextView name;
+        TextView score;
+
+        final char[] positionChars = new char[10];
+        final char[] timeChars = new char[TimeFormatter.LENGTH];
+
+        int boundPosition = -1;
+        String boundName = null;
+        long boundTime = -1;
+
+        RowHolder(View row) {
+            this((TextView) row.findViewById(R.id.position),
+                    (TextView) row.findViewById(R.id.name),
+                    (TextView) row.findViewById(R.id.score));
+        }
+
+        RowHolder(TextView position, TextView name, TextView score) {
+            this.position = position;
+            this.name = name;
+            this.score = score;
+        }
+
+        /**
+         * Shows the given player at the given position, only touching the views whose values
+         * changed.
+         */
+        void bind(int position, GameScoresMessage.PlayerInfo player) {
+            if (boundPosition != position) {
+                int offset = TimeFormatter.formatInt(position + 1, positionChars);
+                this.position.setText(positionChars, offset, positionChars.length - offset);
+                boundPosition = position;
+            }
+
+            if (boundName != player.name) {
+                name.setText(player.name);
+                boundName = player.name;
+            }
+
+            // Only finished players (negative score) have a time to show
+            long time = player.score < 0 ? player.time : -1;
+            if (boundTime != time) {
+                if (time < 0) {
+                    score.setText(null);
+                } else {
+                    int length = TimeFormatter.format(time, timeChars);
+                    score.setText(timeChars, 0, length);
+                }
+                boundTime = time;
+            }
+        }
+    }
+
+    class LeaderboardAdapter extends BaseAdapter {
+        private Context mContext;
+        // Row IDs of the players currently shown, never reused so that they stay unique
+        private Map<String, Long> mRowIds = new HashMap<String, Long>();
+        private long mNextRowId = 0;
+
+        public LeaderboardAdapter(Context context) {
+            mContext = context;
         }
 
         @Override
-        public View getView(int position, View convertView, ViewGroup parent) {
-            if (convertView == null) {
-                convertView = LayoutInflater.from(getContext()).inflate(R.layout.leaderboard_item, parent, false);
+        public int getCount() {
+            return mModel.size();
+        }
+
+        @Override
+        public GameScoresMessage.PlayerInfo getItem(int position) {
+            return mModel.get(position);
+        }
+
+        @Override
+        public boolean hasStableIds() {
+            return true;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            String id = getItem(position).id;
+            Long rowId = mRowIds.get(id);
+            if (rowId == null) {
+                rowId = mNextRowId++;
+                mRowIds.put(id, rowId);
+            }
+
+            return rowId;
+        }
+
+        /**
+         * Forgets the row IDs of all players who are not part of the given snapshot, so that the
+         * remaining players keep their rows.
+         */
+        public void retainRowIds(List<GameScoresMessage.PlayerInfo> scores) {
+            if (scores == null || scores.isEmpty()) {
+                mRowIds.clear();
+                return;
+            }
+
+            Set<String> ids = new HashSet<String>();
+            for (GameScoresMessage.PlayerInfo player : scores) {
+                ids.add(player.id);
+            }
+            mRowIds.keySet().retainAll(ids);
+        }
+
+        /**
+         * Forgets the row IDs of the given players, who have left the leaderboard.
+         */
+        public void removeRowIds(List<String> ids) {
+            for (String id : ids) {
+                mRowIds.remove(id);
             }
+        }
 
-            GameScoresMessage.PlayerInfo player = getItem(position);
-            ((TextView) convertView.findViewById(R.id.position)).setText(Integer.toString(position + 1));
-            ((TextView) convertView.findViewById(R.id.name)).setText(player.name);
-            if (player.score < 0) {
-                ((TextView) convertView.findViewById(R.id.score)).setText(
-                        new SimpleDateFormat(Constants.TIME_FORMAT).format(new Date(player.time)));
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            RowHolder holder;
+            if (convertView == null) {
+                convertView = LayoutInflater.from(mContext).inflate(R.layout.leaderboard_item, parent, false);
+                holder = new RowHolder(convertView);
+                convertView.setTag(holder);
+            } else {
+                holder = (RowHolder) convertView.getTag();
             }
 
+            holder.bind(position, getItem(position));
             return convertView;
         }
     }
 
     CastProvider mCastProvider;
     LeaderboardAdapter mAdapter;
-    List<GameScoresMessage.PlayerInfo> mData = new ArrayList<GameScoresMessage.PlayerInfo>();
+    LeaderboardModel mModel = new LeaderboardModel();
 
     public LeaderboardFragment() {
         super();
+        mModel.setListener(this);
     }
 
     public void setData(List<GameScoresMessage.PlayerInfo> data) {
-        mData = data;
-
-        // Clearing and re-adding all elements seems to be the best (or at least simplest) approach.
         if (mAdapter != null) {
-            mAdapter.clear();
-            mAdapter.addAll(mData);
-            mAdapter.notifyDataSetChanged();
+            mAdapter.retainRowIds(data);
         }
+        mModel.setSnapshot(data);
     }
 
     @Override
@@ -75,26 +187,73 @@ public class LeaderboardFragment extends ListFragment implements Cast.MessageRec
         Log.d(TAG, "onAttach");
         try {
             mCastProvider = (CastProvider) activity;
-            mCastProvider.addMessageReceivedCallback(Constants.CAST_NAMESPACE, this);
+            mCastProvider.addMessageCallback(Constants.CAST_NAMESPACE, this,
+                    MessageType.GAME_SCORES, MessageType.GAME_SCORES_DELTA);
         } catch (ClassCastException ex) {
             throw new ClassCastException(activity.toString()
                     + " must implement CastProvider");
         }
     }
 
+    @Override
+    public void onDetach() {
+        Log.d(TAG, "onDetach");
+        mCastProvider.removeMessageCallback(Constants.CAST_NAMESPACE, this);
+        mCastProvider = null;
+        super.onDetach();
+    }
+
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
-        mAdapter = new LeaderboardAdapter(inflater.getContext(), mData);
+        mAdapter = new LeaderboardAdapter(inflater.getContext());
         setListAdapter(mAdapter);
         return super.onCreateView(inflater, container, savedInstanceState);
     }
 
     @Override
-    public void onMessageReceived(CastDevice castDevice, String namespace, String json) {
-        Log.d(TAG, "onMessageReceived: " + json);
-        Message message = Message.fromJson(json);
-        if (message.type == MessageType.GAME_SCORES) {
-            setData(((GameScoresMessage) message).scores);
+    public void onDestroyView() {
+        mAdapter = null;
+        super.onDestroyView();
+    }
+
+    @Override
+    public void onDataSetChanged() {
+        if (mAdapter != null) {
+            mAdapter.notifyDataSetChanged();
+        }
+    }
+
+    @Override
+    public void onRangeChanged(int start, int end) {
+        if (mAdapter == null) {
+            return;
+        }
+
+        // Rebind only the visible rows within the changed range instead of the whole list
+        ListView list = getListView();
+        int first = list.getFirstVisiblePosition();
+        int last = Math.min(end - 1, list.getLastVisiblePosition());
+        for (int position = Math.max(start, first); position <= last; position++) {
+            View row = list.getChildAt(position - first);
+            if (row != null) {
+                mAdapter.getView(position, row, list);
+            }
+        }
+    }
+
+    @Override
+    public void onMessageReceived(String namespace, Message message) {
+        switch (message.type) {
+            case GAME_SCORES:
+                setData(((GameScoresMessage) message).scores);
+                break;
+            case GAME_SCORES_DELTA:
+                GameScoresDeltaMessage delta = (GameScoresDeltaMessage) message;
+                if (mAdapter != null && delta.removed != null) {
+                    mAdapter.removeRowIds(delta.removed);
+                }
+                mModel.applyDelta(delta);
+                break;
         }
     }
 }
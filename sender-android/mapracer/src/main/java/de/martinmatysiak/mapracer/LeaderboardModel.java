@@ -0,0 +1,203 @@
+package de.martinmatysiak.mapracer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.martinmatysiak.mapracer.data.GameScoresDeltaMessage;
+import de.martinmatysiak.mapracer.data.GameScoresMessage;
+
+/**
+ * The sender's copy of the leaderboard. It is initialized from full GameScoresMessage snapshots
+ * and afterwards kept up to date by applying GameScoresDeltaMessages in place, so that only the
+ * rows that actually changed have to be redrawn.
+ */
+public class LeaderboardModel {
+
+    public interface Listener {
+        /**
+         * Players have joined or left, i.e. the number of rows changed.
+         */
+        public void onDataSetChanged();
+
+        /**
+         * The rows in the given range have changed, but the number of rows is still the same.
+         *
+         * @param start The first changed position.
+         * @param end   The position after the last changed one.
+         */
+        public void onRangeChanged(int start, int end);
+    }
+
+    private List<GameScoresMessage.PlayerInfo> mEntries = new ArrayList<GameScoresMessage.PlayerInfo>();
+    // Current position of each player, -1 while a player is being moved by a delta
+    private Map<String, Integer> mIndexById = new HashMap<String, Integer>();
+    private Listener mListener;
+
+    // Scratch space for applyDelta, kept around so that deltas don't allocate
+    private List<GameScoresMessage.PlayerInfo> mMoved = new ArrayList<GameScoresMessage.PlayerInfo>();
+    private int[] mRanks = new int[16];
+    private List<GameScoresMessage.PlayerInfo> mOverflow = new ArrayList<GameScoresMessage.PlayerInfo>();
+    private List<GameScoresMessage.PlayerInfo> mResult = new ArrayList<GameScoresMessage.PlayerInfo>();
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    public GameScoresMessage.PlayerInfo get(int position) {
+        return mEntries.get(position);
+    }
+
+    /**
+     * @return The current position of the player with the given ID or -1 if it is unknown.
+     */
+    public int indexOf(String id) {
+        Integer index = mIndexById.get(id);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Replaces the whole leaderboard with the given snapshot.
+     *
+     * @param scores The ordered list of players as sent in a GameScoresMessage.
+     */
+    public void setSnapshot(List<GameScoresMessage.PlayerInfo> scores) {
+        mEntries.clear();
+        mIndexById.clear();
+        if (scores != null) {
+            for (GameScoresMessage.PlayerInfo entry : scores) {
+                mIndexById.put(entry.id, mEntries.size());
+                mEntries.add(entry);
+            }
+        }
+
+        if (mListener != null) {
+            mListener.onDataSetChanged();
+        }
+    }
+
+    /**
+     * Applies the given changes to the current leaderboard. Unchanged players keep their relative
+     * order and fill the positions which are not claimed by a changed player.
+     *
+     * @param delta The changes since the last snapshot or delta.
+     */
+    public void applyDelta(GameScoresDeltaMessage delta) {
+        int oldSize = mEntries.size();
+
+        // Removed and changed players leave a hole (null) at their old position
+        if (delta.removed != null) {
+            for (String id : delta.removed) {
+                Integer index = mIndexById.remove(id);
+                if (index != null && index >= 0) {
+                    mEntries.set(index, null);
+                }
+            }
+        }
+
+        // Update or add all changed players, remembering the rank they should end up at
+        mMoved.clear();
+        int remaining = mEntries.size();
+        if (delta.changes != null) {
+            for (GameScoresDeltaMessage.Change change : delta.changes) {
+                GameScoresMessage.PlayerInfo entry;
+                Integer index = mIndexById.get(change.id);
+                if (index == null) {
+                    entry = new GameScoresMessage.PlayerInfo();
+                    entry.id = change.id;
+                } else if (index < 0 || mEntries.get(index) == null) {
+                    // The same player has been changed twice, the first change wins
+                    continue;
+                } else {
+                    entry = mEntries.get(index);
+                    mEntries.set(index, null);
+                }
+                mIndexById.put(change.id, -1);
+
+                if (change.name != null) {
+                    entry.name = change.name;
+                }
+                entry.score = change.score;
+                entry.time = change.time;
+
+                if (mMoved.size() == mRanks.length) {
+                    mRanks = Arrays.copyOf(mRanks, mRanks.length * 2);
+                }
+                mRanks[mMoved.size()] = change.rank;
+                mMoved.add(entry);
+            }
+        }
+
+        // Place the changed players at their new ranks and fill the gaps with the others
+        for (GameScoresMessage.PlayerInfo entry : mEntries) {
+            if (entry == null) {
+                remaining--;
+            }
+        }
+        int size = remaining + mMoved.size();
+        mResult.clear();
+        for (int i = 0; i < size; i++) {
+            mResult.add(null);
+        }
+
+        mOverflow.clear();
+        for (int i = 0; i < mMoved.size(); i++) {
+            int rank = mRanks[i];
+            if (rank >= 0 && rank < size && mResult.get(rank) == null) {
+                mResult.set(rank, mMoved.get(i));
+            } else {
+                mOverflow.add(mMoved.get(i));
+            }
+        }
+
+        int next = 0;
+        for (int i = 0; i < oldSize + mOverflow.size(); i++) {
+            GameScoresMessage.PlayerInfo entry = i < oldSize ?
+                    mEntries.get(i) : mOverflow.get(i - oldSize);
+            if (entry == null) {
+                continue;
+            }
+            while (mResult.get(next) != null) {
+                next++;
+            }
+            mResult.set(next, entry);
+        }
+
+        // Copy the result back, noting the span of rows that were touched. Changed players always
+        // count as touched, as their old position is a hole by now.
+        int start = size;
+        int end = 0;
+        for (int i = 0; i < size; i++) {
+            GameScoresMessage.PlayerInfo entry = mResult.get(i);
+            if (i >= oldSize || mEntries.get(i) != entry) {
+                start = Math.min(start, i);
+                end = i + 1;
+                mIndexById.put(entry.id, i);
+            }
+        }
+
+        List<GameScoresMessage.PlayerInfo> entries = mEntries;
+        mEntries = mResult;
+        mResult = entries;
+        mResult.clear();
+        mMoved.clear();
+        mOverflow.clear();
+
+        if (mListener == null) {
+            return;
+        }
+
+        if (size != oldSize) {
+            mListener.onDataSetChanged();
+        } else if (start < end) {
+            // Same number of rows, so only notify the span of rows that were touched
+            mListener.onRangeChanged(start, end);
+        }
+    }
+}
@@ -4,54 +4,53 @@ import android.app.Activity;
 import android.content.Intent;
 import android.os.Bundle;
 
-import com.google.android.gms.cast.Cast;
 import com.google.android.gms.cast.CastDevice;
-import com.google.android.gms.common.api.PendingResult;
-import com.google.android.gms.common.api.Status;
 
 import de.martinmatysiak.mapracer.data.GameState;
-import de.martinmatysiak.mapracer.data.GameStateMessage;
 import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.MessageType;
+import de.martinmatysiak.mapracer.metrics.ClockSync;
+import de.martinmatysiak.mapracer.transport.MessageCallback;
 
 
 /**
  * MapActivity is really just a wrapper for the RaceFragment. It is used if we want to show the
  * StreetView UI in a separate Activity (e.g. on small screens). In case of a tablet, the
  * RaceFragment might be used directly in the main activity (i.e. side by side with the
- * leaderboard). The activity just makes sure to be able to provide an ApiClient to the Fragment,
- * everything else will be taken care of in the Fragment.
+ * leaderboard). The activity just makes sure to be able to provide the shared Cast session to the
+ * Fragment, everything else will be taken care of in the Fragment.
  */
 public class MapActivity extends Activity implements CastProvider {
 
     public static final String TAG = MapActivity.class.getSimpleName();
 
-    ApiClientManager mApiClientManager = new ApiClientManager();
+    ApiClientManager mApiClientManager;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+
+        // Reuse the session that has been established by the MenuActivity. This has to happen
+        // before the layout is inflated, as the fragments register their callbacks in onAttach.
+        mApiClientManager = ApiClientManager.getInstance(this);
         setContentView(R.layout.activity_map);
 
         RaceFragment race = (RaceFragment) getFragmentManager().findFragmentById(R.id.raceFragment);
         Intent intent = getIntent();
 
-        mApiClientManager.init(this, (CastDevice) intent.getParcelableExtra(Constants.INTENT_DEVICE));
-
-        race.setRace((GameStateMessage.Race) intent.getParcelableExtra(Constants.INTENT_RACE));
+        race.setRace(RaceParcel.unwrap(intent.getParcelableExtra(Constants.INTENT_RACE)));
         race.setState((GameState) intent.getSerializableExtra(Constants.INTENT_STATE));
     }
 
     @Override
     protected void onStart() {
         super.onStart();
-        mApiClientManager.setAutoConnect(true);
-        mApiClientManager.connect();
+        mApiClientManager.acquire();
     }
 
     @Override
     protected void onStop() {
-        mApiClientManager.setAutoConnect(false);
-        mApiClientManager.disconnect();
+        mApiClientManager.release();
         super.onStop();
     }
 
@@ -76,17 +75,38 @@ public class MapActivity extends Activity implements CastProvider {
     }
 
     @Override
-    public void addMessageReceivedCallback(String namespace, Cast.MessageReceivedCallback callback) {
+    public void addMessageReceivedCallback(String namespace, MessageReceivedCallback callback) {
         mApiClientManager.addMessageReceivedCallback(namespace, callback);
     }
 
     @Override
-    public void removeMessageReceivedCallback(String namespace, Cast.MessageReceivedCallback callback) {
+    public void removeMessageReceivedCallback(String namespace, MessageReceivedCallback callback) {
         mApiClientManager.removeMessageReceivedCallback(namespace, callback);
     }
 
     @Override
-    public PendingResult<Status> sendMessage(String namespace, Message message) {
-        return mApiClientManager.sendMessage(namespace, message);
+    public void addMessageCallback(String namespace, MessageCallback callback,
+                                   MessageType... types) {
+        mApiClientManager.addMessageCallback(namespace, callback, types);
+    }
+
+    @Override
+    public void removeMessageCallback(String namespace, MessageCallback callback) {
+        mApiClientManager.removeMessageCallback(namespace, callback);
+    }
+
+    @Override
+    public ClockSync getClockSync() {
+        return mApiClientManager.getClockSync();
+    }
+
+    @Override
+    public long getPositionSendInterval() {
+        return mApiClientManager.getPositionSendInterval();
+    }
+
+    @Override
+    public void sendMessage(String namespace, Message message) {
+        mApiClientManager.sendMessage(namespace, message);
     }
 }
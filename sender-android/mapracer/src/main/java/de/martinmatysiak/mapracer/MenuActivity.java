@@ -15,29 +15,29 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.TextView;
 
-import com.google.android.gms.cast.Cast;
 import com.google.android.gms.cast.CastDevice;
 import com.google.android.gms.cast.CastMediaControlIntent;
-import com.google.android.gms.common.api.PendingResult;
-import com.google.android.gms.common.api.Status;
 
 import java.util.UUID;
 
 import de.martinmatysiak.mapracer.data.GameState;
 import de.martinmatysiak.mapracer.data.GameStateMessage;
 import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.MessageType;
 import de.martinmatysiak.mapracer.data.PlayerState;
 import de.martinmatysiak.mapracer.data.PlayerStateMessage;
 import de.martinmatysiak.mapracer.data.RequestMessage;
+import de.martinmatysiak.mapracer.metrics.ClockSync;
+import de.martinmatysiak.mapracer.transport.MessageCallback;
 
 
 public class MenuActivity
         extends ActionBarActivity
-        implements CastProvider, Cast.MessageReceivedCallback, ConnectionStatusChangeCallback {
+        implements CastProvider, MessageCallback, ConnectionStatusChangeCallback {
 
     public static final String TAG = MenuActivity.class.getSimpleName();
 
-    ApiClientManager mApiClientManager = new ApiClientManager();
+    ApiClientManager mApiClientManager;
 
     boolean mMapLaunched = false;
     SharedPreferences mPreferences;
@@ -48,18 +48,33 @@ public class MenuActivity
 
     MediaRouter mMediaRouter;
     MediaRouteSelector mMediaRouteSelector;
+    boolean mStarted = false;
+    int mScanFlags = -1;
     MediaRouter.Callback mMediaRouterCallback = new MediaRouter.Callback() {
         @Override
         public void onRouteSelected(MediaRouter router, MediaRouter.RouteInfo route) {
             Log.d(TAG, "Device selected");
+            mPreferences.edit().putString(Constants.PREF_ROUTE_ID, route.getId()).apply();
             mApiClientManager.setSelectedDevice(CastDevice.getFromBundle(route.getExtras()));
         }
 
         @Override
         public void onRouteUnselected(MediaRouter router, MediaRouter.RouteInfo route) {
             Log.d(TAG, "Device unselected");
+            // The user stopped casting, so don't reconnect on the next launch either
+            mPreferences.edit().remove(Constants.PREF_ROUTE_ID).apply();
             mApiClientManager.setSelectedDevice(null);
         }
+
+        @Override
+        public void onRouteAdded(MediaRouter router, MediaRouter.RouteInfo route) {
+            restoreRoute(route);
+        }
+
+        @Override
+        public void onRouteChanged(MediaRouter router, MediaRouter.RouteInfo route) {
+            restoreRoute(route);
+        }
     };
 
     @Override
@@ -82,13 +97,14 @@ public class MenuActivity
                 .addControlCategory(CastMediaControlIntent.categoryForCast(Constants.CAST_APP_ID))
                 .build();
 
-        // Initialize our API client manager
-        mApiClientManager.init(this);
+        // Hook into the shared API client manager
+        mApiClientManager = ApiClientManager.getInstance(this);
         mApiClientManager.addConnectionStatusChangeCallback(this);
-        mApiClientManager.addMessageReceivedCallback(Constants.CAST_NAMESPACE, this);
+        mApiClientManager.addMessageCallback(Constants.CAST_NAMESPACE, this,
+                MessageType.GAME_STATE, MessageType.PLAYER_STATE);
 
-        // Check if we are already casting somewhere
-        if (savedInstanceState != null) {
+        // Check if we were casting somewhere before the process got killed
+        if (savedInstanceState != null && mApiClientManager.getSelectedDevice() == null) {
             mApiClientManager.setSelectedDevice((CastDevice) savedInstanceState.getParcelable(Constants.INTENT_DEVICE));
         }
 
@@ -102,10 +118,14 @@ public class MenuActivity
         super.onStart();
         Log.d(TAG, "onStart");
 
-        mApiClientManager.setAutoConnect(true);
-        mApiClientManager.connect();
-        mMediaRouter.addCallback(mMediaRouteSelector, mMediaRouterCallback,
-                MediaRouter.CALLBACK_FLAG_PERFORM_ACTIVE_SCAN);
+        mApiClientManager.acquire();
+        mStarted = true;
+        updateRouteScan();
+
+        // The route we were casting to last time might be known already
+        for (MediaRouter.RouteInfo route : mMediaRouter.getRoutes()) {
+            restoreRoute(route);
+        }
     }
 
     @Override
@@ -118,18 +138,28 @@ public class MenuActivity
     @Override
     protected void onStop() {
         Log.d(TAG, "onStop:" + (isFinishing() ? "true" : "false"));
+        mStarted = false;
+        mScanFlags = -1;
         mMediaRouter.removeCallback(mMediaRouterCallback);
-        mApiClientManager.setAutoConnect(false);
-        mApiClientManager.disconnect(isFinishing());
 
         // Make sure to fully terminate the casting session if we're exiting
         if (isFinishing()) {
+            mApiClientManager.disconnect(true);
             deselectCastDevice();
         }
 
+        mApiClientManager.release();
         super.onStop();
     }
 
+    @Override
+    protected void onDestroy() {
+        // The manager outlives us, so don't leave any references to this activity behind
+        mApiClientManager.removeConnectionStatusChangeCallback(this);
+        mApiClientManager.removeMessageCallback(Constants.CAST_NAMESPACE, this);
+        super.onDestroy();
+    }
+
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         outState.putParcelable(Constants.INTENT_DEVICE, mApiClientManager.getSelectedDevice());
@@ -157,10 +187,7 @@ public class MenuActivity
     }
 
     @Override
-    public void onMessageReceived(CastDevice castDevice, String namespace, String json) {
-        Log.d(TAG, "onMessageReceived: " + json);
-        Message message = Message.fromJson(json);
-
+    public void onMessageReceived(String namespace, Message message) {
         switch (message.type) {
             case GAME_STATE:
                 GameStateMessage gsm = (GameStateMessage) message;
@@ -199,14 +226,65 @@ public class MenuActivity
                 mPlayerState == PlayerState.ACTIVE &&
                 (mGameState == GameState.LOAD || mGameState == GameState.RACE)) {
             Intent intent = new Intent(this, MapActivity.class);
-            intent.putExtra(Constants.INTENT_DEVICE, mApiClientManager.getSelectedDevice());
             intent.putExtra(Constants.INTENT_STATE, mGameState);
-            intent.putExtra(Constants.INTENT_RACE, mRace);
+            intent.putExtra(Constants.INTENT_RACE, new RaceParcel(mRace));
             startActivity(intent);
             mMapLaunched = true;
         }
     }
 
+    /**
+     * Reconnects to the route we were casting to when the app was last used as soon as it has
+     * been discovered again, without the user having to pick it.
+     */
+    private void restoreRoute(MediaRouter.RouteInfo route) {
+        String routeId = mPreferences.getString(Constants.PREF_ROUTE_ID, null);
+        if (!shouldRestoreRoute(routeId, route.getId(), route.isSelected(),
+                mApiClientManager.getSelectedDevice() != null,
+                route.matchesSelector(mMediaRouteSelector))) {
+            return;
+        }
+
+        Log.i(TAG, "Restoring route " + routeId);
+        mMediaRouter.selectRoute(route);
+    }
+
+    /**
+     * @param savedRouteId  The ID of the route we were casting to last time, null if none.
+     * @param routeId       The ID of the route that has been discovered.
+     * @param selected      Whether the route is selected already.
+     * @param deviceChosen  Whether we are already using a device (e.g. picked by the user).
+     * @param matches       Whether the route supports our receiver app.
+     * @return Whether the discovered route should be selected automatically.
+     */
+    static boolean shouldRestoreRoute(String savedRouteId, String routeId, boolean selected,
+                                      boolean deviceChosen, boolean matches) {
+        return savedRouteId != null && savedRouteId.equals(routeId) && !selected && !deviceChosen
+                && matches;
+    }
+
+    /**
+     * Scans actively for routes only while we are not casting, as that drains the battery and
+     * the network and is only needed for picking (or rediscovering) a route.
+     */
+    private void updateRouteScan() {
+        if (!mStarted) {
+            return;
+        }
+
+        int flags = mApiClientManager.getConnectionStatus() == ConnectionStatus.CASTING ?
+                0 : MediaRouter.CALLBACK_FLAG_PERFORM_ACTIVE_SCAN;
+        if (flags == mScanFlags) {
+            return;
+        }
+
+        // The flags of a registered callback can only be extended, so register it anew
+        Log.d(TAG, "Active route scan: " + (flags != 0));
+        mMediaRouter.removeCallback(mMediaRouterCallback);
+        mMediaRouter.addCallback(mMediaRouteSelector, mMediaRouterCallback, flags);
+        mScanFlags = flags;
+    }
+
     /**
      * In case of an error situation, we will simply terminate the whole casting session and prompt
      * the user to try again.
@@ -254,22 +332,44 @@ public class MenuActivity
     }
 
     @Override
-    public void addMessageReceivedCallback(String namespace, Cast.MessageReceivedCallback callback) {
+    public void addMessageReceivedCallback(String namespace, MessageReceivedCallback callback) {
         mApiClientManager.addMessageReceivedCallback(namespace, callback);
     }
 
     @Override
-    public void removeMessageReceivedCallback(String namespace, Cast.MessageReceivedCallback callback) {
+    public void removeMessageReceivedCallback(String namespace, MessageReceivedCallback callback) {
         mApiClientManager.removeMessageReceivedCallback(namespace, callback);
     }
 
     @Override
-    public PendingResult<Status> sendMessage(String namespace, Message message) {
-        return mApiClientManager.sendMessage(namespace, message);
+    public void addMessageCallback(String namespace, MessageCallback callback,
+                                   MessageType... types) {
+        mApiClientManager.addMessageCallback(namespace, callback, types);
+    }
+
+    @Override
+    public void removeMessageCallback(String namespace, MessageCallback callback) {
+        mApiClientManager.removeMessageCallback(namespace, callback);
+    }
+
+    @Override
+    public ClockSync getClockSync() {
+        return mApiClientManager.getClockSync();
+    }
+
+    @Override
+    public long getPositionSendInterval() {
+        return mApiClientManager.getPositionSendInterval();
+    }
+
+    @Override
+    public void sendMessage(String namespace, Message message) {
+        mApiClientManager.sendMessage(namespace, message);
     }
 
     @Override
     public void onConnectionStatusChange(ConnectionStatus connectionStatus) {
+        updateRouteScan();
         updateUi();
     }
 }
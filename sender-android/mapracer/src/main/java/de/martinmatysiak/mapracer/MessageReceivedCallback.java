@@ -0,0 +1,9 @@
+package de.martinmatysiak.mapracer;
+
+public interface MessageReceivedCallback {
+    /**
+     * @param namespace The namespace on which the message was received.
+     * @param message   The message as it was received, i.e. still encoded.
+     */
+    public void onMessageReceived(String namespace, String message);
+}
@@ -0,0 +1,132 @@
+package de.martinmatysiak.mapracer;
+
+import com.google.android.gms.maps.model.StreetViewPanoramaLocation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of panorama metadata, keyed by panorama ID. Once full, the least recently used
+ * panorama is evicted. Inserts and hits are counted per {@link Source}, so that we can tell
+ * whether prefetching pays off: a panorama the player simply comes back to during the race isn't
+ * a success of the prefetch.
+ */
+public class PanoramaCache {
+
+    public enum Source {
+        // Loaded ahead of time, while waiting for the race to start
+        PREFETCH,
+        // Visited by the player during the race
+        RACE
+    }
+
+    private static class Cached {
+        final StreetViewPanoramaLocation location;
+        final Source source;
+
+        Cached(StreetViewPanoramaLocation location, Source source) {
+            this.location = location;
+            this.source = source;
+        }
+    }
+
+    private final Map<String, Cached> mEntries;
+    private final int[] mInserts = new int[Source.values().length];
+    private final int[] mHits = new int[Source.values().length];
+    private int mMisses = 0;
+
+    /**
+     * @param capacity The maximum number of panoramas to keep.
+     */
+    public PanoramaCache(final int capacity) {
+        mEntries = new LinkedHashMap<String, Cached>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Adds the given panorama. A panorama that is already cached keeps the source it was first
+     * added by, and doesn't count as another insert.
+     */
+    public void put(StreetViewPanoramaLocation location, Source source) {
+        Cached previous = mEntries.get(location.panoId);
+        if (previous != null) {
+            source = previous.source;
+        } else {
+            mInserts[source.ordinal()]++;
+        }
+
+        mEntries.put(location.panoId, new Cached(location, source));
+    }
+
+    /**
+     * Looks up the given panorama and counts the lookup as hit (of the source that added the
+     * panorama) or miss.
+     *
+     * @return The source that added the panorama, null if it isn't cached.
+     */
+    public Source lookup(String panoId) {
+        Cached entry = mEntries.get(panoId);
+        if (entry == null) {
+            mMisses++;
+            return null;
+        }
+
+        mHits[entry.source.ordinal()]++;
+        return entry.source;
+    }
+
+    /**
+     * @return Whether the given panorama is cached, without affecting the statistics or the LRU
+     * order.
+     */
+    public boolean contains(String panoId) {
+        return mEntries.containsKey(panoId);
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * @return The number of panoramas the given source has added.
+     */
+    public int getInsertCount(Source source) {
+        return mInserts[source.ordinal()];
+    }
+
+    /**
+     * @return The number of lookups that found a panorama added by the given source.
+     */
+    public int getHitCount(Source source) {
+        return mHits[source.ordinal()];
+    }
+
+    public int getMissCount() {
+        return mMisses;
+    }
+
+    public void clear() {
+        mEntries.clear();
+        for (Source source : Source.values()) {
+            mInserts[source.ordinal()] = 0;
+            mHits[source.ordinal()] = 0;
+        }
+        mMisses = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Source source : Source.values()) {
+            builder.append(source)
+                    .append(": inserts=").append(getInsertCount(source))
+                    .append(" hits=").append(getHitCount(source))
+                    .append("; ");
+        }
+        return builder.append("misses=").append(mMisses).toString();
+    }
+}
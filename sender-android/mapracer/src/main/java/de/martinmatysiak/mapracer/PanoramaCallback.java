@@ -0,0 +1,11 @@
+package de.martinmatysiak.mapracer;
+
+import com.google.android.gms.maps.model.StreetViewPanoramaLocation;
+
+public interface PanoramaCallback {
+    /**
+     * @param location The requested panorama including its links, or null if there is no
+     *                 panorama or it could not be loaded in time.
+     */
+    public void onPanoramaLoaded(StreetViewPanoramaLocation location);
+}
@@ -0,0 +1,110 @@
+package de.martinmatysiak.mapracer;
+
+import android.util.Log;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.StreetViewPanoramaLink;
+import com.google.android.gms.maps.model.StreetViewPanoramaLocation;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+/**
+ * Walks the panorama graph breadth-first from a starting position and puts every panorama it
+ * comes across into a PanoramaCache, up to a maximum number of hops. Panoramas are loaded one at a
+ * time, so that a running prefetch never floods the provider.
+ */
+public class PanoramaPrefetcher implements PanoramaCallback {
+
+    public static final String TAG = PanoramaPrefetcher.class.getSimpleName();
+
+    private final PanoramaProvider mProvider;
+    private final PanoramaCache mCache;
+    private final int mMaxDepth;
+
+    private final LinkedList<String> mQueue = new LinkedList<String>();
+    private final Set<String> mSeen = new HashSet<String>();
+    private int mCurrentDepth = 0;
+    private int mRemainingInDepth = 0;
+    private boolean mRunning = false;
+    private long mStartTime = 0;
+    private int mLoadedCount = 0;
+
+    /**
+     * @param provider The source of panoramas.
+     * @param cache    The cache to fill.
+     * @param maxDepth The maximum number of hops from the starting panorama.
+     */
+    public PanoramaPrefetcher(PanoramaProvider provider, PanoramaCache cache, int maxDepth) {
+        mProvider = provider;
+        mCache = cache;
+        mMaxDepth = maxDepth;
+    }
+
+    /**
+     * Starts prefetching around the given position. A prefetch that is still running is stopped.
+     */
+    public void start(LatLng position) {
+        stop();
+        mRunning = true;
+        mStartTime = System.nanoTime();
+        mLoadedCount = 0;
+        mCurrentDepth = 0;
+        mRemainingInDepth = 1;
+        mProvider.load(position, this);
+    }
+
+    public void stop() {
+        if (mRunning) {
+            Log.d(TAG, "Stopped after " + mLoadedCount + " panoramas");
+        }
+
+        mRunning = false;
+        mQueue.clear();
+        mSeen.clear();
+        mProvider.cancel();
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    @Override
+    public void onPanoramaLoaded(StreetViewPanoramaLocation location) {
+        if (!mRunning) {
+            return;
+        }
+
+        if (location != null) {
+            mLoadedCount++;
+            mSeen.add(location.panoId);
+            mCache.put(location, PanoramaCache.Source.PREFETCH);
+
+            // Only look further if the neighbors are still within reach
+            if (mCurrentDepth < mMaxDepth && location.links != null) {
+                for (StreetViewPanoramaLink link : location.links) {
+                    if (mSeen.add(link.panoId) && !mCache.contains(link.panoId)) {
+                        mQueue.add(link.panoId);
+                    }
+                }
+            }
+        }
+
+        // Track the depth by counting down the number of panoramas on the current level
+        mRemainingInDepth--;
+        if (mRemainingInDepth == 0) {
+            mCurrentDepth++;
+            mRemainingInDepth = mQueue.size();
+        }
+
+        if (mQueue.isEmpty()) {
+            Log.d(TAG, "Prefetched " + mLoadedCount + " panoramas in "
+                    + (System.nanoTime() - mStartTime) / 1000000 + " ms");
+            mRunning = false;
+            return;
+        }
+
+        mProvider.load(mQueue.removeFirst(), this);
+    }
+}
@@ -0,0 +1,26 @@
+package de.martinmatysiak.mapracer;
+
+import com.google.android.gms.maps.model.LatLng;
+
+/**
+ * Source of panorama metadata (position and links to neighboring panoramas). Requests are
+ * answered asynchronously on the main thread, in the order in which they were made.
+ */
+public interface PanoramaProvider {
+    /**
+     * @param panoId   The ID of the panorama to load.
+     * @param callback Will be called once the panorama has been loaded.
+     */
+    public void load(String panoId, PanoramaCallback callback);
+
+    /**
+     * @param position The position near which to look for a panorama.
+     * @param callback Will be called once the panorama has been loaded.
+     */
+    public void load(LatLng position, PanoramaCallback callback);
+
+    /**
+     * Drops all outstanding requests without calling their callbacks.
+     */
+    public void cancel();
+}
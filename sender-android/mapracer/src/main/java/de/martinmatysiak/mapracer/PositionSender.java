@@ -0,0 +1,119 @@
+package de.martinmatysiak.mapracer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import de.martinmatysiak.mapracer.data.PositionMessage;
+
+/**
+ * Outbound pipeline for position updates. Only the most recent position is kept around and it is
+ * sent at most once per interval, i.e. positions that are superseded before they could be sent
+ * are coalesced into the newer one instead of flooding the Cast channel. The interval is the
+ * configured one or, if the channel is congested, the longer one suggested by the CastProvider.
+ * Positions are always handed to the CastProvider, which takes care of buffering them while the
+ * session is interrupted.
+ */
+public class PositionSender implements Runnable {
+
+    public static final String TAG = PositionSender.class.getSimpleName();
+
+    private final CastProvider mCastProvider;
+    private final Handler mHandler;
+    private long mMinInterval;
+
+    private LatLng mPending = null;
+    private boolean mScheduled = false;
+    private long mLastSent = 0;
+
+    private int mSentCount = 0;
+    private int mCoalescedCount = 0;
+
+    /**
+     * @param castProvider The provider through which positions will be sent.
+     * @param minInterval  The minimum time in milliseconds between two sent positions.
+     */
+    public PositionSender(CastProvider castProvider, long minInterval) {
+        mCastProvider = castProvider;
+        mHandler = new Handler(Looper.getMainLooper());
+        mMinInterval = minInterval;
+    }
+
+    /**
+     * Changes the maximum send rate. Takes effect with the next scheduled send.
+     *
+     * @param minInterval The minimum time in milliseconds between two sent positions.
+     */
+    public void setMinInterval(long minInterval) {
+        mMinInterval = minInterval;
+    }
+
+    public long getMinInterval() {
+        return mMinInterval;
+    }
+
+    /**
+     * Queues the given position for sending. Any position that is still waiting to be sent will be
+     * replaced by this one.
+     *
+     * @param location The player's new position.
+     */
+    public void offer(LatLng location) {
+        if (mPending != null) {
+            mCoalescedCount++;
+        }
+
+        mPending = location;
+        if (!mScheduled) {
+            long interval = Math.max(mMinInterval, mCastProvider.getPositionSendInterval());
+            long delay = mLastSent + interval - SystemClock.elapsedRealtime();
+            mHandler.postDelayed(this, Math.max(0, delay));
+            mScheduled = true;
+        }
+    }
+
+    /**
+     * Drops any pending position and stops sending.
+     */
+    public void cancel() {
+        mHandler.removeCallbacks(this);
+        mScheduled = false;
+        mPending = null;
+        Log.d(TAG, "cancel: sent=" + mSentCount + ", coalesced=" + mCoalescedCount);
+    }
+
+    @Override
+    public void run() {
+        mScheduled = false;
+        if (mPending == null) {
+            return;
+        }
+
+        LatLng location = mPending;
+        mPending = null;
+
+        PositionMessage message = new PositionMessage.Builder()
+                .withLocation(GeoPoints.fromLatLng(location))
+                .build();
+        mCastProvider.sendMessage(Constants.CAST_NAMESPACE, message);
+        mLastSent = SystemClock.elapsedRealtime();
+        mSentCount++;
+    }
+
+    /**
+     * @return The number of positions that have actually been sent.
+     */
+    public int getSentCount() {
+        return mSentCount;
+    }
+
+    /**
+     * @return The number of positions that were dropped because a newer one superseded them.
+     */
+    public int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+}
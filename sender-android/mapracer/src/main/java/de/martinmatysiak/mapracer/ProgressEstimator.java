@@ -0,0 +1,66 @@
+package de.martinmatysiak.mapracer;
+
+import de.martinmatysiak.mapracer.data.GameScoresMessage;
+import de.martinmatysiak.mapracer.data.GeoPoint;
+import de.martinmatysiak.mapracer.data.TargetDistance;
+
+/**
+ * Gives the player instant feedback on every step: the distance to the target is computed
+ * locally and the rank is estimated from the last known leaderboard instead of waiting for the
+ * receiver's next score broadcast.
+ */
+public class ProgressEstimator {
+
+    private final TargetDistance mTargetDistance;
+    private final LeaderboardModel mLeaderboard;
+    private final String mPlayerId;
+    private double mDistance = Double.POSITIVE_INFINITY;
+
+    /**
+     * @param target      The race's target location.
+     * @param leaderboard The leaderboard as last received from the receiver.
+     * @param playerId    Our own player ID, which is excluded when comparing scores.
+     */
+    public ProgressEstimator(GeoPoint target, LeaderboardModel leaderboard, String playerId) {
+        mTargetDistance = new TargetDistance(target);
+        mLeaderboard = leaderboard;
+        mPlayerId = playerId;
+    }
+
+    /**
+     * @param latitude  The player's new latitude.
+     * @param longitude The player's new longitude.
+     * @return The distance to the target in meters.
+     */
+    public double update(double latitude, double longitude) {
+        mDistance = mTargetDistance.from(latitude, longitude);
+        return mDistance;
+    }
+
+    public double getDistance() {
+        return mDistance;
+    }
+
+    /**
+     * @return The number of players on the leaderboard including ourselves.
+     */
+    public int getPlayerCount() {
+        return mLeaderboard.indexOf(mPlayerId) < 0 ? mLeaderboard.size() + 1 : mLeaderboard.size();
+    }
+
+    /**
+     * @return Our estimated 1-based rank, i.e. one more than the number of other players who are
+     * closer to the target or have already finished (which is indicated by a negative score).
+     */
+    public int getRank() {
+        int rank = 1;
+        for (int i = 0; i < mLeaderboard.size(); i++) {
+            GameScoresMessage.PlayerInfo player = mLeaderboard.get(i);
+            if (!mPlayerId.equals(player.id) && player.score < mDistance) {
+                rank++;
+            }
+        }
+
+        return rank;
+    }
+}
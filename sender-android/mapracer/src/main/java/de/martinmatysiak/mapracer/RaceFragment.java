@@ -4,22 +4,38 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.os.Vibrator;
 import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
 import android.widget.Toast;
 
-import com.google.android.gms.cast.Cast;
 import com.google.android.gms.cast.CastDevice;
 import com.google.android.gms.maps.StreetViewPanorama;
 import com.google.android.gms.maps.StreetViewPanoramaFragment;
+import com.google.android.gms.maps.StreetViewPanoramaView;
 import com.google.android.gms.maps.model.StreetViewPanoramaLocation;
 
+import java.io.File;
+
+import de.martinmatysiak.mapracer.data.GameScoresDeltaMessage;
+import de.martinmatysiak.mapracer.data.GameScoresMessage;
 import de.martinmatysiak.mapracer.data.GameState;
 import de.martinmatysiak.mapracer.data.GameStateMessage;
 import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.MessageType;
 import de.martinmatysiak.mapracer.data.PlayerState;
 import de.martinmatysiak.mapracer.data.PlayerStateMessage;
-import de.martinmatysiak.mapracer.data.PositionMessage;
+import de.martinmatysiak.mapracer.metrics.ClockSync;
+import de.martinmatysiak.mapracer.metrics.LatencyHistogram;
+import de.martinmatysiak.mapracer.transport.MessageCallback;
 
 
 /**
@@ -27,15 +43,63 @@ import de.martinmatysiak.mapracer.data.PositionMessage;
  * input to the Cast Receiver and processing State updates.
  */
 public class RaceFragment extends StreetViewPanoramaFragment implements
-        Cast.MessageReceivedCallback,
+        MessageCallback,
         StreetViewPanorama.OnStreetViewPanoramaChangeListener {
 
     final static String TAG = RaceFragment.class.getSimpleName();
 
     CastProvider mCastProvider;
+    PositionSender mPositionSender;
     GameStateMessage.Race mRace;
     SharedPreferences mPreferences;
     StreetViewPanorama mPanorama;
+    LeaderboardModel mLeaderboard = new LeaderboardModel();
+    ProgressEstimator mProgress;
+    TextView mProgressView;
+    Handler mHandler = new Handler(Looper.getMainLooper());
+    GameState mState;
+    boolean mStarted = false;
+
+    // Prefetching of the panoramas around the start location while waiting for the race to start
+    StreetViewPanoramaView mPrefetchView;
+    PanoramaCache mPanoramaCache = new PanoramaCache(Constants.PANORAMA_CACHE_SIZE);
+    PanoramaPrefetcher mPrefetcher;
+    LatencyHistogram mStepTimesPrefetched = new LatencyHistogram();
+    LatencyHistogram mStepTimesRevisited = new LatencyHistogram();
+    LatencyHistogram mStepTimesUncached = new LatencyHistogram();
+    // When the user last tapped the panorama (e.g. on a link) or we moved it, in uptime
+    // milliseconds, 0 if no step is pending
+    long mStepRequestTime = 0;
+
+    TraceRecorder mTraceRecorder;
+    GhostReplay mGhostReplay;
+
+    // Waits for the announced start time of the race, see scheduleStart
+    Runnable mStartRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mStarted || mRace == null || mState != GameState.LOAD) {
+                return;
+            }
+
+            ClockSync clock = mCastProvider.getClockSync();
+            if (!clock.hasEstimate()) {
+                // The first pong might still be on its way, until then we can't convert the start
+                // time. The RACE state is the fallback if none arrives before the start.
+                mHandler.postDelayed(this, Constants.START_RECHECK_INTERVAL);
+                return;
+            }
+
+            long delay = (clock.toLocal(mRace.startTime) - ClockSync.now()) / 1000;
+            if (delay > 0) {
+                // Check again in a bit, the estimate of the clock offset might still improve
+                mHandler.postDelayed(this, Math.min(delay, Constants.START_RECHECK_INTERVAL));
+            } else {
+                Log.d(TAG, "Starting race, clock error <= " + clock.getError() + " us");
+                start();
+            }
+        }
+    };
 
     /**
      * Use this factory method to create a new instance of
@@ -49,7 +113,7 @@ public class RaceFragment extends StreetViewPanoramaFragment implements
     public static RaceFragment newInstance(GameStateMessage.Race race, GameState state, CastDevice device) {
         RaceFragment fragment = new RaceFragment();
         Bundle args = new Bundle();
-        args.putParcelable(Constants.INTENT_RACE, race);
+        args.putParcelable(Constants.INTENT_RACE, new RaceParcel(race));
         args.putParcelable(Constants.INTENT_DEVICE, device);
         args.putSerializable(Constants.INTENT_STATE, state);
         fragment.setArguments(args);
@@ -63,12 +127,71 @@ public class RaceFragment extends StreetViewPanoramaFragment implements
         super.onCreate(savedInstanceState);
 
         mPreferences = getActivity().getSharedPreferences(Constants.PREFERENCES, Context.MODE_PRIVATE);
+        mTraceRecorder = new TraceRecorder(new File(getActivity().getFilesDir(), Constants.TRACE_DIRECTORY));
         if (getArguments() != null) {
-            setRace((GameStateMessage.Race) getArguments().getParcelable(Constants.INTENT_RACE));
+            setRace(RaceParcel.unwrap(getArguments().getParcelable(Constants.INTENT_RACE)));
             setState((GameState) getArguments().getSerializable(Constants.INTENT_STATE));
         }
     }
 
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        // Overlay the panorama with our locally computed progress. The layout also watches the
+        // user's taps on the panorama, as the panorama doesn't report link taps on its own.
+        FrameLayout layout = new FrameLayout(inflater.getContext()) {
+            @Override
+            public boolean onInterceptTouchEvent(MotionEvent event) {
+                if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+                    mStepRequestTime = event.getEventTime();
+                }
+                return false;
+            }
+        };
+        layout.addView(super.onCreateView(inflater, container, savedInstanceState));
+        mProgressView = (TextView) inflater.inflate(R.layout.race_progress, layout, false);
+        layout.addView(mProgressView);
+
+        // A second panorama hidden behind the real one is used to load the surroundings
+        mPrefetchView = new StreetViewPanoramaView(inflater.getContext());
+        mPrefetchView.onCreate(savedInstanceState);
+        layout.addView(mPrefetchView, 0, new FrameLayout.LayoutParams(1, 1));
+        PanoramaProvider provider = new StreetViewPanoramaProvider(
+                mPrefetchView.getStreetViewPanorama(), Constants.PANORAMA_LOAD_TIMEOUT);
+        mPrefetcher = new PanoramaPrefetcher(provider, mPanoramaCache, Constants.PREFETCH_DEPTH);
+        if (mState == GameState.LOAD) {
+            startPrefetch();
+        }
+
+        return layout;
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        mPrefetchView.onResume();
+    }
+
+    @Override
+    public void onPause() {
+        mPrefetchView.onPause();
+        super.onPause();
+    }
+
+    @Override
+    public void onLowMemory() {
+        mPrefetchView.onLowMemory();
+        super.onLowMemory();
+    }
+
+    @Override
+    public void onDestroyView() {
+        mPrefetcher.stop();
+        mPrefetcher = null;
+        mPrefetchView.onDestroy();
+        mPrefetchView = null;
+        super.onDestroyView();
+    }
+
     @Override
     public void onAttach(Activity activity) {
         super.onAttach(activity);
@@ -79,7 +202,25 @@ public class RaceFragment extends StreetViewPanoramaFragment implements
                     + " must implement CastProvider");
         }
 
-        mCastProvider.addMessageReceivedCallback(Constants.CAST_NAMESPACE, this);
+        mCastProvider.addMessageCallback(Constants.CAST_NAMESPACE, this,
+                MessageType.GAME_STATE, MessageType.PLAYER_STATE,
+                MessageType.GAME_SCORES, MessageType.GAME_SCORES_DELTA);
+        mPositionSender = new PositionSender(mCastProvider, Constants.POSITION_SEND_INTERVAL);
+        mGhostReplay = new GhostReplay(mPositionSender);
+    }
+
+    @Override
+    public void onDetach() {
+        Log.d(TAG, "Panorama cache: " + mPanoramaCache);
+        Log.d(TAG, "Step time (ms) prefetched: " + mStepTimesPrefetched);
+        Log.d(TAG, "Step time (ms) revisited: " + mStepTimesRevisited);
+        Log.d(TAG, "Step time (ms) uncached: " + mStepTimesUncached);
+        mHandler.removeCallbacks(mStartRunnable);
+        mGhostReplay.stop();
+        mTraceRecorder.stop();
+        mPositionSender.cancel();
+        mCastProvider.removeMessageCallback(Constants.CAST_NAMESPACE, this);
+        super.onDetach();
     }
 
     public void setRace(GameStateMessage.Race race) {
@@ -87,52 +228,175 @@ public class RaceFragment extends StreetViewPanoramaFragment implements
 
         // (Re)initialize the StreetViewPanorama
         mPanorama = getStreetViewPanorama();
-        mPanorama.setPosition(mRace.startLocation);
+        mStepRequestTime = SystemClock.uptimeMillis();
+        mPanorama.setPosition(GeoPoints.toLatLng(mRace.startLocation));
         mPanorama.setOnStreetViewPanoramaChangeListener(this);
+
+        mProgress = new ProgressEstimator(mRace.targetLocation, mLeaderboard,
+                mPreferences.getString(Constants.PREF_UUID, ""));
     }
 
     public void setState(GameState state) {
+        mState = state;
         switch (state) {
             case RACE:
-                ((Vibrator) getActivity().getSystemService(Context.VIBRATOR_SERVICE)).vibrate(Constants.VIBRATE_DURATION);
-                // no break on purpose!
+                if (!mStarted) {
+                    // We didn't manage to start on time, so do it now
+                    Log.d(TAG, "Starting race on RACE state");
+                    start();
+                }
+                break;
             case LOAD:
-                if (mPanorama != null) {
-                    mPanorama.setUserNavigationEnabled(state == GameState.RACE);
+                // Our clock might be ahead, so LOAD updates can still arrive after the start
+                if (!mStarted) {
+                    if (mPanorama != null) {
+                        mPanorama.setUserNavigationEnabled(false);
+                    }
+                    scheduleStart();
+                    startPrefetch();
+                    if (mTraceRecorder != null && !mTraceRecorder.isRecording()) {
+                        mTraceRecorder.start();
+                        mTraceRecorder.recordGameState(state);
+                    }
                 }
                 break;
             case SCORES:
             case INIT:
                 // ??? indicate that the fragment can be closed ???
+                mStarted = false;
+                mHandler.removeCallbacks(mStartRunnable);
+                if (mGhostReplay != null) {
+                    mGhostReplay.stop();
+                }
+                if (mTraceRecorder != null) {
+                    mTraceRecorder.stop();
+                }
                 break;
         }
     }
 
+    /**
+     * The receiver announces the start time of the race during LOAD. Starting at that time
+     * (converted to our clock) instead of when the RACE state arrives means that all players start
+     * at the same moment, regardless of how long the message takes to reach each of them.
+     */
+    private void scheduleStart() {
+        mHandler.removeCallbacks(mStartRunnable);
+        if (mRace != null && mRace.startTime > 0) {
+            mHandler.post(mStartRunnable);
+        }
+    }
+
+    /**
+     * Uses the idle time before the start to load the panoramas the player will most likely visit
+     * first, so that the first steps of the race don't pay the full loading time.
+     */
+    private void startPrefetch() {
+        if (mPrefetcher != null && mRace != null && !mPrefetcher.isRunning()) {
+            mPrefetcher.start(GeoPoints.toLatLng(mRace.startLocation));
+        }
+    }
+
+    private void start() {
+        mStarted = true;
+        mHandler.removeCallbacks(mStartRunnable);
+
+        // From now on the visible panorama has priority
+        if (mPrefetcher != null) {
+            mPrefetcher.stop();
+        }
+
+        // The trace's time base for replays is the start of the race
+        mTraceRecorder.recordGameState(GameState.RACE);
+        if (Constants.DEBUG_GHOST_REPLAY) {
+            File trace = mTraceRecorder.getPreviousTrace();
+            if (trace != null) {
+                mGhostReplay.start(trace);
+            }
+        }
+
+        ((Vibrator) getActivity().getSystemService(Context.VIBRATOR_SERVICE)).vibrate(Constants.VIBRATE_DURATION);
+        if (mPanorama != null) {
+            mPanorama.setUserNavigationEnabled(true);
+        }
+    }
+
     @Override
-    public void onMessageReceived(CastDevice castDevice, String namespace, String json) {
-        Log.d(TAG, "onMessageReceived: " + json);
-        Message message = Message.fromJson(json);
+    public void onMessageReceived(String namespace, Message message) {
         switch (message.type) {
             case GAME_STATE:
-                setState(((GameStateMessage) message).state);
+                GameStateMessage gsm = (GameStateMessage) message;
+                if (gsm.race != null && mRace != null) {
+                    mRace.startTime = gsm.race.startTime;
+                }
+
+                // The RACE state is recorded when we actually start, see start()
+                if (gsm.state != mState && gsm.state != GameState.RACE) {
+                    mTraceRecorder.recordGameState(gsm.state);
+                }
+
+                setState(gsm.state);
                 break;
             case PLAYER_STATE:
+                mTraceRecorder.recordPlayerState(((PlayerStateMessage) message).state);
                 if (((PlayerStateMessage) message).state == PlayerState.FINISHED) {
                     Toast.makeText(getActivity(), "You've finished the race!", Toast.LENGTH_LONG).show();
                 }
                 break;
+            case GAME_SCORES:
+                mLeaderboard.setSnapshot(((GameScoresMessage) message).scores);
+                updateProgress();
+                break;
+            case GAME_SCORES_DELTA:
+                mLeaderboard.applyDelta((GameScoresDeltaMessage) message);
+                updateProgress();
+                break;
+        }
+    }
+
+    private void updateProgress() {
+        if (mProgressView == null || mProgress == null
+                || Double.isInfinite(mProgress.getDistance())) {
+            return;
+        }
+
+        int distance = (int) Math.round(mProgress.getDistance());
+        if (mLeaderboard.size() == 0) {
+            mProgressView.setText(getActivity().getString(R.string.race_distance, distance));
+        } else {
+            mProgressView.setText(getActivity().getString(R.string.race_progress, distance,
+                    mProgress.getRank(), mProgress.getPlayerCount()));
         }
     }
 
     @Override
     public void onStreetViewPanoramaChange(StreetViewPanoramaLocation location) {
-        if (mCastProvider.getConnectionStatus() != ConnectionStatus.CASTING) {
+        if (mStarted) {
+            // Compare the time it takes to load prefetched and not prefetched panoramas, from the
+            // tap (or setPosition) that requested the step until the panorama has changed
+            PanoramaCache.Source source = mPanoramaCache.lookup(location.panoId);
+            if (mStepRequestTime > 0) {
+                LatencyHistogram stepTimes = source == null ? mStepTimesUncached :
+                        source == PanoramaCache.Source.PREFETCH ? mStepTimesPrefetched :
+                                mStepTimesRevisited;
+                stepTimes.record(SystemClock.uptimeMillis() - mStepRequestTime);
+            }
+            mPanoramaCache.put(location, PanoramaCache.Source.RACE);
+        }
+        mStepRequestTime = 0;
+
+        if (mProgress != null) {
+            mProgress.update(location.position.latitude, location.position.longitude);
+            updateProgress();
+        }
+
+        mTraceRecorder.recordPosition(location.position);
+        if (mGhostReplay.isRunning()) {
+            // The ghost is in control of what is sent
             return;
         }
 
-        PositionMessage message = new PositionMessage.Builder()
-                .withLocation(location.position)
-                .build();
-        mCastProvider.sendMessage(Constants.CAST_NAMESPACE, message);
+        // Even if the connection is interrupted right now, the newest position will be replayed
+        mPositionSender.offer(location.position);
     }
 }
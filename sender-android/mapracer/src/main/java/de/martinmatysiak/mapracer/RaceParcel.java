@@ -0,0 +1,61 @@
+package de.martinmatysiak.mapracer;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import de.martinmatysiak.mapracer.data.GameStateMessage;
+
+/**
+ * Wraps a GameStateMessage.Race so that it can be passed along in Intents and Bundles.
+ */
+public class RaceParcel implements Parcelable {
+    public final GameStateMessage.Race race;
+
+    public static final Creator<RaceParcel> CREATOR = new Creator<RaceParcel>() {
+        @Override
+        public RaceParcel createFromParcel(Parcel source) {
+            return new RaceParcel(source);
+        }
+
+        @Override
+        public RaceParcel[] newArray(int size) {
+            return new RaceParcel[size];
+        }
+    };
+
+    public RaceParcel(GameStateMessage.Race race) {
+        this.race = race;
+    }
+
+    public RaceParcel(Parcel parcel) {
+        race = new GameStateMessage.Race();
+        race.targetTitle = parcel.readString();
+        race.startTime = parcel.readLong();
+        race.targetLocation = GeoPoints.fromLatLng(
+                (LatLng) parcel.readParcelable(LatLng.class.getClassLoader()));
+        race.startLocation = GeoPoints.fromLatLng(
+                (LatLng) parcel.readParcelable(LatLng.class.getClassLoader()));
+    }
+
+    /**
+     * @return The race contained in the given parcel or null if there is none.
+     */
+    public static GameStateMessage.Race unwrap(Parcelable parcelable) {
+        return parcelable instanceof RaceParcel ? ((RaceParcel) parcelable).race : null;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel parcel, int flags) {
+        parcel.writeString(race.targetTitle);
+        parcel.writeLong(race.startTime);
+        parcel.writeParcelable(GeoPoints.toLatLng(race.targetLocation), flags);
+        parcel.writeParcelable(GeoPoints.toLatLng(race.startLocation), flags);
+    }
+}
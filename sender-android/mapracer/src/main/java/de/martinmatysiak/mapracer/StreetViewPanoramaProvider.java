@@ -0,0 +1,119 @@
+package de.martinmatysiak.mapracer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.maps.StreetViewPanorama;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.StreetViewPanoramaLocation;
+
+import java.util.LinkedList;
+
+/**
+ * Loads panorama metadata through a StreetViewPanorama that is not visible to the user (e.g. one
+ * hidden behind the actual panorama). Besides providing positions and links, this warms up the
+ * Street View caches of the Maps library for the panoramas the user is likely to visit next.
+ * <p/>
+ * As a StreetViewPanorama can only show one panorama at a time, requests are processed one after
+ * the other. A request that isn't answered in time is completed with null.
+ */
+public class StreetViewPanoramaProvider implements
+        PanoramaProvider,
+        StreetViewPanorama.OnStreetViewPanoramaChangeListener,
+        Runnable {
+
+    public static final String TAG = StreetViewPanoramaProvider.class.getSimpleName();
+
+    private static class Request {
+        final String panoId;
+        final LatLng position;
+        final PanoramaCallback callback;
+
+        Request(String panoId, LatLng position, PanoramaCallback callback) {
+            this.panoId = panoId;
+            this.position = position;
+            this.callback = callback;
+        }
+    }
+
+    private final StreetViewPanorama mPanorama;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final long mTimeout;
+    private final LinkedList<Request> mRequests = new LinkedList<Request>();
+    private Request mCurrent = null;
+
+    /**
+     * @param panorama The panorama to use for loading, it will be moved around arbitrarily.
+     * @param timeout  The time in milliseconds after which a request is given up.
+     */
+    public StreetViewPanoramaProvider(StreetViewPanorama panorama, long timeout) {
+        mPanorama = panorama;
+        mTimeout = timeout;
+        mPanorama.setOnStreetViewPanoramaChangeListener(this);
+    }
+
+    @Override
+    public void load(String panoId, PanoramaCallback callback) {
+        mRequests.add(new Request(panoId, null, callback));
+        next();
+    }
+
+    @Override
+    public void load(LatLng position, PanoramaCallback callback) {
+        mRequests.add(new Request(null, position, callback));
+        next();
+    }
+
+    @Override
+    public void cancel() {
+        mHandler.removeCallbacks(this);
+        mRequests.clear();
+        mCurrent = null;
+    }
+
+    private void next() {
+        if (mCurrent != null || mRequests.isEmpty()) {
+            return;
+        }
+
+        mCurrent = mRequests.removeFirst();
+        mHandler.postDelayed(this, mTimeout);
+        if (mCurrent.panoId != null) {
+            mPanorama.setPosition(mCurrent.panoId);
+        } else {
+            mPanorama.setPosition(mCurrent.position);
+        }
+    }
+
+    private void complete(StreetViewPanoramaLocation location) {
+        Request request = mCurrent;
+        mCurrent = null;
+        mHandler.removeCallbacks(this);
+        request.callback.onPanoramaLoaded(location);
+        next();
+    }
+
+    @Override
+    public void onStreetViewPanoramaChange(StreetViewPanoramaLocation location) {
+        if (mCurrent == null) {
+            return;
+        }
+
+        // Ignore late answers to requests which have already timed out
+        if (mCurrent.panoId != null && location != null && !mCurrent.panoId.equals(location.panoId)) {
+            return;
+        }
+
+        complete(location);
+    }
+
+    @Override
+    public void run() {
+        // Timeout of the current request
+        if (mCurrent != null) {
+            Log.d(TAG, "Timed out loading " + (mCurrent.panoId != null ? mCurrent.panoId : mCurrent.position));
+            complete(null);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package de.martinmatysiak.mapracer;
+
+/**
+ * Formats durations as "mm:ss.SSS" into a caller provided buffer, without allocating anything.
+ * Meant for list rows which are rebound many times per second during a race.
+ */
+public final class TimeFormatter {
+    private TimeFormatter() { /* non-instantiable */ }
+
+    /** The number of characters written by {@link #format(long, char[])}. */
+    public static final int LENGTH = 9;
+
+    /**
+     * @param millis The duration to format. Like the "mm" pattern, minutes wrap at one hour.
+     * @param out    The buffer to write into, needs to hold at least {@link #LENGTH} chars.
+     * @return The number of characters written.
+     */
+    public static int format(long millis, char[] out) {
+        if (millis < 0) {
+            millis = 0;
+        }
+
+        int minutes = (int) ((millis / 60000) % 60);
+        int seconds = (int) ((millis / 1000) % 60);
+        int fraction = (int) (millis % 1000);
+
+        out[0] = (char) ('0' + minutes / 10);
+        out[1] = (char) ('0' + minutes % 10);
+        out[2] = ':';
+        out[3] = (char) ('0' + seconds / 10);
+        out[4] = (char) ('0' + seconds % 10);
+        out[5] = '.';
+        out[6] = (char) ('0' + fraction / 100);
+        out[7] = (char) ('0' + (fraction / 10) % 10);
+        out[8] = (char) ('0' + fraction % 10);
+        return LENGTH;
+    }
+
+    /**
+     * Writes the decimal representation of a non-negative number right-aligned into the end of
+     * the given buffer.
+     *
+     * @return The offset of the first written character.
+     */
+    public static int formatInt(int value, char[] out) {
+        int offset = out.length;
+        do {
+            out[--offset] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0 && offset > 0);
+        return offset;
+    }
+}
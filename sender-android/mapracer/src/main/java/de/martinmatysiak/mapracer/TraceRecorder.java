@@ -0,0 +1,164 @@
+package de.martinmatysiak.mapracer;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import de.martinmatysiak.mapracer.data.GameState;
+import de.martinmatysiak.mapracer.data.PlayerState;
+import de.martinmatysiak.mapracer.trace.TraceWriter;
+
+/**
+ * Records the course of a race (positions and state changes) into a trace file, one file per race.
+ * Only the most recent traces are kept. Recording problems are logged and end the recording, but
+ * never interrupt the race.
+ */
+public class TraceRecorder {
+
+    public static final String TAG = TraceRecorder.class.getSimpleName();
+
+    private static final String PREFIX = "race-";
+    private static final String SUFFIX = ".trace";
+
+    private final File mDirectory;
+    private TraceWriter mWriter;
+    private File mFile;
+
+    /**
+     * @param directory The directory in which to store the traces.
+     */
+    public TraceRecorder(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Starts recording into a new trace file. Does nothing if already recording.
+     */
+    public void start() {
+        if (mWriter != null) {
+            return;
+        }
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.w(TAG, "Could not create " + mDirectory);
+            return;
+        }
+
+        deleteOldTraces();
+        long now = System.currentTimeMillis();
+        mFile = new File(mDirectory, PREFIX + now + SUFFIX);
+        try {
+            mWriter = new TraceWriter(mFile, Constants.TRACE_BUFFER_SIZE, now,
+                    SystemClock.elapsedRealtime());
+            Log.d(TAG, "Recording to " + mFile);
+        } catch (IOException ex) {
+            Log.w(TAG, "Could not create trace " + mFile, ex);
+            mWriter = null;
+        }
+    }
+
+    public boolean isRecording() {
+        return mWriter != null;
+    }
+
+    public void recordPosition(LatLng position) {
+        if (mWriter == null) {
+            return;
+        }
+
+        try {
+            mWriter.writePosition(SystemClock.elapsedRealtime(), position.latitude, position.longitude);
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    public void recordGameState(GameState state) {
+        if (mWriter == null) {
+            return;
+        }
+
+        try {
+            mWriter.writeGameState(SystemClock.elapsedRealtime(), state);
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    public void recordPlayerState(PlayerState state) {
+        if (mWriter == null) {
+            return;
+        }
+
+        try {
+            mWriter.writePlayerState(SystemClock.elapsedRealtime(), state);
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    /**
+     * Finishes the current trace.
+     */
+    public void stop() {
+        if (mWriter == null) {
+            return;
+        }
+
+        try {
+            mWriter.close();
+        } catch (IOException ex) {
+            Log.w(TAG, "Could not finish trace " + mFile, ex);
+        }
+
+        Log.d(TAG, "Recorded " + mFile.length() + " bytes to " + mFile);
+        mWriter = null;
+    }
+
+    private void fail(IOException ex) {
+        Log.w(TAG, "Could not write trace " + mFile + ", stopping", ex);
+        stop();
+    }
+
+    /**
+     * @return The most recent trace other than the one currently being recorded, or null.
+     */
+    public File getPreviousTrace() {
+        File[] traces = listTraces();
+        for (int i = traces.length - 1; i >= 0; i--) {
+            if (mWriter == null || !traces[i].equals(mFile)) {
+                return traces[i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return All traces, oldest first.
+     */
+    private File[] listTraces() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+
+        // The names contain the start time and all have the same length for the foreseeable future
+        Arrays.sort(files);
+        return files;
+    }
+
+    private void deleteOldTraces() {
+        File[] traces = listTraces();
+        for (int i = 0; i < traces.length - Constants.TRACE_KEEP_COUNT + 1; i++) {
+            if (!traces[i].delete()) {
+                Log.w(TAG, "Could not delete " + traces[i]);
+            }
+        }
+    }
+}
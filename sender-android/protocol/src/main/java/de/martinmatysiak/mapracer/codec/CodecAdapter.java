@@ -0,0 +1,19 @@
+package de.martinmatysiak.mapracer.codec;
+
+import com.google.gson.TypeAdapter;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a type which generated codecs do not handle themselves, but through the given
+ * hand-written TypeAdapter, e.g. because it is immutable. The adapter needs a public no-argument
+ * constructor and is instantiated once per generated codec.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface CodecAdapter {
+    Class<? extends TypeAdapter<?>> value();
+}
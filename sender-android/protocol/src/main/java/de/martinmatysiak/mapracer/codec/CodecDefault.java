@@ -0,0 +1,15 @@
+package de.martinmatysiak.mapracer.codec;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the enum constant which the generated codec returns for unknown names, e.g. because the
+ * receiver is newer than the sender. Without one, unknown names are decoded as null.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface CodecDefault {
+}
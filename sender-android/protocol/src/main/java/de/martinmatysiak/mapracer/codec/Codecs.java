@@ -0,0 +1,69 @@
+package de.martinmatysiak.mapracer.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Helpers for the generated codecs. The receiver may send null for any field (e.g. an Infinity
+ * score), in which case primitives keep the given fallback just like with Gson.
+ */
+public final class Codecs {
+    private Codecs() { /* non-instantiable */ }
+
+    public static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        return in.nextString();
+    }
+
+    public static int nextInt(JsonReader in, int fallback) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return fallback;
+        }
+
+        return in.nextInt();
+    }
+
+    public static long nextLong(JsonReader in, long fallback) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return fallback;
+        }
+
+        return in.nextLong();
+    }
+
+    public static double nextDouble(JsonReader in, double fallback) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return fallback;
+        }
+
+        return in.nextDouble();
+    }
+
+    public static boolean nextBoolean(JsonReader in, boolean fallback) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return fallback;
+        }
+
+        return in.nextBoolean();
+    }
+
+    /**
+     * Skips the remaining fields of the current object.
+     */
+    public static void skipRemaining(JsonReader in) throws IOException {
+        while (in.hasNext()) {
+            in.nextName();
+            in.skipValue();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package de.martinmatysiak.mapracer.codec;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Has the codegen annotation processor generate a reflection-free JSON codec for the annotated
+ * class or enum at build time. The codec is named after the type, e.g. GameStateMessageCodec or
+ * GameStateMessage_RaceCodec for a nested class, and produces the same JSON as the Gson instance
+ * of Message: fields use lower case names with underscores, subclass fields come before those of
+ * the superclass and null fields are omitted. Enums are written as their lower case names.
+ * <p/>
+ * Fields may be primitives, Strings, Lists and other types that are annotated with either
+ * GenerateCodec or {@link CodecAdapter}. Static, transient and (when reading) final fields are
+ * skipped.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateCodec {
+}
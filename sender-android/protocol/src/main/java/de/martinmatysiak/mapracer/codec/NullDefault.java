@@ -0,0 +1,16 @@
+package de.martinmatysiak.mapracer.codec;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The value a numeric field is decoded as if it is null in the JSON. Without it, the field keeps
+ * its current value just like with Gson.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface NullDefault {
+    double value();
+}
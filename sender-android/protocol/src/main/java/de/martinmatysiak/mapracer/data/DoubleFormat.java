@@ -0,0 +1,84 @@
+package de.martinmatysiak.mapracer.data;
+
+/**
+ * Appends doubles to a StringBuilder exactly like {@link Double#toString(double)} (and thereby
+ * Gson) formats them, but without allocating.
+ * <p/>
+ * Only numbers in plain notation (10^-3 <= |value| < 10^7) whose shortest round-tripping decimal
+ * has at most 15 significant digits take the fast path, which covers coordinates as they come from
+ * Street View. For those, the shortest representation is unambiguous and every Java version prints
+ * it. Everything else is left to StringBuilder.append(double), which prints the same as
+ * Double.toString.
+ */
+public final class DoubleFormat {
+    private DoubleFormat() { /* non-instantiable */ }
+
+    private static final double MIN_PLAIN = 1e-3;
+    private static final double MAX_PLAIN = 1e7;
+    private static final double MAX_SCALED = 1e15;
+    private static final int MAX_FRACTION_DIGITS = 18;
+
+    // All of them are exactly representable as doubles
+    private static final double[] POW10 = new double[MAX_FRACTION_DIGITS + 1];
+
+    static {
+        double pow = 1;
+        for (int i = 0; i < POW10.length; i++) {
+            POW10[i] = pow;
+            pow *= 10;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException If the value is NaN or infinite, just like Gson does.
+     */
+    public static StringBuilder append(StringBuilder builder, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+
+        if (value == 0) {
+            return builder.append(1 / value < 0 ? "-0.0" : "0.0");
+        }
+
+        double abs = Math.abs(value);
+        if (abs < MIN_PLAIN || abs >= MAX_PLAIN) {
+            return builder.append(value);
+        }
+
+        // Find the least number of fraction digits that still parses back to the same double.
+        // The scaled value stays below 2^53, so both it and the division are exact up to the
+        // final rounding, i.e. the check is the same as parsing the decimal.
+        for (int digits = 1; digits <= MAX_FRACTION_DIGITS; digits++) {
+            double product = abs * POW10[digits];
+            if (product >= MAX_SCALED) {
+                break;
+            }
+
+            long scaled = Math.round(product);
+            if (scaled / POW10[digits] == abs) {
+                if (value < 0) {
+                    builder.append('-');
+                }
+                return appendScaled(builder, scaled, digits);
+            }
+        }
+
+        return builder.append(value);
+    }
+
+    /**
+     * Appends scaled / 10^digits with exactly the given number of fraction digits.
+     */
+    private static StringBuilder appendScaled(StringBuilder builder, long scaled, int digits) {
+        long integer = scaled / (long) POW10[digits];
+        long fraction = scaled - integer * (long) POW10[digits];
+        builder.append(integer).append('.');
+
+        // Leading zeros of the fraction, then its digits (which fit into a long without them)
+        for (long limit = (long) POW10[digits - 1]; limit > 1 && fraction < limit; limit /= 10) {
+            builder.append('0');
+        }
+        return builder.append(fraction);
+    }
+}
@@ -0,0 +1,25 @@
+package de.martinmatysiak.mapracer.data;
+
+import java.util.List;
+
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
+
+/**
+ * Incremental update to the last GameScoresMessage. Only players whose rank, name or finishing
+ * time changed are included, players which are not known yet have joined the leaderboard. The
+ * scores of all other players may be outdated.
+ */
+@GenerateCodec
+public class GameScoresDeltaMessage extends Message {
+    public List<Change> changes;
+    public List<String> removed;
+
+    public GameScoresDeltaMessage() {
+        super(MessageType.GAME_SCORES_DELTA);
+    }
+
+    @GenerateCodec
+    public static class Change extends GameScoresMessage.PlayerInfo {
+        public int rank;
+    }
+}
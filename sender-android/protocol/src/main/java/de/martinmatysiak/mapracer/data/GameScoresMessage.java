@@ -2,6 +2,10 @@ package de.martinmatysiak.mapracer.data;
 
 import java.util.List;
 
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
+import de.martinmatysiak.mapracer.codec.NullDefault;
+
+@GenerateCodec
 public class GameScoresMessage extends Message {
     public List<PlayerInfo> scores;
 
@@ -9,9 +13,12 @@ public class GameScoresMessage extends Message {
         super(MessageType.GAME_SCORES);
     }
 
+    @GenerateCodec
     public static class PlayerInfo {
         public String id;
         public String name;
+        // The receiver uses Infinity for players without a score, which becomes null
+        @NullDefault(Double.POSITIVE_INFINITY)
         public double score;
         public long time;
     }
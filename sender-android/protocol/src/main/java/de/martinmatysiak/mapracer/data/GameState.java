@@ -0,0 +1,61 @@
+package de.martinmatysiak.mapracer.data;
+
+//public final class GameState {
+//    private GameState() { /* non-instantiable */ }
+//
+//    public static final String INIT = "init";
+//    public static final String LOAD = "load";
+//    public static final String RACE = "race";
+//    public static final String SCORES = "scores";
+//}
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import de.martinmatysiak.mapracer.codec.CodecDefault;
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
+
+@GenerateCodec
+public enum GameState {
+    @CodecDefault
+    INIT,
+    LOAD,
+    RACE,
+    SCORES
+}
+
+class GameStateSerializer extends TypeAdapter<GameState> {
+
+    public static final String TAG = "GameStateSerializer";
+
+    @Override
+    public void write(JsonWriter out, GameState gameState) throws IOException {
+        if (gameState == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.value(gameState.name().toLowerCase());
+    }
+
+    @Override
+    public GameState read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String state = in.nextString();
+        try {
+            return GameState.valueOf(state.toUpperCase().trim());
+        } catch (IllegalArgumentException ex) {
+            Logger.getLogger(TAG).warning("Received invalid GameState in message: " + state);
+            return GameState.INIT;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package de.martinmatysiak.mapracer.data;
+
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
+
+@GenerateCodec
+public class GameStateMessage extends Message {
+    public int players;
+    public GameState state;
+    public Race race;
+
+    public GameStateMessage() {
+        super(MessageType.GAME_STATE);
+    }
+
+    @GenerateCodec
+    public static class Race {
+        public GeoPoint startLocation;
+        public long startTime;
+        public GeoPoint targetLocation;
+        public String targetTitle;
+
+        public Race() { /* allow empty constructor for GSON */ }
+    }
+}
@@ -0,0 +1,44 @@
+package de.martinmatysiak.mapracer.data;
+
+import de.martinmatysiak.mapracer.codec.CodecAdapter;
+
+/**
+ * A platform independent latitude/longitude pair in degrees. The app converts from and to the
+ * Play Services LatLng at its edges, everything in the protocol uses this type.
+ */
+@CodecAdapter(GeoPointSerializer.class)
+public final class GeoPoint {
+    public final double latitude;
+    public final double longitude;
+
+    public GeoPoint(double latitude, double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GeoPoint)) {
+            return false;
+        }
+
+        GeoPoint other = (GeoPoint) o;
+        return Double.doubleToLongBits(latitude) == Double.doubleToLongBits(other.latitude)
+                && Double.doubleToLongBits(longitude) == Double.doubleToLongBits(other.longitude);
+    }
+
+    @Override
+    public int hashCode() {
+        long lat = Double.doubleToLongBits(latitude);
+        long lng = Double.doubleToLongBits(longitude);
+        return 31 * (int) (lat ^ (lat >>> 32)) + (int) (lng ^ (lng >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "GeoPoint(" + latitude + "," + longitude + ")";
+    }
+}
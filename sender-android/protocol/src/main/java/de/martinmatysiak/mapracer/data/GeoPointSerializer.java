@@ -0,0 +1,50 @@
+package de.martinmatysiak.mapracer.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+public class GeoPointSerializer extends TypeAdapter<GeoPoint> {
+
+    @Override
+    public void write(JsonWriter out, GeoPoint point) throws IOException {
+        if (point == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("lat").value(point.latitude);
+        out.name("lng").value(point.longitude);
+        out.endObject();
+    }
+
+    @Override
+    public GeoPoint read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        double lat = 0;
+        double lng = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("lat".equals(name)) {
+                lat = in.nextDouble();
+            } else if ("lng".equals(name)) {
+                lng = in.nextDouble();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new GeoPoint(lat, lng);
+    }
+}
@@ -0,0 +1,52 @@
+package de.martinmatysiak.mapracer.data;
+
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
+
+@GenerateCodec
+public class LoginMessage extends Message {
+    public String id;
+    public String name = null;
+    public PositionEncoding positionEncoding = null;
+    public String positionNamespace = null;
+
+    public LoginMessage() {
+        super(MessageType.LOGIN);
+    }
+
+    public static class Builder {
+        private LoginMessage message = new LoginMessage();
+
+        public Builder withId(String id) {
+            message.id = id;
+            return this;
+        }
+
+        public Builder withName(String name) {
+            message.name = name;
+            return this;
+        }
+
+        /**
+         * Asks the receiver to accept the given compact encoding for positions. Old receivers
+         * ignore the field and will keep getting JSON.
+         */
+        public Builder withPositionEncoding(PositionEncoding encoding) {
+            message.positionEncoding = encoding;
+            return this;
+        }
+
+        /**
+         * Asks the receiver to accept positions on the given namespace as well, so that they
+         * don't hold up other messages. Old receivers ignore the field and will keep getting
+         * positions on the main namespace.
+         */
+        public Builder withPositionNamespace(String namespace) {
+            message.positionNamespace = namespace;
+            return this;
+        }
+
+        public LoginMessage build() {
+            return message;
+        }
+    }
+}
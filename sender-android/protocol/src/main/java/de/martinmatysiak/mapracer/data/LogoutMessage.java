@@ -1,5 +1,8 @@
 package de.martinmatysiak.mapracer.data;
 
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
+
+@GenerateCodec
 public class LogoutMessage extends Message {
     public LogoutMessage() {
         super(MessageType.LOGOUT);
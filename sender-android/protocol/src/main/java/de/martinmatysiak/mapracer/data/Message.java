@@ -0,0 +1,49 @@
+package de.martinmatysiak.mapracer.data;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.lang.reflect.Modifier;
+
+/**
+ * A generic message that can be passed to the Cast device. Messages are (de)serialized by the
+ * codecs generated at build time, see MessageCodec.
+ */
+public class Message {
+
+    public final MessageType type;
+
+    public Message(MessageType type) {
+        this.type = type;
+    }
+
+    public String toJson() {
+        return MessageCodec.toJson(this);
+    }
+
+    /**
+     * @return A Gson instance that is able to (de)serialize MapRacer Messages and the types they
+     * consist of. It is only built on first use, as toJson and fromJson do not need it.
+     */
+    public static Gson getConfiguredGson() {
+        return GsonHolder.INSTANCE;
+    }
+
+    public static Message fromJson(String json) {
+        return MessageCodec.fromJson(json);
+    }
+
+    private static class GsonHolder {
+        static final Gson INSTANCE = new GsonBuilder()
+                .excludeFieldsWithModifiers(Modifier.STATIC)
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .registerTypeAdapterFactory(new MessageAdapterFactory())
+                .registerTypeAdapter(GeoPoint.class, new GeoPointSerializer())
+                .registerTypeAdapter(MessageType.class, new MessageTypeSerializer())
+                .registerTypeAdapter(GameState.class, new GameStateSerializer())
+                .registerTypeAdapter(PlayerState.class, new PlayerStateSerializer())
+                .registerTypeAdapter(PositionEncoding.class, new PositionEncodingSerializer())
+                .create();
+    }
+}
@@ -0,0 +1,39 @@
+package de.martinmatysiak.mapracer.data;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Lets Gson (de)serialize the generic Message type through the generated codecs, see
+ * MessageCodec. Concrete Message subclasses are still handled reflectively by Gson.
+ */
+public class MessageAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+        if (typeToken.getRawType() != Message.class) {
+            return null;
+        }
+
+        return (TypeAdapter<T>) new MessageAdapter();
+    }
+
+    static class MessageAdapter extends TypeAdapter<Message> {
+        @Override
+        public void write(JsonWriter out, Message message) throws IOException {
+            MessageCodec.write(out, message);
+        }
+
+        @Override
+        public Message read(JsonReader in) throws IOException {
+            return MessageCodec.read(in);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package de.martinmatysiak.mapracer.data;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import de.martinmatysiak.mapracer.codec.Codecs;
+
+/**
+ * Reflection-free (de)serialization of Messages on top of the codecs that are generated for every
+ * Message subclass at build time (see GenerateCodec). The JSON is the same as with the Gson
+ * instance of Message. Inbound messages are decoded in a single pass directly into the subclass
+ * indicated by their "type" field. Only if "type" is not the first field of the object (the
+ * receiver always sends it first) the remainder is buffered and decoded once the type is known.
+ */
+public final class MessageCodec {
+    private MessageCodec() { /* non-instantiable */ }
+
+    public static final String TAG = "MessageCodec";
+
+    public static String toJson(Message message) {
+        StringWriter buffer = new StringWriter(128);
+        JsonWriter out = new JsonWriter(buffer);
+        // Same settings as Gson.toJson
+        out.setHtmlSafe(true);
+        out.setSerializeNulls(false);
+        try {
+            write(out, message);
+        } catch (IOException ex) {
+            throw new JsonIOException(ex);
+        }
+
+        return buffer.toString();
+    }
+
+    public static Message fromJson(String json) {
+        if (json == null) {
+            return null;
+        }
+
+        // Same settings and exceptions as Gson.fromJson
+        JsonReader in = new JsonReader(new StringReader(json));
+        in.setLenient(true);
+        try {
+            return read(in);
+        } catch (IOException ex) {
+            throw new JsonSyntaxException(ex);
+        } catch (IllegalStateException ex) {
+            throw new JsonSyntaxException(ex);
+        } catch (NumberFormatException ex) {
+            throw new JsonSyntaxException(ex);
+        }
+    }
+
+    public static void write(JsonWriter out, Message message) throws IOException {
+        if (message instanceof GameScoresMessage) {
+            GameScoresMessageCodec.write(out, (GameScoresMessage) message);
+        } else if (message instanceof GameScoresDeltaMessage) {
+            GameScoresDeltaMessageCodec.write(out, (GameScoresDeltaMessage) message);
+        } else if (message instanceof GameStateMessage) {
+            GameStateMessageCodec.write(out, (GameStateMessage) message);
+        } else if (message instanceof LoginMessage) {
+            LoginMessageCodec.write(out, (LoginMessage) message);
+        } else if (message instanceof LogoutMessage) {
+            LogoutMessageCodec.write(out, (LogoutMessage) message);
+        } else if (message instanceof PingMessage) {
+            PingMessageCodec.write(out, (PingMessage) message);
+        } else if (message instanceof PlayerStateMessage) {
+            PlayerStateMessageCodec.write(out, (PlayerStateMessage) message);
+        } else if (message instanceof PongMessage) {
+            PongMessageCodec.write(out, (PongMessage) message);
+        } else if (message instanceof PositionMessage) {
+            PositionMessageCodec.write(out, (PositionMessage) message);
+        } else if (message instanceof RequestMessage) {
+            RequestMessageCodec.write(out, (RequestMessage) message);
+        } else if (message != null) {
+            // A plain Message, e.g. one of a type we could not decode
+            out.beginObject();
+            if (message.type != null) {
+                out.name("type");
+                MessageTypeCodec.write(out, message.type);
+            }
+            out.endObject();
+        } else {
+            out.nullValue();
+        }
+    }
+
+    public static Message read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        in.beginObject();
+        Message message;
+        String name = in.hasNext() ? in.nextName() : null;
+        if ("type".equals(name)) {
+            message = readBody(MessageTypeCodec.read(in), in);
+        } else {
+            message = readBuffered(name, in);
+        }
+        in.endObject();
+
+        return message;
+    }
+
+    /**
+     * Decodes the remaining fields of the current object into the subclass for the given type.
+     */
+    private static Message readBody(MessageType type, JsonReader in) throws IOException {
+        if (type == null) {
+            type = MessageType.UNKNOWN;
+        }
+
+        switch (type) {
+            case GAME_SCORES:
+                GameScoresMessage gameScores = new GameScoresMessage();
+                GameScoresMessageCodec.readFields(in, gameScores);
+                return gameScores;
+            case GAME_SCORES_DELTA:
+                GameScoresDeltaMessage gameScoresDelta = new GameScoresDeltaMessage();
+                GameScoresDeltaMessageCodec.readFields(in, gameScoresDelta);
+                return gameScoresDelta;
+            case GAME_STATE:
+                GameStateMessage gameState = new GameStateMessage();
+                GameStateMessageCodec.readFields(in, gameState);
+                return gameState;
+            case LOGIN:
+                LoginMessage login = new LoginMessage();
+                LoginMessageCodec.readFields(in, login);
+                return login;
+            case LOGOUT:
+                LogoutMessage logout = new LogoutMessage();
+                LogoutMessageCodec.readFields(in, logout);
+                return logout;
+            case PING:
+                PingMessage ping = new PingMessage();
+                PingMessageCodec.readFields(in, ping);
+                return ping;
+            case PLAYER_STATE:
+                PlayerStateMessage playerState = new PlayerStateMessage();
+                PlayerStateMessageCodec.readFields(in, playerState);
+                return playerState;
+            case PONG:
+                PongMessage pong = new PongMessage();
+                PongMessageCodec.readFields(in, pong);
+                return pong;
+            case POSITION:
+                PositionMessage position = new PositionMessage();
+                PositionMessageCodec.readFields(in, position);
+                return position;
+            case REQUEST:
+                RequestMessage request = new RequestMessage();
+                RequestMessageCodec.readFields(in, request);
+                return request;
+            default:
+                Logger.getLogger(TAG).warning("Received unexpected message of type: " + type);
+                Codecs.skipRemaining(in);
+                return new Message(type);
+        }
+    }
+
+    /**
+     * Fallback for objects which do not start with the "type" field. Buffers the remaining fields
+     * and decodes them again with "type" first.
+     */
+    private static Message readBuffered(String firstName, JsonReader in) throws IOException {
+        JsonParser parser = new JsonParser();
+        JsonObject object = new JsonObject();
+        String name = firstName;
+        while (name != null) {
+            object.add(name, parser.parse(in));
+            name = in.hasNext() ? in.nextName() : null;
+        }
+
+        JsonObject reordered = new JsonObject();
+        reordered.add("type", object.has("type") ? object.remove("type") : null);
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            reordered.add(entry.getKey(), entry.getValue());
+        }
+
+        JsonReader buffered = new JsonReader(new StringReader(reordered.toString()));
+        buffered.setLenient(true);
+        return read(buffered);
+    }
+}
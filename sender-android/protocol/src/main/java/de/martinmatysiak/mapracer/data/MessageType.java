@@ -0,0 +1,59 @@
+package de.martinmatysiak.mapracer.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import de.martinmatysiak.mapracer.codec.CodecDefault;
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
+
+@GenerateCodec
+public enum MessageType {
+    GAME_SCORES,
+    GAME_SCORES_DELTA,
+    GAME_STATE,
+    LOGIN,
+    LOGOUT,
+    PING,
+    PLAYER_STATE,
+    PONG,
+    POSITION,
+    REQUEST,
+    @CodecDefault
+    UNKNOWN
+}
+
+class MessageTypeSerializer extends TypeAdapter<MessageType> {
+
+    public static final String TAG = "MessageTypeSerializer";
+
+    @Override
+    public void write(JsonWriter out, MessageType messageType) throws IOException {
+        if (messageType == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.value(messageType.name().toLowerCase());
+    }
+
+    @Override
+    public MessageType read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String messageType = in.nextString();
+        try {
+            return MessageType.valueOf(messageType.toUpperCase().trim());
+        } catch (IllegalArgumentException ex) {
+            Logger.getLogger(TAG).warning("Received invalid MessageType in message: " + messageType);
+            return MessageType.UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package de.martinmatysiak.mapracer.data;
+
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
+
+/**
+ * Latency probe. The receiver answers each ping with a PongMessage to the sending device only.
+ */
+@GenerateCodec
+public class PingMessage extends Message {
+    public long id;
+    // Sender-local timestamp in microseconds, echoed back unchanged
+    public long sentAt;
+
+    public PingMessage() {
+        super(MessageType.PING);
+    }
+
+    public static class Builder {
+        private PingMessage message = new PingMessage();
+
+        public Builder withId(long id) {
+            message.id = id;
+            return this;
+        }
+
+        public Builder withSentAt(long sentAt) {
+            message.sentAt = sentAt;
+            return this;
+        }
+
+        public PingMessage build() {
+            return message;
+        }
+    }
+}
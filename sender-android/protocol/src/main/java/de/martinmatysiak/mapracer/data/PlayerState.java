@@ -0,0 +1,51 @@
+package de.martinmatysiak.mapracer.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import de.martinmatysiak.mapracer.codec.CodecDefault;
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
+
+@GenerateCodec
+public enum PlayerState {
+    ACTIVE,
+    @CodecDefault
+    WAITING,
+    FINISHED
+}
+
+class PlayerStateSerializer extends TypeAdapter<PlayerState> {
+
+    public static final String TAG = "PlayerStateSerializer";
+
+    @Override
+    public void write(JsonWriter out, PlayerState playerState) throws IOException {
+        if (playerState == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.value(playerState.name().toLowerCase());
+    }
+
+    @Override
+    public PlayerState read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String state = in.nextString();
+        try {
+            return PlayerState.valueOf(state.toUpperCase().trim());
+        } catch (IllegalArgumentException ex) {
+            Logger.getLogger(TAG).warning("Received invalid PlayerState in message: " + state);
+            return PlayerState.WAITING;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package de.martinmatysiak.mapracer.data;
+
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
+
+@GenerateCodec
+public class PlayerStateMessage extends Message {
+    public PlayerState state;
+    // The position encoding accepted by the receiver, null if it doesn't support any
+    public PositionEncoding positionEncoding;
+    // The namespace on which the receiver accepts positions, null if only on the main one
+    public String positionNamespace;
+
+    public PlayerStateMessage() {
+        super(MessageType.PLAYER_STATE);
+    }
+}
@@ -0,0 +1,19 @@
+package de.martinmatysiak.mapracer.data;
+
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
+
+/**
+ * The receiver's answer to a PingMessage.
+ */
+@GenerateCodec
+public class PongMessage extends Message {
+    public long id;
+    // The ping's timestamp as it was sent, in the sender's clock
+    public long sentAt;
+    // The receiver's wall clock time in milliseconds when the ping arrived
+    public long receivedAt;
+
+    public PongMessage() {
+        super(MessageType.PONG);
+    }
+}
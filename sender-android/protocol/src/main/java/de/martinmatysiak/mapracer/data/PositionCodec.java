@@ -0,0 +1,108 @@
+package de.martinmatysiak.mapracer.data;
+
+
+/**
+ * Encodes outbound positions according to the PositionEncoding negotiated for the current
+ * session. The compact encodings use E7 fixed-point integers (degrees * 10^7, i.e. roughly 1cm
+ * precision) and short keys. None of the encodings go through Gson: plain JSON is written to be
+ * identical to what Gson produces for a PositionMessage. Apart from the returned string, encoding
+ * does not allocate.
+ */
+public class PositionCodec {
+
+    /** Number of delta encoded positions after which a full position is sent again. */
+    public static final int KEYFRAME_INTERVAL = 20;
+
+    public static final double E7 = 1e7;
+
+    private PositionEncoding mEncoding = PositionEncoding.JSON;
+    private final StringBuilder mBuilder = new StringBuilder(96);
+    private int mLastLat;
+    private int mLastLng;
+    private int mSinceKeyframe = -1;
+
+    public PositionEncoding getEncoding() {
+        return mEncoding;
+    }
+
+    /**
+     * Switches to the given encoding. The next delta encoded position will be a full one.
+     */
+    public void setEncoding(PositionEncoding encoding) {
+        mEncoding = encoding != null ? encoding : PositionEncoding.JSON;
+        mSinceKeyframe = -1;
+    }
+
+    /**
+     * Makes the next delta encoded position a full one. To be called when an encoded position
+     * could not be sent, as the receiver would otherwise apply the following deltas to a position
+     * it never got.
+     */
+    public void forceKeyframe() {
+        mSinceKeyframe = -1;
+    }
+
+    /**
+     * Falls back to plain JSON, e.g. because a new session has been started.
+     */
+    public void reset() {
+        setEncoding(PositionEncoding.JSON);
+    }
+
+    public String encode(PositionMessage message) {
+        if (message.location == null) {
+            return message.toJson();
+        }
+
+        return encode(message.location.latitude, message.location.longitude);
+    }
+
+    /**
+     * Encodes a position without the need for a PositionMessage.
+     *
+     * @param latitude  The latitude in degrees.
+     * @param longitude The longitude in degrees.
+     */
+    public String encode(double latitude, double longitude) {
+        mBuilder.setLength(0);
+        if (mEncoding == PositionEncoding.JSON) {
+            // Same field order and number format as Gson, see GeoPointSerializer
+            mBuilder.append("{\"location\":{\"lat\":");
+            DoubleFormat.append(mBuilder, latitude);
+            mBuilder.append(",\"lng\":");
+            DoubleFormat.append(mBuilder, longitude);
+            mBuilder.append("},\"type\":\"position\"}");
+            return mBuilder.toString();
+        }
+
+        int lat = toE7(latitude);
+        int lng = toE7(longitude);
+
+        mBuilder.append("{\"type\":\"position\",");
+        if (mEncoding == PositionEncoding.E7_DELTA
+                && mSinceKeyframe >= 0 && mSinceKeyframe < KEYFRAME_INTERVAL) {
+            mBuilder.append("\"d\":[").append(lat - mLastLat).append(',').append(lng - mLastLng);
+            mSinceKeyframe++;
+        } else {
+            mBuilder.append("\"p\":[").append(lat).append(',').append(lng);
+            mSinceKeyframe = 0;
+        }
+        mBuilder.append("]}");
+
+        mLastLat = lat;
+        mLastLng = lng;
+        return mBuilder.toString();
+    }
+
+    public static int toE7(double degrees) {
+        return (int) Math.round(degrees * E7);
+    }
+
+    public static double fromE7(int e7) {
+        return e7 / E7;
+    }
+
+    public static GeoPoint fromE7(int lat, int lng) {
+        return new GeoPoint(fromE7(lat), fromE7(lng));
+    }
+}
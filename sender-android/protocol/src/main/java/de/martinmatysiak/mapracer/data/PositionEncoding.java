@@ -0,0 +1,58 @@
+package de.martinmatysiak.mapracer.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import de.martinmatysiak.mapracer.codec.CodecDefault;
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
+
+/**
+ * Wire formats for outbound positions. JSON is what every receiver understands, the E7 variants
+ * have to be requested in the LoginMessage and are only used once the receiver confirmed them.
+ */
+@GenerateCodec
+public enum PositionEncoding {
+    /** {"type":"position","location":{"lat":..,"lng":..}} */
+    @CodecDefault
+    JSON,
+    /** {"type":"position","p":[latE7,lngE7]} */
+    E7,
+    /** Like E7, but most positions are sent as {"type":"position","d":[dLatE7,dLngE7]} */
+    E7_DELTA
+}
+
+class PositionEncodingSerializer extends TypeAdapter<PositionEncoding> {
+
+    public static final String TAG = "PositionEncodingSerializer";
+
+    @Override
+    public void write(JsonWriter out, PositionEncoding positionEncoding) throws IOException {
+        if (positionEncoding == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.value(positionEncoding.name().toLowerCase());
+    }
+
+    @Override
+    public PositionEncoding read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String encoding = in.nextString();
+        try {
+            return PositionEncoding.valueOf(encoding.toUpperCase().trim());
+        } catch (IllegalArgumentException ex) {
+            Logger.getLogger(TAG).warning("Received invalid PositionEncoding in message: " + encoding);
+            return PositionEncoding.JSON;
+        }
+    }
+}
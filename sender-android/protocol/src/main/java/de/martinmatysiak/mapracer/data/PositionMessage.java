@@ -1,9 +1,10 @@
 package de.martinmatysiak.mapracer.data;
 
-import com.google.android.gms.maps.model.LatLng;
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
 
+@GenerateCodec
 public class PositionMessage extends Message {
-    public LatLng location;
+    public GeoPoint location;
 
     public PositionMessage() {
         super(MessageType.POSITION);
@@ -12,7 +13,7 @@ public class PositionMessage extends Message {
     public static class Builder {
         private PositionMessage message = new PositionMessage();
 
-        public Builder withLocation(LatLng location) {
+        public Builder withLocation(GeoPoint location) {
             message.location = location;
             return this;
         }
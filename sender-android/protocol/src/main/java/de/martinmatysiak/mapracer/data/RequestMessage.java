@@ -1,12 +1,13 @@
 package de.martinmatysiak.mapracer.data;
 
-import com.google.android.gms.maps.model.LatLng;
+import de.martinmatysiak.mapracer.codec.GenerateCodec;
 
+@GenerateCodec
 public class RequestMessage extends Message {
     public String targetTitle;
-    public LatLng coarseUserLocation;
-    public LatLng targetLocation;
-    public LatLng startLocation;
+    public GeoPoint coarseUserLocation;
+    public GeoPoint targetLocation;
+    public GeoPoint startLocation;
 
     public RequestMessage() {
         super(MessageType.REQUEST);
@@ -15,18 +16,18 @@ public class RequestMessage extends Message {
     public static class Builder {
         private RequestMessage message = new RequestMessage();
 
-        public Builder withTarget(String title, LatLng location) {
+        public Builder withTarget(String title, GeoPoint location) {
             message.targetTitle = title;
             message.targetLocation = location;
             return this;
         }
 
-        public Builder withStart(LatLng location) {
+        public Builder withStart(GeoPoint location) {
             message.startLocation = location;
             return this;
         }
 
-        public Builder withUserLocation(LatLng location) {
+        public Builder withUserLocation(GeoPoint location) {
             message.coarseUserLocation = location;
             return this;
         }
@@ -0,0 +1,70 @@
+package de.martinmatysiak.mapracer.data;
+
+/**
+ * Fast great-circle distances from arbitrary positions to one fixed target. All trigonometry
+ * that only depends on the target is done once up front. Nearby positions (i.e. everything during
+ * a race) use an equirectangular approximation, which is within centimeters of the haversine
+ * result at that scale and needs no trigonometric calls at all.
+ */
+public class TargetDistance {
+
+    /** Same radius as google.maps.geometry.spherical, which the receiver uses for scoring. */
+    public static final double EARTH_RADIUS = 6378137;
+
+    // Up to roughly 60km the equirectangular approximation is accurate enough
+    private static final double APPROXIMATION_LIMIT = 0.01;
+
+    private final GeoPoint mTarget;
+    private final double mLat;
+    private final double mLng;
+    private final double mSinLat;
+    private final double mCosLat;
+
+    public TargetDistance(GeoPoint target) {
+        mTarget = target;
+        mLat = Math.toRadians(target.latitude);
+        mLng = Math.toRadians(target.longitude);
+        mSinLat = Math.sin(mLat);
+        mCosLat = Math.cos(mLat);
+    }
+
+    public GeoPoint getTarget() {
+        return mTarget;
+    }
+
+    /**
+     * @return The distance in meters between the given position and the target.
+     */
+    public double from(GeoPoint position) {
+        return from(position.latitude, position.longitude);
+    }
+
+    /**
+     * @param latitude  In degrees.
+     * @param longitude In degrees.
+     * @return The distance in meters between the given position and the target.
+     */
+    public double from(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double dLat = lat - mLat;
+        double dLng = Math.toRadians(longitude) - mLng;
+        if (dLng > Math.PI) {
+            dLng -= 2 * Math.PI;
+        } else if (dLng < -Math.PI) {
+            dLng += 2 * Math.PI;
+        }
+
+        if (Math.abs(dLat) < APPROXIMATION_LIMIT && Math.abs(dLng) < APPROXIMATION_LIMIT) {
+            // cos of the mean latitude, expanded around the target's latitude
+            double cosMean = mCosLat - mSinLat * dLat / 2;
+            double x = dLng * cosMean;
+            return EARTH_RADIUS * Math.sqrt(x * x + dLat * dLat);
+        }
+
+        // Haversine for everything further away
+        double sinLat = Math.sin(dLat / 2);
+        double sinLng = Math.sin(dLng / 2);
+        double a = sinLat * sinLat + mCosLat * Math.cos(lat) * sinLng * sinLng;
+        return 2 * EARTH_RADIUS * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
@@ -0,0 +1,81 @@
+package de.martinmatysiak.mapracer.metrics;
+
+/**
+ * Estimates the offset between our clock and the receiver's clock from ping/pong round trips,
+ * similar to NTP. For each sample, the receiver's timestamp is assumed to have been taken halfway
+ * through the round trip, so the error of a sample is at most half its round trip time. Out of
+ * the most recent samples, the one with the shortest round trip is used as it was the least
+ * affected by queueing delays.
+ * <p/>
+ * Local timestamps are monotonic microseconds as returned by {@link #now()}, receiver timestamps
+ * are its wall clock time in milliseconds.
+ */
+public class ClockSync {
+
+    public static final String TAG = ClockSync.class.getSimpleName();
+
+    private static final int WINDOW = 8;
+
+    private final long[] mOffsets = new long[WINDOW];
+    private final long[] mRoundTrips = new long[WINDOW];
+    private int mSamples = 0;
+    private int mBest = -1;
+
+    /**
+     * @return A monotonic timestamp in microseconds on our local clock.
+     */
+    public static long now() {
+        return System.nanoTime() / 1000;
+    }
+
+    /**
+     * @param sentAt       The local time at which the ping was sent.
+     * @param receiverTime The receiver's time at which it answered the ping.
+     * @param receivedAt   The local time at which the answer arrived.
+     */
+    public synchronized void addSample(long sentAt, long receiverTime, long receivedAt) {
+        long roundTrip = receivedAt - sentAt;
+        if (roundTrip < 0 || receiverTime <= 0) {
+            return;
+        }
+
+        int slot = mSamples % WINDOW;
+        mOffsets[slot] = receiverTime * 1000 - (sentAt + roundTrip / 2);
+        mRoundTrips[slot] = roundTrip;
+        mSamples++;
+
+        // The sample we overwrote might have been the best one, so look at the whole window
+        mBest = 0;
+        for (int i = 1; i < Math.min(mSamples, WINDOW); i++) {
+            if (mRoundTrips[i] < mRoundTrips[mBest]) {
+                mBest = i;
+            }
+        }
+    }
+
+    public synchronized boolean hasEstimate() {
+        return mBest >= 0;
+    }
+
+    /**
+     * @return The receiver's clock minus our clock in microseconds.
+     */
+    public synchronized long getOffset() {
+        return hasEstimate() ? mOffsets[mBest] : 0;
+    }
+
+    /**
+     * @return The maximum error of the current estimate in microseconds.
+     */
+    public synchronized long getError() {
+        return hasEstimate() ? mRoundTrips[mBest] / 2 : Long.MAX_VALUE;
+    }
+
+    /**
+     * @param receiverTime A timestamp of the receiver in milliseconds.
+     * @return The corresponding local time, comparable to {@link #now()}.
+     */
+    public synchronized long toLocal(long receiverTime) {
+        return receiverTime * 1000 - getOffset();
+    }
+}
@@ -0,0 +1,116 @@
+package de.martinmatysiak.mapracer.metrics;
+
+import java.util.Arrays;
+
+/**
+ * A histogram for latencies which uses a fixed amount of memory regardless of how many values are
+ * recorded. Values are sorted into logarithmic buckets with eight linear sub-buckets per power of
+ * two, so percentiles are accurate to within 12.5% over the whole range of a long. The unit of
+ * the values is up to the caller.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] mCounts = new long[BUCKETS];
+    private long mCount = 0;
+    private long mSum = 0;
+    private long mMin = Long.MAX_VALUE;
+    private long mMax = 0;
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << shift;
+    }
+
+    /**
+     * @param value The latency to record, negative values are counted as 0.
+     */
+    public synchronized void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        mCounts[indexOf(value)]++;
+        mCount++;
+        mSum += value;
+        mMin = Math.min(mMin, value);
+        mMax = Math.max(mMax, value);
+    }
+
+    /**
+     * @param percentile The percentile to compute, between 0 and 100.
+     * @return The upper bound of the bucket containing the given percentile (but never more than
+     * the largest recorded value), or 0 if nothing was recorded yet.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * mCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                // The bound of the topmost buckets overflows, but no long can exceed those anyway
+                long next = i + 1 < BUCKETS ? lowerBoundOf(i + 1) : 0;
+                long upper = next > 0 ? next - 1 : Long.MAX_VALUE;
+                return Math.max(mMin, Math.min(upper, mMax));
+            }
+        }
+
+        return mMax;
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    public synchronized long getMin() {
+        return mCount == 0 ? 0 : mMin;
+    }
+
+    public synchronized long getMax() {
+        return mMax;
+    }
+
+    public synchronized double getMean() {
+        return mCount == 0 ? 0 : (double) mSum / mCount;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(mCounts, 0);
+        mCount = 0;
+        mSum = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "n=" + mCount
+                + " p50=" + getPercentile(50)
+                + " p90=" + getPercentile(90)
+                + " p99=" + getPercentile(99)
+                + " max=" + mMax;
+    }
+}
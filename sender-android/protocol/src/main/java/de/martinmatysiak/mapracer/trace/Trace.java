@@ -0,0 +1,48 @@
+package de.martinmatysiak.mapracer.trace;
+
+/**
+ * Layout of the binary race trace files. A trace starts with a header:
+ * <pre>
+ *   int  MAGIC
+ *   byte VERSION
+ *   long wall clock time in milliseconds when the trace was started
+ * </pre>
+ * followed by fixed-size, big-endian records, each starting with its type and the time in
+ * milliseconds since the previous record (or the start of the trace for the first one):
+ * <pre>
+ *   POSITION:     byte type, int delta, int latitude E7, int longitude E7
+ *   GAME_STATE:   byte type, int delta, byte GameState ordinal
+ *   PLAYER_STATE: byte type, int delta, byte PlayerState ordinal
+ * </pre>
+ */
+public final class Trace {
+
+    public static final int MAGIC = 0x4d525431; // "MRT1"
+    public static final byte VERSION = 1;
+    public static final int HEADER_SIZE = 4 + 1 + 8;
+
+    public static final byte POSITION = 1;
+    public static final byte GAME_STATE = 2;
+    public static final byte PLAYER_STATE = 3;
+
+    public static final int POSITION_SIZE = 1 + 4 + 4 + 4;
+    public static final int STATE_SIZE = 1 + 4 + 1;
+    public static final int MAX_RECORD_SIZE = POSITION_SIZE;
+
+    private Trace() { /* constants only */ }
+
+    /**
+     * @return The size of the given record type in bytes, or -1 if the type is unknown.
+     */
+    public static int sizeOf(byte type) {
+        switch (type) {
+            case POSITION:
+                return POSITION_SIZE;
+            case GAME_STATE:
+            case PLAYER_STATE:
+                return STATE_SIZE;
+            default:
+                return -1;
+        }
+    }
+}
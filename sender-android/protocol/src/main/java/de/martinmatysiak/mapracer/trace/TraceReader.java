@@ -0,0 +1,153 @@
+package de.martinmatysiak.mapracer.trace;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import de.martinmatysiak.mapracer.data.GameState;
+import de.martinmatysiak.mapracer.data.PlayerState;
+import de.martinmatysiak.mapracer.data.PositionCodec;
+
+/**
+ * Reads a trace file record by record. The reader works like a cursor: {@link #next()} advances
+ * to the next record, whose values can then be queried. No memory is allocated per record.
+ */
+public class TraceReader implements Closeable {
+
+    // values() returns a new array on every call
+    private static final GameState[] GAME_STATES = GameState.values();
+    private static final PlayerState[] PLAYER_STATES = PlayerState.values();
+
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private final long mStartWallTime;
+
+    private byte mType;
+    private long mTime = 0;
+    private int mLatitude;
+    private int mLongitude;
+    private byte mState;
+
+    /**
+     * @param file       The trace to read.
+     * @param bufferSize The size of the read buffer in bytes.
+     * @throws IOException If the file could not be read or is not a trace.
+     */
+    public TraceReader(File file, int bufferSize) throws IOException {
+        mChannel = new FileInputStream(file).getChannel();
+        mBuffer = ByteBuffer.allocate(Math.max(bufferSize, Trace.HEADER_SIZE));
+        mBuffer.flip();
+
+        if (!fill(Trace.HEADER_SIZE) || mBuffer.getInt() != Trace.MAGIC) {
+            mChannel.close();
+            throw new IOException("Not a trace file: " + file);
+        }
+
+        byte version = mBuffer.get();
+        if (version != Trace.VERSION) {
+            mChannel.close();
+            throw new IOException("Unsupported trace version " + version + ": " + file);
+        }
+
+        mStartWallTime = mBuffer.getLong();
+    }
+
+    /**
+     * Makes sure that at least the given number of bytes can be read from the buffer.
+     *
+     * @return False if the end of the file has been reached before.
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (mBuffer.remaining() >= bytes) {
+            return true;
+        }
+
+        mBuffer.compact();
+        while (mBuffer.position() < bytes) {
+            if (mChannel.read(mBuffer) < 0) {
+                mBuffer.flip();
+                return false;
+            }
+        }
+        mBuffer.flip();
+        return true;
+    }
+
+    /**
+     * Advances to the next record.
+     *
+     * @return False if there are no more records. A truncated last record (e.g. if the app was
+     * killed while writing) is ignored.
+     */
+    public boolean next() throws IOException {
+        if (!fill(1)) {
+            return false;
+        }
+
+        byte type = mBuffer.get(mBuffer.position());
+        int size = Trace.sizeOf(type);
+        if (size < 0) {
+            throw new IOException("Unknown record type " + type);
+        }
+
+        if (!fill(size)) {
+            return false;
+        }
+
+        mType = mBuffer.get();
+        mTime += mBuffer.getInt();
+        if (mType == Trace.POSITION) {
+            mLatitude = mBuffer.getInt();
+            mLongitude = mBuffer.getInt();
+        } else {
+            mState = mBuffer.get();
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The wall clock time in milliseconds at which the trace was started.
+     */
+    public long getStartWallTime() {
+        return mStartWallTime;
+    }
+
+    /**
+     * @return The type of the current record, one of the constants in {@link Trace}.
+     */
+    public byte getType() {
+        return mType;
+    }
+
+    /**
+     * @return The time of the current record in milliseconds since the start of the trace.
+     */
+    public long getTime() {
+        return mTime;
+    }
+
+    public double getLatitude() {
+        return PositionCodec.fromE7(mLatitude);
+    }
+
+    public double getLongitude() {
+        return PositionCodec.fromE7(mLongitude);
+    }
+
+    public GameState getGameState() {
+        return GAME_STATES[mState];
+    }
+
+    public PlayerState getPlayerState() {
+        return PLAYER_STATES[mState];
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+}
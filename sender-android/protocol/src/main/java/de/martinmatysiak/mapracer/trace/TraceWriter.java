@@ -0,0 +1,91 @@
+package de.martinmatysiak.mapracer.trace;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import de.martinmatysiak.mapracer.data.GameState;
+import de.martinmatysiak.mapracer.data.PlayerState;
+import de.martinmatysiak.mapracer.data.PositionCodec;
+
+/**
+ * Appends records to a trace file (see {@link Trace} for the format). Records are collected in a
+ * buffer that is allocated once and written out whenever it is full, so recording does not
+ * allocate any memory regardless of the length of the race.
+ */
+public class TraceWriter implements Closeable {
+
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private long mLastTime;
+
+    /**
+     * Creates a new trace file, replacing any existing file with that name.
+     *
+     * @param file       The file to write to.
+     * @param bufferSize The size of the buffer in bytes.
+     * @param wallTime   The current wall clock time in milliseconds, stored in the header.
+     * @param time       The current time in milliseconds on the clock that is used for the records.
+     */
+    public TraceWriter(File file, int bufferSize, long wallTime, long time) throws IOException {
+        mChannel = new FileOutputStream(file, false).getChannel();
+        mBuffer = ByteBuffer.allocate(Math.max(bufferSize, Trace.HEADER_SIZE));
+        mLastTime = time;
+
+        mBuffer.putInt(Trace.MAGIC);
+        mBuffer.put(Trace.VERSION);
+        mBuffer.putLong(wallTime);
+    }
+
+    public void writePosition(long time, double latitude, double longitude) throws IOException {
+        begin(Trace.POSITION, time);
+        mBuffer.putInt(PositionCodec.toE7(latitude));
+        mBuffer.putInt(PositionCodec.toE7(longitude));
+    }
+
+    public void writeGameState(long time, GameState state) throws IOException {
+        begin(Trace.GAME_STATE, time);
+        mBuffer.put((byte) state.ordinal());
+    }
+
+    public void writePlayerState(long time, PlayerState state) throws IOException {
+        begin(Trace.PLAYER_STATE, time);
+        mBuffer.put((byte) state.ordinal());
+    }
+
+    private void begin(byte type, long time) throws IOException {
+        if (mBuffer.remaining() < Trace.MAX_RECORD_SIZE) {
+            flush();
+        }
+
+        // Deltas don't go negative even if the clock does something weird. The base never moves
+        // back either, or the records after a clock jump would be placed too late.
+        long delta = Math.max(0, Math.min(Integer.MAX_VALUE, time - mLastTime));
+        mLastTime = Math.max(mLastTime, time);
+        mBuffer.put(type);
+        mBuffer.putInt((int) delta);
+    }
+
+    /**
+     * Writes all buffered records to the file.
+     */
+    public void flush() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            mChannel.close();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package de.martinmatysiak.mapracer.transport;
+
+import de.martinmatysiak.mapracer.data.Message;
+
+public interface MessageCallback {
+    /**
+     * @param namespace The namespace on which the message was received.
+     * @param message   The already deserialized message.
+     */
+    public void onMessageReceived(String namespace, Message message);
+}
@@ -0,0 +1,120 @@
+package de.martinmatysiak.mapracer.transport;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+
+import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.MessageType;
+
+/**
+ * The typed callbacks of a single namespace, indexed by the type of message they are interested
+ * in. Every change replaces the affected arrays (and the map holding them) with a modified copy,
+ * so dispatching reads a consistent snapshot without locking or allocating. Callbacks may thus
+ * add or remove themselves, or others, while a message is being dispatched, and dispatching is
+ * safe from any thread.
+ */
+public class MessageCallbackRegistry {
+
+    private static final MessageCallback[] NONE = new MessageCallback[0];
+
+    private volatile EnumMap<MessageType, MessageCallback[]> mCallbacks =
+            new EnumMap<MessageType, MessageCallback[]>(MessageType.class);
+
+    /**
+     * Registers the given callback for messages of the given types. Adding a callback again for a
+     * type it is already registered for has no effect.
+     *
+     * @param callback The callback to add.
+     * @param types    The message types the callback wants to receive. All types if none given.
+     */
+    public synchronized void add(MessageCallback callback, MessageType... types) {
+        if (types == null || types.length == 0) {
+            types = MessageType.values();
+        }
+
+        EnumMap<MessageType, MessageCallback[]> callbacks = mCallbacks.clone();
+        for (MessageType type : types) {
+            MessageCallback[] current = get(callbacks, type);
+            if (indexOf(current, callback) >= 0) {
+                continue;
+            }
+
+            MessageCallback[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = callback;
+            callbacks.put(type, updated);
+        }
+
+        mCallbacks = callbacks;
+    }
+
+    /**
+     * Removes the given callback for all message types. Does nothing if it wasn't registered.
+     *
+     * @param callback The callback to remove.
+     */
+    public synchronized void remove(MessageCallback callback) {
+        EnumMap<MessageType, MessageCallback[]> callbacks = mCallbacks.clone();
+        for (MessageType type : MessageType.values()) {
+            MessageCallback[] current = get(callbacks, type);
+            int index = indexOf(current, callback);
+            if (index < 0) {
+                continue;
+            }
+
+            if (current.length == 1) {
+                callbacks.remove(type);
+                continue;
+            }
+
+            MessageCallback[] updated = new MessageCallback[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, updated.length - index);
+            callbacks.put(type, updated);
+        }
+
+        mCallbacks = callbacks;
+    }
+
+    /**
+     * @return Whether no callback is registered for any type.
+     */
+    public boolean isEmpty() {
+        return mCallbacks.isEmpty();
+    }
+
+    /**
+     * @return Whether any callback is registered for the given type.
+     */
+    public boolean isWatched(MessageType type) {
+        return get(mCallbacks, type).length > 0;
+    }
+
+    /**
+     * Calls all callbacks that were registered for the message's type when dispatching started.
+     *
+     * @param namespace The namespace on which the message was received.
+     * @param message   The message to dispatch.
+     */
+    public void dispatch(String namespace, Message message) {
+        MessageCallback[] callbacks = get(mCallbacks, message.type);
+        for (int i = 0; i < callbacks.length; i++) {
+            callbacks[i].onMessageReceived(namespace, message);
+        }
+    }
+
+    private static MessageCallback[] get(EnumMap<MessageType, MessageCallback[]> callbacks,
+                                         MessageType type) {
+        MessageCallback[] result = callbacks.get(type != null ? type : MessageType.UNKNOWN);
+        return result != null ? result : NONE;
+    }
+
+    private static int indexOf(MessageCallback[] callbacks, MessageCallback callback) {
+        for (int i = 0; i < callbacks.length; i++) {
+            if (callbacks[i] == callback) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
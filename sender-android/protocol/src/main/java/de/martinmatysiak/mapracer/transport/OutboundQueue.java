@@ -0,0 +1,284 @@
+package de.martinmatysiak.mapracer.transport;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.logging.Logger;
+
+import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.PositionMessage;
+import de.martinmatysiak.mapracer.metrics.ClockSync;
+import de.martinmatysiak.mapracer.metrics.LatencyHistogram;
+
+/**
+ * Outbound messages waiting to be sent, split into two lanes. Control messages (login, logout,
+ * requests, pings...) are kept in order up to a fixed capacity (the oldest ones are dropped first,
+ * but never those added by {@link #addFirst(String, Message)}) and always go out before
+ * positions. Positions are only interesting as long as they are current, so the position lane
+ * just holds the newest one.
+ * <p/>
+ * Only a limited number of messages (the send window) are handed out by {@link #next()} until
+ * they are reported as sent by {@link #complete(Entry)}, and only one of them may be a position.
+ * This way, a slow channel makes messages wait (and positions get replaced) here rather than in
+ * the transport.
+ * <p/>
+ * The queue holds messages both while they wait for the I/O thread and while the session is
+ * temporarily unavailable, so all methods are thread-safe.
+ */
+public class OutboundQueue {
+
+    public static final String TAG = OutboundQueue.class.getSimpleName();
+
+    public enum Lane {
+        CONTROL,
+        POSITION
+    }
+
+    /**
+     * A queued message together with the namespace it was meant for.
+     */
+    public static class Entry {
+        public final String namespace;
+        public final Message message;
+        final long enqueuedAt;
+        // Added by addFirst, so it is never dropped
+        final boolean priority;
+
+        Entry(String namespace, Message message, long enqueuedAt, boolean priority) {
+            this.namespace = namespace;
+            this.message = message;
+            this.enqueuedAt = enqueuedAt;
+            this.priority = priority;
+        }
+    }
+
+    private final int mCapacity;
+    private final int mWindow;
+    private final LinkedList<Entry> mControl = new LinkedList<Entry>();
+    private Entry mPosition = null;
+    private int mInFlight = 0;
+    private int mMaxInFlight = 0;
+    private boolean mPositionInFlight = false;
+
+    private final int[] mMaxDepths = new int[Lane.values().length];
+    private final int[] mDroppedCounts = new int[Lane.values().length];
+    private final LatencyHistogram[] mWaitTimes = new LatencyHistogram[Lane.values().length];
+
+    /**
+     * @param capacity The maximum number of control messages to keep.
+     * @param window   The maximum number of messages in flight.
+     */
+    public OutboundQueue(int capacity, int window) {
+        mCapacity = capacity;
+        mWindow = window;
+        for (int i = 0; i < mWaitTimes.length; i++) {
+            mWaitTimes[i] = new LatencyHistogram();
+        }
+    }
+
+    public static Lane laneOf(Message message) {
+        return message instanceof PositionMessage ? Lane.POSITION : Lane.CONTROL;
+    }
+
+    public synchronized void add(String namespace, Message message) {
+        add(namespace, message, false);
+    }
+
+    /**
+     * Adds a control message in front of all others that are waiting, e.g. the login of a new
+     * session. Unlike other control messages, it isn't dropped if the lane overflows.
+     */
+    public synchronized void addFirst(String namespace, Message message) {
+        add(namespace, message, true);
+    }
+
+    private void add(String namespace, Message message, boolean first) {
+        Entry entry = new Entry(namespace, message, ClockSync.now(), first);
+        if (laneOf(message) == Lane.POSITION) {
+            if (mPosition != null) {
+                mDroppedCounts[Lane.POSITION.ordinal()]++;
+            }
+
+            mPosition = entry;
+            mMaxDepths[Lane.POSITION.ordinal()] = 1;
+            return;
+        }
+
+        if (mControl.size() >= mCapacity) {
+            Entry dropped = removeOldest();
+            if (dropped == null && first) {
+                // Only priority entries, all of them at the front, newest first
+                dropped = mControl.removeLast();
+            } else if (dropped == null) {
+                dropped = entry;
+            }
+            mDroppedCounts[Lane.CONTROL.ordinal()]++;
+            Logger.getLogger(TAG).warning("Queue full, dropping " + dropped.message.type);
+            if (dropped == entry) {
+                return;
+            }
+        }
+
+        if (first) {
+            mControl.addFirst(entry);
+        } else {
+            mControl.addLast(entry);
+        }
+        mMaxDepths[Lane.CONTROL.ordinal()] =
+                Math.max(mMaxDepths[Lane.CONTROL.ordinal()], mControl.size());
+    }
+
+    /**
+     * Removes the oldest control message that wasn't added by addFirst.
+     *
+     * @return The removed entry, null if there is none.
+     */
+    private Entry removeOldest() {
+        Iterator<Entry> it = mControl.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (!entry.priority) {
+                it.remove();
+                return entry;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes the next message of the given lane.
+     *
+     * @return The oldest control message or the newest position, null if the lane is empty.
+     */
+    public synchronized Entry poll(Lane lane) {
+        Entry entry;
+        if (lane == Lane.CONTROL) {
+            entry = mControl.pollFirst();
+        } else {
+            entry = mPosition;
+            mPosition = null;
+        }
+
+        if (entry != null) {
+            mWaitTimes[lane.ordinal()].record(ClockSync.now() - entry.enqueuedAt);
+        }
+        return entry;
+    }
+
+    /**
+     * Removes the next message to send, if the send window has room for it: the oldest control
+     * message or, if none is waiting and no other position is in flight, the newest position. The
+     * message occupies a slot of the window until it is passed to {@link #complete(Entry)}.
+     *
+     * @return The message to send, null if there is none or the window is full.
+     */
+    public synchronized Entry next() {
+        if (mInFlight >= mWindow) {
+            return null;
+        }
+
+        Entry entry = poll(Lane.CONTROL);
+        if (entry == null && !mPositionInFlight) {
+            entry = poll(Lane.POSITION);
+            mPositionInFlight = entry != null;
+        }
+
+        if (entry != null) {
+            mInFlight++;
+            mMaxInFlight = Math.max(mMaxInFlight, mInFlight);
+        }
+        return entry;
+    }
+
+    /**
+     * Frees the slot of a message returned by {@link #next()}, whether it has been sent or not.
+     */
+    public synchronized void complete(Entry entry) {
+        if (mInFlight > 0) {
+            mInFlight--;
+        }
+
+        if (laneOf(entry.message) == Lane.POSITION) {
+            mPositionInFlight = false;
+        }
+    }
+
+    /**
+     * Forgets about all messages in flight, e.g. because their completions will never come after
+     * the session has been replaced.
+     */
+    public synchronized void resetWindow() {
+        mInFlight = 0;
+        mPositionInFlight = false;
+    }
+
+    /**
+     * @return The number of messages that have been handed out but not completed yet.
+     */
+    public synchronized int getInFlight() {
+        return mInFlight;
+    }
+
+    /**
+     * @return The largest number of messages that were in flight at once.
+     */
+    public synchronized int getMaxInFlight() {
+        return mMaxInFlight;
+    }
+
+    public synchronized void clear() {
+        mControl.clear();
+        mPosition = null;
+    }
+
+    public synchronized boolean isEmpty() {
+        return mControl.isEmpty() && mPosition == null;
+    }
+
+    /**
+     * @return The number of messages currently waiting in the given lane.
+     */
+    public synchronized int getDepth(Lane lane) {
+        if (lane == Lane.CONTROL) {
+            return mControl.size();
+        }
+        return mPosition != null ? 1 : 0;
+    }
+
+    /**
+     * @return The largest number of messages that were waiting in the given lane at once.
+     */
+    public synchronized int getMaxDepth(Lane lane) {
+        return mMaxDepths[lane.ordinal()];
+    }
+
+    /**
+     * @return The number of messages of the given lane that were discarded because of the
+     * capacity or a newer position.
+     */
+    public synchronized int getDroppedCount(Lane lane) {
+        return mDroppedCounts[lane.ordinal()];
+    }
+
+    /**
+     * @return The time in microseconds that messages of the given lane spent in the queue.
+     */
+    public LatencyHistogram getWaitTimes(Lane lane) {
+        return mWaitTimes[lane.ordinal()];
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Lane lane : Lane.values()) {
+            builder.append(lane)
+                    .append(": depth=").append(getDepth(lane))
+                    .append(" max=").append(getMaxDepth(lane))
+                    .append(" dropped=").append(getDroppedCount(lane))
+                    .append(" wait(us)=").append(getWaitTimes(lane))
+                    .append("; ");
+        }
+        builder.append("in flight=").append(mInFlight).append(" max=").append(mMaxInFlight);
+        return builder.toString();
+    }
+}
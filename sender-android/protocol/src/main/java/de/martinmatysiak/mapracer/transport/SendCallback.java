@@ -0,0 +1,8 @@
+package de.martinmatysiak.mapracer.transport;
+
+public interface SendCallback {
+    /**
+     * @param success Whether the message has been handed to the network.
+     */
+    public void onSendComplete(boolean success);
+}
@@ -0,0 +1,98 @@
+package de.martinmatysiak.mapracer.transport;
+
+import de.martinmatysiak.mapracer.metrics.ClockSync;
+
+/**
+ * Adapts the interval between two positions to what the channel to the receiver currently
+ * sustains, using additive increase / multiplicative decrease of the send rate: every send that
+ * completes within the target latency shortens the interval by a small step, whereas a late or
+ * failed one doubles it. Like TCP, the interval is only doubled once per round trip, i.e. sends
+ * that were already under way when it was last doubled do not count again.
+ * <p/>
+ * Completions are reported from whichever thread the transport uses, so all methods are
+ * thread-safe.
+ */
+public class SendRateController {
+
+    private final long mMinInterval;
+    private final long mMaxInterval;
+    private final long mStep;
+    private final long mTargetLatency;
+
+    private long mInterval;
+    private long mLastIncreaseAt = Long.MIN_VALUE;
+    private int mLateCount = 0;
+    private int mFailedCount = 0;
+
+    /**
+     * @param minInterval   The shortest interval in milliseconds, used while the channel keeps up.
+     * @param maxInterval   The longest interval in milliseconds.
+     * @param step          The amount in milliseconds by which a timely send shortens the interval.
+     * @param targetLatency The time in milliseconds within which a send should complete.
+     */
+    public SendRateController(long minInterval, long maxInterval, long step, long targetLatency) {
+        mMinInterval = minInterval;
+        mMaxInterval = maxInterval;
+        mStep = step;
+        mTargetLatency = targetLatency * 1000;
+        mInterval = minInterval;
+    }
+
+    /**
+     * @param submittedAt When the message was handed to the transport, see {@link ClockSync#now()}.
+     * @param completedAt When the transport reported the message as sent (or failed).
+     * @param success     Whether the message has been sent.
+     */
+    public synchronized void onSendComplete(long submittedAt, long completedAt, boolean success) {
+        boolean late = completedAt - submittedAt > mTargetLatency;
+        if (success && !late) {
+            mInterval = Math.max(mMinInterval, mInterval - mStep);
+            return;
+        }
+
+        if (success) {
+            mLateCount++;
+        } else {
+            mFailedCount++;
+        }
+
+        if (submittedAt > mLastIncreaseAt) {
+            mInterval = Math.min(mMaxInterval, mInterval * 2);
+            mLastIncreaseAt = completedAt;
+        }
+    }
+
+    /**
+     * @return The current interval between two positions in milliseconds.
+     */
+    public synchronized long getInterval() {
+        return mInterval;
+    }
+
+    /**
+     * Starts over with the shortest interval, e.g. for a new session.
+     */
+    public synchronized void reset() {
+        mInterval = mMinInterval;
+        mLastIncreaseAt = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return The number of sends that completed, but later than the target latency.
+     */
+    public synchronized int getLateCount() {
+        return mLateCount;
+    }
+
+    /**
+     * @return The number of sends that failed.
+     */
+    public synchronized int getFailedCount() {
+        return mFailedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "interval=" + mInterval + "ms late=" + mLateCount + " failed=" + mFailedCount;
+    }
+}
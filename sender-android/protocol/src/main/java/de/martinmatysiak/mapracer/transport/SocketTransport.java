@@ -0,0 +1,299 @@
+package de.martinmatysiak.mapracer.transport;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A transport to a receiver on the local network (or on the same machine) using a plain TCP
+ * connection, which avoids the detour over the Cast relay. Each message is sent as one line of
+ * the form {@code namespace TAB message LF}; as messages are JSON, neither of the two separators
+ * can appear unescaped within them.
+ * <p/>
+ * Every connection uses one thread for reading, which also invokes the listener, and one for
+ * writing, so none of the methods block. There is no session state on the receiver side beyond
+ * the connection itself, i.e. a reconnect never resumes a session.
+ */
+public class SocketTransport implements Transport {
+
+    public static final String TAG = SocketTransport.class.getSimpleName();
+
+    /** Time in milliseconds after which connecting to the receiver is given up. */
+    public static final int CONNECT_TIMEOUT = 3000;
+
+    public static final char SEPARATOR = '\t';
+
+    private static class Frame {
+        final String namespace;
+        final String message;
+        final SendCallback callback;
+
+        Frame(String namespace, String message, SendCallback callback) {
+            this.namespace = namespace;
+            this.message = message;
+            this.callback = callback;
+        }
+    }
+
+    // Tells the writer to close the connection once everything before it has been sent
+    private static final Frame CLOSE = new Frame(null, null, null);
+
+    private final String mHost;
+    private final int mPort;
+    private final Set<String> mNamespaces = new CopyOnWriteArraySet<String>();
+    private volatile TransportListener mListener;
+    private Connection mConnection;
+
+    private class Connection implements Runnable {
+        final BlockingQueue<Frame> mOutbox = new LinkedBlockingQueue<Frame>();
+        volatile Socket mSocket;
+        volatile boolean mConnected = false;
+        // Set once the writer is done, anything queued afterwards fails right away
+        volatile boolean mClosed = false;
+
+        @Override
+        public void run() {
+            boolean writing = false;
+            try {
+                Socket socket = new Socket();
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(mHost, mPort), CONNECT_TIMEOUT);
+                mSocket = socket;
+                if (!isCurrent()) {
+                    return;
+                }
+
+                Thread writer = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        write();
+                    }
+                }, TAG + "-writer");
+                writer.setDaemon(true);
+                writer.start();
+                writing = true;
+
+                mConnected = true;
+                notifyConnected();
+                read(new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8")));
+            } catch (IOException ex) {
+                // Could not connect or the connection has been lost, handled below
+            } finally {
+                mConnected = false;
+                if (writing) {
+                    mOutbox.add(CLOSE);
+                } else {
+                    close();
+                }
+
+                if (finish()) {
+                    TransportListener listener = mListener;
+                    if (listener != null) {
+                        listener.onTransportDisconnected(false);
+                    }
+                }
+            }
+        }
+
+        private void notifyConnected() {
+            TransportListener listener = mListener;
+            if (listener != null) {
+                listener.onTransportConnected(false);
+            }
+        }
+
+        private void read(BufferedReader reader) throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(SEPARATOR);
+                if (separator < 0) {
+                    continue;
+                }
+
+                String namespace = line.substring(0, separator);
+                TransportListener listener = mListener;
+                if (listener != null && mNamespaces.contains(namespace) && isCurrent()) {
+                    listener.onTransportMessage(namespace, line.substring(separator + 1));
+                }
+            }
+        }
+
+        /**
+         * Writes queued messages until the connection is closed, flushing only once the queue has
+         * been drained.
+         */
+        private void write() {
+            List<SendCallback> sent = new ArrayList<SendCallback>();
+            try {
+                Writer writer = new BufferedWriter(
+                        new OutputStreamWriter(mSocket.getOutputStream(), "UTF-8"));
+                while (true) {
+                    Frame frame = mOutbox.take();
+                    do {
+                        if (frame == CLOSE) {
+                            writer.flush();
+                            complete(sent, true);
+                            return;
+                        }
+
+                        writer.write(frame.namespace);
+                        writer.write(SEPARATOR);
+                        writer.write(frame.message);
+                        writer.write('\n');
+                        if (frame.callback != null) {
+                            sent.add(frame.callback);
+                        }
+                        frame = mOutbox.poll();
+                    } while (frame != null);
+
+                    writer.flush();
+                    complete(sent, true);
+                }
+            } catch (IOException ex) {
+                complete(sent, false);
+            } catch (InterruptedException ex) {
+                // Fails whatever is left below
+            } finally {
+                close();
+                // Frames queued behind CLOSE or after an error won't be written anymore
+                mClosed = true;
+                fail(mOutbox);
+            }
+        }
+
+        void close() {
+            Socket socket = mSocket;
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException ex) {
+                    // Nothing left to do
+                }
+            }
+        }
+
+        private boolean isCurrent() {
+            synchronized (SocketTransport.this) {
+                return mConnection == this;
+            }
+        }
+
+        /**
+         * @return Whether this was still the current connection, i.e. the disconnect was not
+         * requested.
+         */
+        private boolean finish() {
+            synchronized (SocketTransport.this) {
+                if (mConnection != this) {
+                    return false;
+                }
+
+                mConnection = null;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param host The host name or address of the receiver.
+     * @param port The port on which the receiver accepts connections.
+     */
+    public SocketTransport(String host, int port) {
+        mHost = host;
+        mPort = port;
+    }
+
+    private static void complete(List<SendCallback> callbacks, boolean success) {
+        for (SendCallback callback : callbacks) {
+            callback.onSendComplete(success);
+        }
+        callbacks.clear();
+    }
+
+    private static void fail(BlockingQueue<Frame> outbox) {
+        Frame frame;
+        while ((frame = outbox.poll()) != null) {
+            if (frame.callback != null) {
+                frame.callback.onSendComplete(false);
+            }
+        }
+    }
+
+    @Override
+    public void setListener(TransportListener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public synchronized void connect() {
+        if (mConnection != null) {
+            return;
+        }
+
+        mConnection = new Connection();
+        Thread reader = new Thread(mConnection, TAG + "-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public void disconnect(boolean leave) {
+        Connection connection;
+        synchronized (this) {
+            connection = mConnection;
+            mConnection = null;
+        }
+
+        if (connection != null) {
+            // The writer closes the socket once everything queued so far is out
+            connection.mOutbox.add(CLOSE);
+        }
+    }
+
+    @Override
+    public synchronized boolean isConnected() {
+        return mConnection != null && mConnection.mConnected;
+    }
+
+    @Override
+    public void subscribe(String namespace) {
+        mNamespaces.add(namespace);
+    }
+
+    @Override
+    public void unsubscribe(String namespace) {
+        mNamespaces.remove(namespace);
+    }
+
+    @Override
+    public void send(String namespace, String message, SendCallback callback) {
+        Connection connection;
+        synchronized (this) {
+            connection = mConnection;
+        }
+
+        if (connection == null || !connection.mConnected) {
+            if (callback != null) {
+                callback.onSendComplete(false);
+            }
+            return;
+        }
+
+        connection.mOutbox.add(new Frame(namespace, message, callback));
+        if (connection.mClosed) {
+            // The writer may have finished before it could see the frame
+            fail(connection.mOutbox);
+        }
+    }
+}
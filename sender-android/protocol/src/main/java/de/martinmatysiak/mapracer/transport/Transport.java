@@ -0,0 +1,61 @@
+package de.martinmatysiak.mapracer.transport;
+
+/**
+ * A connection to a MapRacer receiver over which already encoded messages are exchanged on named
+ * channels (namespaces). Implementations deal with establishing and tearing down the session and
+ * with framing, but know nothing about the messages themselves.
+ * <p/>
+ * All methods may be called from any thread and must not block on network I/O. Listener methods
+ * may be invoked on any thread as well, it is up to the listener to move them where it needs them.
+ */
+public interface Transport {
+    /**
+     * @param listener The listener to inform about the state of the session and received messages.
+     */
+    public void setListener(TransportListener listener);
+
+    /**
+     * Starts to establish the session, or continues where a previous attempt left off. Does
+     * nothing if the transport is already connected or currently connecting.
+     */
+    public void connect();
+
+    /**
+     * Closes the session. Messages that have already been passed to {@link #send} are still sent
+     * if possible. No more listener methods are invoked afterwards.
+     *
+     * @param leave Whether the session is left for good, i.e. it should not be resumed by the next
+     *              {@link #connect()}.
+     */
+    public void disconnect(boolean leave);
+
+    /**
+     * @return Whether the session is established and messages can be sent.
+     */
+    public boolean isConnected();
+
+    /**
+     * Starts delivering messages of the given namespace to the listener. Subscriptions are kept
+     * across reconnects.
+     *
+     * @param namespace The namespace to listen for.
+     */
+    public void subscribe(String namespace);
+
+    /**
+     * Stops delivering messages of the given namespace to the listener.
+     *
+     * @param namespace The namespace to stop listening for.
+     */
+    public void unsubscribe(String namespace);
+
+    /**
+     * Sends the given message. Messages are sent in the order in which they were passed to this
+     * method.
+     *
+     * @param namespace The namespace for which to send the message.
+     * @param message   The encoded message.
+     * @param callback  Informed once the message has been sent or could not be sent. Might be null.
+     */
+    public void send(String namespace, String message, SendCallback callback);
+}
@@ -0,0 +1,29 @@
+package de.martinmatysiak.mapracer.transport;
+
+public interface TransportListener {
+    /**
+     * The session has been established and messages can be sent.
+     *
+     * @param resumed Whether an existing session has been resumed rather than a new one started.
+     */
+    public void onTransportConnected(boolean resumed);
+
+    /**
+     * The connection has been interrupted but might recover by itself or by calling connect.
+     */
+    public void onTransportSuspended();
+
+    /**
+     * The connection could not be established or has been lost.
+     *
+     * @param sessionEnded Whether the receiver ended the session, in which case reconnecting is
+     *                     pointless.
+     */
+    public void onTransportDisconnected(boolean sessionEnded);
+
+    /**
+     * @param namespace The namespace on which the message was received.
+     * @param message   The message as it was received, i.e. still encoded.
+     */
+    public void onTransportMessage(String namespace, String message);
+}
@@ -0,0 +1,183 @@
+package de.martinmatysiak.mapracer.data;
+
+import com.google.gson.Gson;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the hand-written number formatting of DoubleFormat and PositionCodec against Gson, which
+ * the receiver's parsing was written for.
+ */
+public class DoubleFormatTest {
+
+    private static final double[] EDGE_CASES = new double[]{
+            0.0, -0.0, 1.0, -1.0, 0.1, 0.2, 0.3, 1.0 / 3, 2.0 / 3, 0.5, 1e-3, -1e-3,
+            Math.nextUp(1e-3), Math.nextAfter(1e-3, Double.NEGATIVE_INFINITY), 1e7, -1e7,
+            Math.nextAfter(1e7, Double.NEGATIVE_INFINITY), Math.nextUp(1e7), 9999999.999999998, 1e-4, 1e-10, 1e20, 1e100,
+            Double.MIN_VALUE, -Double.MIN_VALUE, Double.MIN_NORMAL, Double.MAX_VALUE,
+            -Double.MAX_VALUE, 90, -90, 180, -180, 89.99999999999999, 179.99999999999997,
+            52.5163, 13.3777, -33.856784, 151.215297, 0.001000000000000001, 123456.789012345,
+            1234567.8901234567, 4.35, 2.675, 1.005, 0.07, 100.0, 1e6, 999999.9999999999
+    };
+
+    private static final Gson GSON = Message.getConfiguredGson();
+
+    private static void assertSameAsGson(double value) {
+        String expected = GSON.toJson(value);
+        String actual = DoubleFormat.append(new StringBuilder(), value).toString();
+        assertEquals("Formatting " + Double.doubleToRawLongBits(value), expected, actual);
+    }
+
+    private static void assertSameAsGson(PositionCodec codec, double lat, double lng) {
+        PositionMessage message = new PositionMessage.Builder()
+                .withLocation(new GeoPoint(lat, lng))
+                .build();
+        assertEquals(GSON.toJson(message), codec.encode(lat, lng));
+    }
+
+    @Test
+    public void edgeCases() {
+        for (double value : EDGE_CASES) {
+            assertSameAsGson(value);
+        }
+    }
+
+    @Test
+    public void randomCoordinates() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200000; i++) {
+            assertSameAsGson(random.nextDouble() * 360 - 180);
+        }
+    }
+
+    @Test
+    public void randomDecimals() {
+        // Values as they come from Street View have few decimal places
+        Random random = new Random(8);
+        for (int i = 0; i < 200000; i++) {
+            int digits = random.nextInt(16);
+            double value = Math.round((random.nextDouble() * 360 - 180) * Math.pow(10, digits))
+                    / Math.pow(10, digits);
+            assertSameAsGson(value);
+        }
+    }
+
+    @Test
+    public void randomBits() {
+        Random random = new Random(9);
+        for (int i = 0; i < 200000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                assertSameAsGson(value);
+            }
+        }
+    }
+
+    @Test
+    public void nonFiniteValuesAreRejected() {
+        for (double value : new double[]{Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY}) {
+            try {
+                DoubleFormat.append(new StringBuilder(), value);
+                fail("Formatted " + value);
+            } catch (IllegalArgumentException ex) {
+                // Expected, just like Gson
+            }
+        }
+    }
+
+    @Test
+    public void positionsLikeGson() {
+        PositionCodec codec = new PositionCodec();
+        for (int i = 0; i < EDGE_CASES.length; i++) {
+            assertSameAsGson(codec, EDGE_CASES[i], EDGE_CASES[EDGE_CASES.length - 1 - i]);
+        }
+
+        Random random = new Random(10);
+        for (int i = 0; i < 100000; i++) {
+            assertSameAsGson(codec, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Skips the calling test on VMs that can't count allocations per thread.
+     */
+    private static void assumeAllocationCounting() {
+        Object threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled());
+    }
+
+    @Test
+    public void appendDoesNotAllocate() {
+        assumeAllocationCounting();
+
+        double[] values = new double[1000];
+        Random random = new Random(11);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.round((random.nextDouble() * 360 - 180) * 1e7) / 1e7;
+        }
+
+        StringBuilder builder = new StringBuilder(64);
+        for (int round = 0; round < 20; round++) {
+            for (double value : values) {
+                builder.setLength(0);
+                DoubleFormat.append(builder, value);
+            }
+        }
+
+        long before = allocatedBytes();
+        for (int round = 0; round < 100; round++) {
+            for (double value : values) {
+                builder.setLength(0);
+                DoubleFormat.append(builder, value);
+            }
+        }
+        long allocated = allocatedBytes() - before;
+
+        // Way less than a byte per call, the rest is the measurement itself
+        assertTrue("Allocated " + allocated + " bytes", allocated < 4096);
+    }
+
+    @Test
+    public void encodeAllocatesOnlyTheResult() {
+        assumeAllocationCounting();
+
+        PositionCodec codec = new PositionCodec();
+        Random random = new Random(12);
+        int count = 1000;
+        for (PositionEncoding encoding : PositionEncoding.values()) {
+            codec.setEncoding(encoding);
+            for (int i = 0; i < count * 20; i++) {
+                codec.encode(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            }
+
+            long before = allocatedBytes();
+            long length = 0;
+            for (int i = 0; i < count; i++) {
+                length += codec.encode(52.5 + i * 1e-7, 13.4 - i * 1e-7).length();
+            }
+            long allocated = allocatedBytes() - before;
+
+            // The returned string's header and char or byte array, nothing else
+            long budget = count * 64 + 2 * length + 1024;
+            assertTrue(encoding + " allocated " + allocated + " bytes, budget " + budget,
+                    allocated < budget);
+        }
+    }
+}
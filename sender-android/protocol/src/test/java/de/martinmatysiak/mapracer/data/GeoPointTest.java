@@ -0,0 +1,39 @@
+package de.martinmatysiak.mapracer.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+public class GeoPointTest {
+
+    @Test
+    public void equalsAndHashCode() {
+        GeoPoint a = new GeoPoint(52.5163, 13.3777);
+        GeoPoint b = new GeoPoint(52.5163, 13.3777);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+
+        assertNotEquals(a, new GeoPoint(13.3777, 52.5163));
+        assertNotEquals(a, new GeoPoint(52.5163, 13.3778));
+        assertFalse(a.equals(null));
+        assertFalse(a.equals("GeoPoint(52.5163,13.3777)"));
+    }
+
+    @Test
+    public void wireFormat() {
+        PositionMessage message = new PositionMessage.Builder()
+                .withLocation(new GeoPoint(-33.856784, 151.215297))
+                .build();
+        assertEquals("{\"location\":{\"lat\":-33.856784,\"lng\":151.215297},\"type\":\"position\"}",
+                message.toJson());
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() {
+        PositionMessage message = (PositionMessage) Message.fromJson(
+                "{\"type\":\"position\",\"location\":{\"alt\":3,\"lng\":2.5,\"lat\":-1}}");
+        assertEquals(new GeoPoint(-1, 2.5), message.location);
+    }
+}
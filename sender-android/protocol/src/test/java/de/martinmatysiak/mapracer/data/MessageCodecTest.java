@@ -0,0 +1,253 @@
+package de.martinmatysiak.mapracer.data;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the generated codecs against the implementation they replaced: Gson reflecting over the
+ * message classes, configured like {@link Message#getConfiguredGson()}. The output has to be the
+ * very same bytes, so that the receiver can't tell the difference.
+ */
+public class MessageCodecTest {
+
+    // Characters that are escaped in one way or another
+    private static final String[] STRINGS = {
+            "", "plain", "\u00c4\u00f6\u00fc \u00df \u2028", "<b>&amp;</b> 'single' = \"double\"",
+            "back\\slash /slash", "\t\n\r\b\f\u0000\u001f\u007f", "\u2028\u2029",
+            "\ud83c\udfc1 flag", "urn:x-cast:de.martinmatysiak.mapracer"
+    };
+
+    private static final double[] DOUBLES = {
+            0, -0.0, 1, -1, 12.5, 0.1, 1e-7, 1.0E-5, 123456789.123, 1e21, -1e-300,
+            Double.MIN_VALUE, Double.MAX_VALUE, 52.5163, -122.083961, -1.0 / 83045
+    };
+
+    private static final long[] LONGS = {
+            0, 1, -1, 1408900000000L, Integer.MAX_VALUE + 1L, Long.MAX_VALUE, Long.MIN_VALUE
+    };
+
+    private static final Gson GSON = Message.getConfiguredGson();
+
+    private static byte[] utf8(String json) {
+        try {
+            return json.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    /**
+     * @return The JSON that Gson produces by reflecting over the concrete message class.
+     */
+    private static String reflective(Message message) {
+        return GSON.toJson(message, message.getClass());
+    }
+
+    private static void assertSameBytes(Message message) {
+        String expected = reflective(message);
+        assertArrayEquals(expected, utf8(expected), utf8(message.toJson()));
+    }
+
+    private static GameScoresMessage.PlayerInfo player(int i) {
+        GameScoresMessage.PlayerInfo info = new GameScoresMessage.PlayerInfo();
+        info.id = "id-" + i;
+        info.name = STRINGS[i % STRINGS.length];
+        info.score = DOUBLES[i % DOUBLES.length];
+        info.time = LONGS[i % LONGS.length];
+        return info;
+    }
+
+    private static List<Message> fixtures() {
+        List<Message> messages = new ArrayList<Message>();
+
+        GameScoresMessage scores = new GameScoresMessage();
+        scores.scores = new ArrayList<GameScoresMessage.PlayerInfo>();
+        for (int i = 0; i < DOUBLES.length; i++) {
+            scores.scores.add(player(i));
+        }
+        messages.add(scores);
+        messages.add(new GameScoresMessage());
+
+        GameScoresDeltaMessage delta = new GameScoresDeltaMessage();
+        delta.changes = new ArrayList<GameScoresDeltaMessage.Change>();
+        for (int i = 0; i < STRINGS.length; i++) {
+            GameScoresDeltaMessage.Change change = new GameScoresDeltaMessage.Change();
+            change.id = STRINGS[i];
+            change.name = i % 2 == 0 ? null : STRINGS[i];
+            change.score = DOUBLES[i];
+            change.time = LONGS[i % LONGS.length];
+            change.rank = i;
+            delta.changes.add(change);
+        }
+        delta.removed = Arrays.asList(STRINGS);
+        messages.add(delta);
+        GameScoresDeltaMessage emptyDelta = new GameScoresDeltaMessage();
+        emptyDelta.changes = new ArrayList<GameScoresDeltaMessage.Change>();
+        emptyDelta.removed = new ArrayList<String>();
+        messages.add(emptyDelta);
+
+        for (GameState state : GameState.values()) {
+            GameStateMessage message = new GameStateMessage();
+            message.players = state.ordinal() * 1000;
+            message.state = state;
+            message.race = new GameStateMessage.Race();
+            message.race.startLocation = new GeoPoint(52.5163, 13.3777);
+            message.race.startTime = LONGS[state.ordinal() % LONGS.length];
+            message.race.targetLocation = new GeoPoint(-33.856784, 151.215297);
+            message.race.targetTitle = STRINGS[state.ordinal() % STRINGS.length];
+            messages.add(message);
+        }
+        messages.add(new GameStateMessage());
+
+        for (String string : STRINGS) {
+            messages.add(new LoginMessage.Builder()
+                    .withId(string)
+                    .withName(string)
+                    .withPositionNamespace(string)
+                    .build());
+        }
+        for (PositionEncoding encoding : PositionEncoding.values()) {
+            messages.add(new LoginMessage.Builder()
+                    .withId("id")
+                    .withPositionEncoding(encoding)
+                    .build());
+        }
+        messages.add(new LoginMessage.Builder().build());
+
+        messages.add(new LogoutMessage());
+
+        for (long value : LONGS) {
+            messages.add(new PingMessage.Builder().withId(value).withSentAt(value).build());
+            PongMessage pong = new PongMessage();
+            pong.id = value;
+            pong.sentAt = value;
+            pong.receivedAt = -value;
+            messages.add(pong);
+        }
+
+        for (PlayerState state : PlayerState.values()) {
+            PlayerStateMessage message = new PlayerStateMessage();
+            message.state = state;
+            message.positionEncoding = PositionEncoding.values()[
+                    state.ordinal() % PositionEncoding.values().length];
+            message.positionNamespace = state.ordinal() % 2 == 0 ? null : STRINGS[state.ordinal()];
+            messages.add(message);
+        }
+
+        for (int i = 0; i + 1 < DOUBLES.length; i++) {
+            messages.add(new PositionMessage.Builder()
+                    .withLocation(new GeoPoint(DOUBLES[i], DOUBLES[i + 1]))
+                    .build());
+        }
+
+        for (String string : STRINGS) {
+            messages.add(new RequestMessage.Builder()
+                    .withTarget(string, new GeoPoint(37.420283, -122.083961))
+                    .withStart(new GeoPoint(37.413084, -122.069217))
+                    .withUserLocation(new GeoPoint(0, -0.0))
+                    .build());
+        }
+        messages.add(new RequestMessage.Builder().build());
+
+        return messages;
+    }
+
+    @Test
+    public void fixturesEncodeLikeGson() {
+        for (Message message : fixtures()) {
+            assertSameBytes(message);
+        }
+    }
+
+    @Test
+    public void fixturesCoverEveryType() {
+        List<MessageType> types = new ArrayList<MessageType>();
+        for (Message message : fixtures()) {
+            if (!types.contains(message.type)) {
+                types.add(message.type);
+            }
+        }
+
+        // UNKNOWN is only ever decoded
+        assertEquals(MessageType.values().length - 1, types.size());
+    }
+
+    @Test
+    public void randomScoresEncodeLikeGson() {
+        Random random = new Random(24);
+        for (int round = 0; round < 200; round++) {
+            GameScoresMessage scores = new GameScoresMessage();
+            scores.scores = new ArrayList<GameScoresMessage.PlayerInfo>();
+            GameScoresDeltaMessage delta = new GameScoresDeltaMessage();
+            delta.changes = new ArrayList<GameScoresDeltaMessage.Change>();
+            delta.removed = new ArrayList<String>();
+
+            for (int i = random.nextInt(20); i > 0; i--) {
+                GameScoresMessage.PlayerInfo info = new GameScoresMessage.PlayerInfo();
+                info.id = Long.toHexString(random.nextLong());
+                info.name = randomString(random);
+                info.score = random.nextBoolean() ? random.nextDouble() * 20000
+                        : -1.0 / (1 + random.nextInt(600000));
+                info.time = random.nextInt(600000);
+                scores.scores.add(info);
+
+                GameScoresDeltaMessage.Change change = new GameScoresDeltaMessage.Change();
+                change.id = info.id;
+                change.name = random.nextBoolean() ? info.name : null;
+                change.score = Double.longBitsToDouble(random.nextLong() & ~(0x7ffL << 52)
+                        | ((long) random.nextInt(0x7ff)) << 52);
+                change.time = random.nextLong();
+                change.rank = random.nextInt();
+                delta.changes.add(change);
+                delta.removed.add(info.id);
+            }
+
+            assertSameBytes(scores);
+            assertSameBytes(delta);
+        }
+    }
+
+    private static String randomString(Random random) {
+        char[] chars = new char[random.nextInt(12)];
+        for (int i = 0; i < chars.length; i++) {
+            // Mostly ASCII, including the control characters, but some others as well
+            chars[i] = (char) (random.nextInt(4) == 0 ? random.nextInt(0xd800) : random.nextInt(128));
+        }
+        return new String(chars);
+    }
+
+    @Test
+    public void decodesLikeGson() {
+        // As sent by the receiver: snake case, fields in any order, integral numbers as doubles
+        String[] inbound = {
+                "{\"type\":\"game_scores\",\"scores\":[{\"id\":\"a\",\"name\":\"A (1:23.45)\","
+                        + "\"score\":-0.0000120,\"time\":83045},{\"score\":1234.5,\"id\":\"b\","
+                        + "\"name\":\"<b>\"}]}",
+                "{\"changes\":[{\"id\":\"a\",\"rank\":1,\"score\":12,\"time\":0}],"
+                        + "\"removed\":[\"c\"],\"type\":\"game_scores_delta\"}",
+                "{\"type\":\"game_state\",\"players\":3,\"race\":{\"start_location\":{\"lat\":"
+                        + "52.5163,\"lng\":13.3777},\"target_location\":{\"lat\":-33.856784,"
+                        + "\"lng\":151.215297},\"target_title\":\"\\u00c4 \\\"x\\\"\","
+                        + "\"start_time\":1408900000000},\"state\":\"load\"}",
+                "{\"type\":\"player_state\",\"state\":\"finished\",\"position_encoding\":\"e7\","
+                        + "\"position_namespace\":\"urn:x-cast:p\"}",
+                "{\"type\":\"pong\",\"id\":5,\"sent_at\":123,\"received_at\":1408900000123}"
+        };
+
+        for (String json : inbound) {
+            Message generated = Message.fromJson(json);
+            Message expected = GSON.fromJson(json, generated.getClass());
+            assertEquals(reflective(expected), reflective(generated));
+        }
+    }
+}
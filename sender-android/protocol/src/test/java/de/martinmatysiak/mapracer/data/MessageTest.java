@@ -0,0 +1,236 @@
+package de.martinmatysiak.mapracer.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MessageTest {
+
+    private static final GeoPoint START = new GeoPoint(52.5163, 13.3777);
+    private static final GeoPoint TARGET = new GeoPoint(-33.856784, 151.215297);
+
+    /**
+     * Encodes the message, decodes it again and checks that the result is of the same type and
+     * encodes to the very same JSON.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Message> T roundTrip(T message) {
+        String json = message.toJson();
+        Message decoded = Message.fromJson(json);
+        assertSame(message.getClass(), decoded.getClass());
+        assertEquals(message.type, decoded.type);
+        assertEquals(json, decoded.toJson());
+        return (T) decoded;
+    }
+
+    private static GameScoresMessage.PlayerInfo player(String id, double score, long time) {
+        GameScoresMessage.PlayerInfo info = new GameScoresMessage.PlayerInfo();
+        info.id = id;
+        info.name = "Player " + id;
+        info.score = score;
+        info.time = time;
+        return info;
+    }
+
+    @Test
+    public void gameScores() {
+        GameScoresMessage message = new GameScoresMessage();
+        message.scores = Arrays.asList(player("a", 12.5, 61000),
+                player("b", 0, 0));
+
+        GameScoresMessage decoded = roundTrip(message);
+        assertEquals(2, decoded.scores.size());
+        assertEquals("a", decoded.scores.get(0).id);
+        assertEquals("Player a", decoded.scores.get(0).name);
+        assertEquals(12.5, decoded.scores.get(0).score, 0);
+        assertEquals(61000, decoded.scores.get(0).time);
+        assertEquals(0, decoded.scores.get(1).score, 0);
+
+        // The receiver sends Infinity as null, which has to come back as Infinity
+        GameScoresMessage fromReceiver = (GameScoresMessage) Message.fromJson(
+                "{\"type\":\"game_scores\",\"scores\":[{\"id\":\"b\",\"score\":null}]}");
+        assertEquals(Double.POSITIVE_INFINITY, fromReceiver.scores.get(0).score, 0);
+    }
+
+    @Test
+    public void gameScoresDelta() {
+        GameScoresDeltaMessage.Change change = new GameScoresDeltaMessage.Change();
+        change.id = "c";
+        change.name = "Player c";
+        change.score = 3;
+        change.time = 1234;
+        change.rank = 2;
+
+        GameScoresDeltaMessage message = new GameScoresDeltaMessage();
+        message.changes = Arrays.asList(change);
+        message.removed = Arrays.asList("d", "e");
+
+        GameScoresDeltaMessage decoded = roundTrip(message);
+        assertEquals(1, decoded.changes.size());
+        assertEquals("c", decoded.changes.get(0).id);
+        assertEquals(2, decoded.changes.get(0).rank);
+        assertEquals(1234, decoded.changes.get(0).time);
+        assertEquals(Arrays.asList("d", "e"), decoded.removed);
+    }
+
+    @Test
+    public void gameState() {
+        GameStateMessage message = new GameStateMessage();
+        message.players = 3;
+        message.state = GameState.LOAD;
+        message.race = new GameStateMessage.Race();
+        message.race.startLocation = START;
+        message.race.startTime = 1408900000000L;
+        message.race.targetLocation = TARGET;
+        message.race.targetTitle = "Sydney Opera House";
+
+        GameStateMessage decoded = roundTrip(message);
+        assertEquals(3, decoded.players);
+        assertEquals(GameState.LOAD, decoded.state);
+        assertEquals(START, decoded.race.startLocation);
+        assertEquals(1408900000000L, decoded.race.startTime);
+        assertEquals(TARGET, decoded.race.targetLocation);
+        assertEquals("Sydney Opera House", decoded.race.targetTitle);
+    }
+
+    @Test
+    public void login() {
+        LoginMessage message = new LoginMessage.Builder()
+                .withId("id-1")
+                .withName("\u00c4 \"quoted\" <name>")
+                .withPositionEncoding(PositionEncoding.E7_DELTA)
+                .withPositionNamespace("urn:x-cast:position")
+                .build();
+
+        LoginMessage decoded = roundTrip(message);
+        assertEquals("id-1", decoded.id);
+        assertEquals("\u00c4 \"quoted\" <name>", decoded.name);
+        assertEquals(PositionEncoding.E7_DELTA, decoded.positionEncoding);
+        assertEquals("urn:x-cast:position", decoded.positionNamespace);
+        assertTrue(message.toJson().contains("\"position_encoding\":\"e7_delta\""));
+    }
+
+    @Test
+    public void loginWithoutOptionalFields() {
+        LoginMessage decoded = roundTrip(new LoginMessage.Builder().withId("id-2").build());
+        assertEquals("id-2", decoded.id);
+        assertNull(decoded.name);
+        assertNull(decoded.positionEncoding);
+        assertNull(decoded.positionNamespace);
+    }
+
+    @Test
+    public void logout() {
+        roundTrip(new LogoutMessage.Builder().build());
+        assertEquals("{\"type\":\"logout\"}", new LogoutMessage().toJson());
+    }
+
+    @Test
+    public void ping() {
+        PingMessage decoded = roundTrip(new PingMessage.Builder()
+                .withId(42)
+                .withSentAt(Long.MAX_VALUE)
+                .build());
+        assertEquals(42, decoded.id);
+        assertEquals(Long.MAX_VALUE, decoded.sentAt);
+    }
+
+    @Test
+    public void playerState() {
+        PlayerStateMessage message = new PlayerStateMessage();
+        message.state = PlayerState.FINISHED;
+        message.positionEncoding = PositionEncoding.E7;
+        message.positionNamespace = "urn:x-cast:position";
+
+        PlayerStateMessage decoded = roundTrip(message);
+        assertEquals(PlayerState.FINISHED, decoded.state);
+        assertEquals(PositionEncoding.E7, decoded.positionEncoding);
+        assertEquals("urn:x-cast:position", decoded.positionNamespace);
+    }
+
+    @Test
+    public void pong() {
+        PongMessage message = new PongMessage();
+        message.id = 7;
+        message.sentAt = 123456789L;
+        message.receivedAt = 1408900000123L;
+
+        PongMessage decoded = roundTrip(message);
+        assertEquals(7, decoded.id);
+        assertEquals(123456789L, decoded.sentAt);
+        assertEquals(1408900000123L, decoded.receivedAt);
+    }
+
+    @Test
+    public void position() {
+        PositionMessage decoded = roundTrip(new PositionMessage.Builder()
+                .withLocation(TARGET)
+                .build());
+        assertEquals(TARGET, decoded.location);
+    }
+
+    @Test
+    public void request() {
+        RequestMessage decoded = roundTrip(new RequestMessage.Builder()
+                .withTarget("Brandenburger Tor", START)
+                .withStart(TARGET)
+                .withUserLocation(new GeoPoint(52.5, 13.4))
+                .build());
+        assertEquals("Brandenburger Tor", decoded.targetTitle);
+        assertEquals(START, decoded.targetLocation);
+        assertEquals(TARGET, decoded.startLocation);
+        assertEquals(new GeoPoint(52.5, 13.4), decoded.coarseUserLocation);
+    }
+
+    @Test
+    public void unknownType() {
+        Message decoded = Message.fromJson("{\"type\":\"something_new\",\"foo\":[1,2]}");
+        assertEquals(MessageType.UNKNOWN, decoded.type);
+    }
+
+    @Test
+    public void typeNotFirst() {
+        Message decoded = Message.fromJson("{\"players\":2,\"type\":\"game_state\",\"state\":\"race\"}");
+        assertSame(GameStateMessage.class, decoded.getClass());
+        assertEquals(2, ((GameStateMessage) decoded).players);
+        assertEquals(GameState.RACE, ((GameStateMessage) decoded).state);
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() {
+        Message decoded = Message.fromJson(
+                "{\"type\":\"pong\",\"extra\":{\"a\":[true,null]},\"id\":5}");
+        assertEquals(5, ((PongMessage) decoded).id);
+    }
+
+    @Test
+    public void sameJsonAsGson() {
+        Message[] messages = new Message[]{
+                new LoginMessage.Builder().withId("x").withName("y").build(),
+                new PositionMessage.Builder().withLocation(START).build(),
+                new RequestMessage.Builder().withTarget("t", TARGET).build(),
+                new PingMessage.Builder().withId(1).withSentAt(2).build(),
+                new LogoutMessage()
+        };
+        for (Message message : messages) {
+            assertEquals(Message.getConfiguredGson().toJson(message), message.toJson());
+        }
+    }
+
+    @Test
+    public void everyTypeIsCovered() {
+        // Keep this list in sync with the tests above when adding a message type
+        Set<MessageType> covered = EnumSet.of(MessageType.GAME_SCORES,
+                MessageType.GAME_SCORES_DELTA, MessageType.GAME_STATE, MessageType.LOGIN,
+                MessageType.LOGOUT, MessageType.PING, MessageType.PLAYER_STATE, MessageType.PONG,
+                MessageType.POSITION, MessageType.REQUEST, MessageType.UNKNOWN);
+        assertEquals(EnumSet.allOf(MessageType.class), covered);
+    }
+}
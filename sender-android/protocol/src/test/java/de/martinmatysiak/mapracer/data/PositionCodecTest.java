@@ -0,0 +1,80 @@
+package de.martinmatysiak.mapracer.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PositionCodecTest {
+
+    private PositionCodec mCodec;
+
+    @Before
+    public void setUp() {
+        mCodec = new PositionCodec();
+    }
+
+    @Test
+    public void e7() {
+        mCodec.setEncoding(PositionEncoding.E7);
+        assertEquals("{\"type\":\"position\",\"p\":[525163000,133777000]}",
+                mCodec.encode(52.5163, 13.3777));
+        assertEquals("{\"type\":\"position\",\"p\":[-338567840,1512152970]}",
+                mCodec.encode(-33.856784, 151.215297));
+    }
+
+    @Test
+    public void deltas() {
+        mCodec.setEncoding(PositionEncoding.E7_DELTA);
+        assertEquals("{\"type\":\"position\",\"p\":[10,20]}", mCodec.encode(1e-6, 2e-6));
+        assertEquals("{\"type\":\"position\",\"d\":[5,-30]}", mCodec.encode(1.5e-6, -1e-6));
+        assertEquals("{\"type\":\"position\",\"d\":[0,0]}", mCodec.encode(1.5e-6, -1e-6));
+    }
+
+    @Test
+    public void keyframeInterval() {
+        mCodec.setEncoding(PositionEncoding.E7_DELTA);
+        for (int i = 0; i <= PositionCodec.KEYFRAME_INTERVAL * 2; i++) {
+            String json = mCodec.encode(i * 1e-7, 0);
+            boolean keyframe = i % (PositionCodec.KEYFRAME_INTERVAL + 1) == 0;
+            assertEquals(json, keyframe ? "{\"type\":\"position\",\"p\":[" + i + ",0]}" :
+                    "{\"type\":\"position\",\"d\":[1,0]}", json);
+        }
+    }
+
+    @Test
+    public void forceKeyframe() {
+        mCodec.setEncoding(PositionEncoding.E7_DELTA);
+        mCodec.encode(1e-6, 1e-6);
+        mCodec.encode(2e-6, 2e-6);
+
+        // The previous position got lost, the next one must not be relative to it
+        mCodec.forceKeyframe();
+        assertEquals("{\"type\":\"position\",\"p\":[30,30]}", mCodec.encode(3e-6, 3e-6));
+        assertEquals("{\"type\":\"position\",\"d\":[10,10]}", mCodec.encode(4e-6, 4e-6));
+    }
+
+    @Test
+    public void forceKeyframeWithoutDeltas() {
+        mCodec.setEncoding(PositionEncoding.E7);
+        mCodec.forceKeyframe();
+        assertEquals("{\"type\":\"position\",\"p\":[10,20]}", mCodec.encode(1e-6, 2e-6));
+    }
+
+    @Test
+    public void encodingChangeStartsWithKeyframe() {
+        mCodec.setEncoding(PositionEncoding.E7_DELTA);
+        mCodec.encode(1e-6, 1e-6);
+        mCodec.setEncoding(PositionEncoding.E7_DELTA);
+        assertEquals("{\"type\":\"position\",\"p\":[20,20]}", mCodec.encode(2e-6, 2e-6));
+    }
+
+    @Test
+    public void resetFallsBackToJson() {
+        mCodec.setEncoding(PositionEncoding.E7);
+        mCodec.reset();
+        assertEquals(PositionEncoding.JSON, mCodec.getEncoding());
+        assertEquals(new PositionMessage.Builder().withLocation(new GeoPoint(1.5, -2)).build()
+                .toJson(), mCodec.encode(1.5, -2));
+    }
+}
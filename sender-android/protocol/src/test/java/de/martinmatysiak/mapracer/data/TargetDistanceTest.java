@@ -0,0 +1,68 @@
+package de.martinmatysiak.mapracer.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TargetDistanceTest {
+
+    /** Plain haversine, as computed by google.maps.geometry.spherical on the receiver. */
+    private static double haversine(GeoPoint a, GeoPoint b) {
+        double lat1 = Math.toRadians(a.latitude);
+        double lat2 = Math.toRadians(b.latitude);
+        double dLat = lat2 - lat1;
+        double dLng = Math.toRadians(b.longitude - a.longitude);
+        double h = Math.pow(Math.sin(dLat / 2), 2)
+                + Math.cos(lat1) * Math.cos(lat2) * Math.pow(Math.sin(dLng / 2), 2);
+        return 2 * TargetDistance.EARTH_RADIUS * Math.asin(Math.sqrt(h));
+    }
+
+    @Test
+    public void target() {
+        GeoPoint target = new GeoPoint(1, 2);
+        assertSame(target, new TargetDistance(target).getTarget());
+    }
+
+    @Test
+    public void zeroAtTarget() {
+        GeoPoint target = new GeoPoint(52.5163, 13.3777);
+        assertEquals(0, new TargetDistance(target).from(target), 0);
+    }
+
+    @Test
+    public void farAway() {
+        GeoPoint berlin = new GeoPoint(52.5163, 13.3777);
+        GeoPoint sydney = new GeoPoint(-33.856784, 151.215297);
+        TargetDistance distance = new TargetDistance(sydney);
+        assertEquals(haversine(berlin, sydney), distance.from(berlin), 1e-6);
+        // Antipodal points are half the circumference apart
+        assertEquals(Math.PI * TargetDistance.EARTH_RADIUS,
+                new TargetDistance(new GeoPoint(0, 0)).from(0, 180), 1e-6);
+    }
+
+    @Test
+    public void acrossTheDateLine() {
+        TargetDistance distance = new TargetDistance(new GeoPoint(-16.5, 179.999));
+        GeoPoint position = new GeoPoint(-16.5, -179.999);
+        assertEquals(haversine(distance.getTarget(), position), distance.from(position), 0.01);
+        assertEquals(213.5, distance.from(position), 0.5);
+    }
+
+    @Test
+    public void nearbyApproximation() {
+        // Within race distances the approximation has to stay within a few centimeters
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            GeoPoint target = new GeoPoint(random.nextDouble() * 160 - 80,
+                    random.nextDouble() * 360 - 180);
+            GeoPoint position = new GeoPoint(target.latitude + random.nextGaussian() * 0.05,
+                    target.longitude + random.nextGaussian() * 0.05);
+            double expected = haversine(target, position);
+            assertEquals(position.toString(), expected,
+                    new TargetDistance(target).from(position), 0.05 + expected * 1e-6);
+        }
+    }
+}
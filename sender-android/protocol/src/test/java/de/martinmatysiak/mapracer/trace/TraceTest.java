@@ -0,0 +1,121 @@
+package de.martinmatysiak.mapracer.trace;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import de.martinmatysiak.mapracer.data.GameState;
+import de.martinmatysiak.mapracer.data.PlayerState;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TraceTest {
+
+    private static final long WALL_TIME = 1408900000000L;
+    private static final long START = 5000;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("trace", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    private void assertPosition(TraceReader reader, long time, double lat, double lng)
+            throws IOException {
+        assertTrue(reader.next());
+        assertEquals(Trace.POSITION, reader.getType());
+        assertEquals(time, reader.getTime());
+        assertEquals(lat, reader.getLatitude(), 1e-7);
+        assertEquals(lng, reader.getLongitude(), 1e-7);
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        // A small buffer, so that the writer has to flush in between
+        TraceWriter writer = new TraceWriter(mFile, 32, WALL_TIME, START);
+        writer.writeGameState(START, GameState.LOAD);
+        writer.writePlayerState(START + 10, PlayerState.ACTIVE);
+        for (int i = 0; i < 100; i++) {
+            writer.writePosition(START + 100 + i * 250, 52.5163 + i * 1e-5, -13.3777);
+        }
+        writer.writeGameState(START + 60000, GameState.SCORES);
+        writer.close();
+
+        TraceReader reader = new TraceReader(mFile, 16);
+        assertEquals(WALL_TIME, reader.getStartWallTime());
+        assertTrue(reader.next());
+        assertEquals(Trace.GAME_STATE, reader.getType());
+        assertEquals(0, reader.getTime());
+        assertEquals(GameState.LOAD, reader.getGameState());
+        assertTrue(reader.next());
+        assertEquals(PlayerState.ACTIVE, reader.getPlayerState());
+        assertEquals(10, reader.getTime());
+        for (int i = 0; i < 100; i++) {
+            assertPosition(reader, 100 + i * 250, 52.5163 + i * 1e-5, -13.3777);
+        }
+        assertTrue(reader.next());
+        assertEquals(GameState.SCORES, reader.getGameState());
+        assertEquals(60000, reader.getTime());
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void clockGoingBackwards() throws IOException {
+        TraceWriter writer = new TraceWriter(mFile, 64, WALL_TIME, START);
+        writer.writePosition(START + 100, 1, 1);
+        writer.writePosition(START + 200, 2, 2);
+        // The clock jumps back by 50ms and recovers
+        writer.writePosition(START + 150, 3, 3);
+        writer.writePosition(START + 250, 4, 4);
+        writer.writePosition(START + 300, 5, 5);
+        writer.close();
+
+        // Records never go back in time and the ones after the jump keep their times
+        TraceReader reader = new TraceReader(mFile, 64);
+        assertPosition(reader, 100, 1, 1);
+        assertPosition(reader, 200, 2, 2);
+        assertPosition(reader, 200, 3, 3);
+        assertPosition(reader, 250, 4, 4);
+        assertPosition(reader, 300, 5, 5);
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void truncatedRecordIsIgnored() throws IOException {
+        TraceWriter writer = new TraceWriter(mFile, 64, WALL_TIME, START);
+        writer.writePosition(START + 100, 1, 1);
+        writer.close();
+
+        // Half a position record, as if the app was killed while writing
+        FileOutputStream out = new FileOutputStream(mFile, true);
+        out.write(new byte[]{Trace.POSITION, 0, 0, 0, 1, 0});
+        out.close();
+
+        TraceReader reader = new TraceReader(mFile, 64);
+        assertPosition(reader, 100, 1, 1);
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void notATrace() throws IOException {
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write("{\"type\":\"position\"}".getBytes("UTF-8"));
+        out.close();
+        new TraceReader(mFile, 64);
+    }
+}
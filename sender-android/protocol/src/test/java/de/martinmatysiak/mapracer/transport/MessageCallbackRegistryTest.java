@@ -0,0 +1,214 @@
+package de.martinmatysiak.mapracer.transport;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.martinmatysiak.mapracer.data.GameStateMessage;
+import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.MessageType;
+import de.martinmatysiak.mapracer.data.PingMessage;
+import de.martinmatysiak.mapracer.data.PlayerStateMessage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MessageCallbackRegistryTest {
+
+    private static final String NAMESPACE = "urn:x-cast:test";
+
+    private MessageCallbackRegistry mRegistry;
+    private final List<String> mCalls = new ArrayList<String>();
+
+    /** Records its calls as "name:type". */
+    private class Recorder implements MessageCallback {
+        final String name;
+
+        Recorder(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void onMessageReceived(String namespace, Message message) {
+            assertEquals(NAMESPACE, namespace);
+            mCalls.add(name + ":" + message.type);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mRegistry = new MessageCallbackRegistry();
+    }
+
+    private void dispatch(Message message) {
+        mRegistry.dispatch(NAMESPACE, message);
+    }
+
+    @Test
+    public void empty() {
+        assertTrue(mRegistry.isEmpty());
+        assertFalse(mRegistry.isWatched(MessageType.GAME_STATE));
+        dispatch(new GameStateMessage());
+        assertTrue(mCalls.isEmpty());
+    }
+
+    @Test
+    public void filtersByType() {
+        mRegistry.add(new Recorder("a"), MessageType.GAME_STATE, MessageType.PLAYER_STATE);
+        mRegistry.add(new Recorder("b"), MessageType.PLAYER_STATE);
+
+        assertTrue(mRegistry.isWatched(MessageType.GAME_STATE));
+        assertTrue(mRegistry.isWatched(MessageType.PLAYER_STATE));
+        assertFalse(mRegistry.isWatched(MessageType.PONG));
+
+        dispatch(new GameStateMessage());
+        dispatch(new PlayerStateMessage());
+        dispatch(new PingMessage());
+        assertEquals("[a:GAME_STATE, a:PLAYER_STATE, b:PLAYER_STATE]", mCalls.toString());
+    }
+
+    @Test
+    public void noTypesMeansAll() {
+        mRegistry.add(new Recorder("a"));
+        for (MessageType type : MessageType.values()) {
+            assertTrue(mRegistry.isWatched(type));
+        }
+
+        dispatch(new PingMessage());
+        assertEquals("[a:PING]", mCalls.toString());
+    }
+
+    @Test
+    public void nullTypeIsUnknown() {
+        mRegistry.add(new Recorder("a"), MessageType.UNKNOWN);
+        assertTrue(mRegistry.isWatched(null));
+        dispatch(new Message(null));
+        assertEquals("[a:null]", mCalls.toString());
+    }
+
+    @Test
+    public void addingTwiceHasNoEffect() {
+        Recorder a = new Recorder("a");
+        mRegistry.add(a, MessageType.GAME_STATE);
+        mRegistry.add(a, MessageType.GAME_STATE, MessageType.PONG);
+        dispatch(new GameStateMessage());
+        assertEquals("[a:GAME_STATE]", mCalls.toString());
+    }
+
+    @Test
+    public void removeFromAllTypes() {
+        Recorder a = new Recorder("a");
+        Recorder b = new Recorder("b");
+        Recorder c = new Recorder("c");
+        mRegistry.add(a, MessageType.GAME_STATE, MessageType.PLAYER_STATE);
+        mRegistry.add(b, MessageType.GAME_STATE);
+        mRegistry.add(c, MessageType.GAME_STATE);
+
+        // From the middle, keeping the order of the others
+        mRegistry.remove(b);
+        dispatch(new GameStateMessage());
+        assertEquals("[a:GAME_STATE, c:GAME_STATE]", mCalls.toString());
+
+        mRegistry.remove(a);
+        mRegistry.remove(a);
+        assertFalse(mRegistry.isWatched(MessageType.PLAYER_STATE));
+        mRegistry.remove(c);
+        assertTrue(mRegistry.isEmpty());
+    }
+
+    @Test
+    public void removeWhileDispatching() {
+        final Recorder b = new Recorder("b");
+        MessageCallback a = new MessageCallback() {
+            @Override
+            public void onMessageReceived(String namespace, Message message) {
+                mCalls.add("a:" + message.type);
+                mRegistry.remove(this);
+                mRegistry.remove(b);
+            }
+        };
+        mRegistry.add(a, MessageType.GAME_STATE);
+        mRegistry.add(b, MessageType.GAME_STATE);
+
+        // The dispatch that is under way still reaches b, the next one nobody
+        dispatch(new GameStateMessage());
+        assertEquals("[a:GAME_STATE, b:GAME_STATE]", mCalls.toString());
+        dispatch(new GameStateMessage());
+        assertEquals(2, mCalls.size());
+        assertTrue(mRegistry.isEmpty());
+    }
+
+    @Test
+    public void addWhileDispatching() {
+        final Recorder b = new Recorder("b");
+        mRegistry.add(new MessageCallback() {
+            @Override
+            public void onMessageReceived(String namespace, Message message) {
+                mCalls.add("a:" + message.type);
+                mRegistry.add(b, MessageType.GAME_STATE);
+            }
+        }, MessageType.GAME_STATE);
+
+        // b only gets messages dispatched after it has been added
+        dispatch(new GameStateMessage());
+        assertEquals("[a:GAME_STATE]", mCalls.toString());
+        dispatch(new GameStateMessage());
+        assertEquals("[a:GAME_STATE, a:GAME_STATE, b:GAME_STATE]", mCalls.toString());
+    }
+
+    @Test
+    public void concurrentDispatch() throws Exception {
+        final AtomicInteger received = new AtomicInteger();
+        final MessageCallback stable = new MessageCallback() {
+            @Override
+            public void onMessageReceived(String namespace, Message message) {
+                received.incrementAndGet();
+            }
+        };
+        mRegistry.add(stable, MessageType.GAME_STATE);
+
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final CountDownLatch started = new CountDownLatch(1);
+        Thread churn = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    started.countDown();
+                    while (!done.get()) {
+                        MessageCallback callback = new MessageCallback() {
+                            @Override
+                            public void onMessageReceived(String namespace, Message message) {
+                            }
+                        };
+                        mRegistry.add(callback, MessageType.GAME_STATE, MessageType.PONG);
+                        mRegistry.remove(callback);
+                    }
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        });
+        churn.start();
+        started.await();
+
+        int count = 100000;
+        Message message = new GameStateMessage();
+        for (int i = 0; i < count; i++) {
+            mRegistry.dispatch(NAMESPACE, message);
+        }
+        done.set(true);
+        churn.join();
+
+        assertNull(error.get());
+        assertEquals(count, received.get());
+    }
+}
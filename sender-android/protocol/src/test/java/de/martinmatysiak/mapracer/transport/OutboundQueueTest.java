@@ -0,0 +1,255 @@
+package de.martinmatysiak.mapracer.transport;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.martinmatysiak.mapracer.data.GeoPoint;
+import de.martinmatysiak.mapracer.data.LoginMessage;
+import de.martinmatysiak.mapracer.data.Message;
+import de.martinmatysiak.mapracer.data.PingMessage;
+import de.martinmatysiak.mapracer.data.PositionMessage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OutboundQueueTest {
+
+    private static final int CAPACITY = 32;
+    private static final int WINDOW = 4;
+    private static final String NAMESPACE = "urn:x-cast:test";
+
+    private OutboundQueue mQueue;
+
+    @Before
+    public void setUp() {
+        mQueue = new OutboundQueue(CAPACITY, WINDOW);
+    }
+
+    private static PingMessage ping(long id) {
+        return new PingMessage.Builder().withId(id).build();
+    }
+
+    private static PositionMessage position(double latitude) {
+        return new PositionMessage.Builder().withLocation(new GeoPoint(latitude, 0)).build();
+    }
+
+    private static long idOf(OutboundQueue.Entry entry) {
+        return ((PingMessage) entry.message).id;
+    }
+
+    @Test
+    public void lanes() {
+        assertEquals(OutboundQueue.Lane.POSITION, OutboundQueue.laneOf(position(1)));
+        assertEquals(OutboundQueue.Lane.CONTROL, OutboundQueue.laneOf(ping(1)));
+        assertEquals(OutboundQueue.Lane.CONTROL,
+                OutboundQueue.laneOf(new LoginMessage.Builder().build()));
+    }
+
+    @Test
+    public void controlBeforePosition() {
+        mQueue.add(NAMESPACE, position(1));
+        mQueue.add(NAMESPACE, ping(1));
+        mQueue.add(NAMESPACE, ping(2));
+
+        OutboundQueue.Entry entry = mQueue.next();
+        assertEquals(NAMESPACE, entry.namespace);
+        assertEquals(1, idOf(entry));
+        assertEquals(2, idOf(mQueue.next()));
+        assertTrue(mQueue.next().message instanceof PositionMessage);
+        assertNull(mQueue.next());
+        assertTrue(mQueue.isEmpty());
+    }
+
+    @Test
+    public void newestPositionWins() {
+        for (int i = 1; i <= 5; i++) {
+            mQueue.add(NAMESPACE, position(i));
+        }
+
+        assertEquals(1, mQueue.getDepth(OutboundQueue.Lane.POSITION));
+        assertEquals(4, mQueue.getDroppedCount(OutboundQueue.Lane.POSITION));
+        assertEquals(5, ((PositionMessage) mQueue.next().message).location.latitude, 0);
+    }
+
+    @Test
+    public void fullControlLaneDropsOldest() {
+        for (int i = 0; i < CAPACITY + 3; i++) {
+            mQueue.add(NAMESPACE, ping(i));
+        }
+
+        assertEquals(CAPACITY, mQueue.getDepth(OutboundQueue.Lane.CONTROL));
+        assertEquals(CAPACITY, mQueue.getMaxDepth(OutboundQueue.Lane.CONTROL));
+        assertEquals(3, mQueue.getDroppedCount(OutboundQueue.Lane.CONTROL));
+        for (int i = 3; i < CAPACITY + 3; i++) {
+            assertEquals(i, idOf(mQueue.poll(OutboundQueue.Lane.CONTROL)));
+        }
+        assertNull(mQueue.poll(OutboundQueue.Lane.CONTROL));
+    }
+
+    @Test
+    public void addFirstGoesAheadOfWaitingMessages() {
+        mQueue.add(NAMESPACE, ping(1));
+        mQueue.add(NAMESPACE, ping(2));
+        mQueue.addFirst(NAMESPACE, ping(0));
+
+        for (int i = 0; i <= 2; i++) {
+            assertEquals(i, idOf(mQueue.next()));
+        }
+    }
+
+    @Test
+    public void overflowKeepsAddFirst() {
+        // A login in front of a full lane, followed by even more messages
+        for (int i = 1; i < CAPACITY; i++) {
+            mQueue.add(NAMESPACE, ping(i));
+        }
+        mQueue.addFirst(NAMESPACE, ping(0));
+        for (int i = CAPACITY; i < CAPACITY + 3; i++) {
+            mQueue.add(NAMESPACE, ping(i));
+        }
+
+        assertEquals(CAPACITY, mQueue.getDepth(OutboundQueue.Lane.CONTROL));
+        assertEquals(3, mQueue.getDroppedCount(OutboundQueue.Lane.CONTROL));
+        assertEquals(0, idOf(mQueue.poll(OutboundQueue.Lane.CONTROL)));
+        for (int i = 4; i < CAPACITY + 3; i++) {
+            assertEquals(i, idOf(mQueue.poll(OutboundQueue.Lane.CONTROL)));
+        }
+        assertNull(mQueue.poll(OutboundQueue.Lane.CONTROL));
+    }
+
+    @Test
+    public void overflowWithOnlyAddFirst() {
+        for (int i = 0; i < CAPACITY; i++) {
+            mQueue.addFirst(NAMESPACE, ping(i));
+        }
+
+        // Nothing may be dropped for a regular message, so it is dropped itself
+        mQueue.add(NAMESPACE, ping(100));
+        assertEquals(CAPACITY, mQueue.getDepth(OutboundQueue.Lane.CONTROL));
+        assertEquals(1, mQueue.getDroppedCount(OutboundQueue.Lane.CONTROL));
+
+        // Another priority message replaces the oldest one
+        mQueue.addFirst(NAMESPACE, ping(101));
+        assertEquals(2, mQueue.getDroppedCount(OutboundQueue.Lane.CONTROL));
+        assertEquals(101, idOf(mQueue.poll(OutboundQueue.Lane.CONTROL)));
+        for (int i = CAPACITY - 1; i >= 1; i--) {
+            assertEquals(i, idOf(mQueue.poll(OutboundQueue.Lane.CONTROL)));
+        }
+        assertNull(mQueue.poll(OutboundQueue.Lane.CONTROL));
+    }
+
+    @Test
+    public void windowSaturates() {
+        for (int i = 0; i < 10; i++) {
+            mQueue.add(NAMESPACE, ping(i));
+        }
+
+        OutboundQueue.Entry[] inFlight = new OutboundQueue.Entry[WINDOW];
+        for (int i = 0; i < WINDOW; i++) {
+            inFlight[i] = mQueue.next();
+            assertEquals(i, idOf(inFlight[i]));
+        }
+
+        // Full, nothing more goes out until a message completes
+        assertEquals(WINDOW, mQueue.getInFlight());
+        assertNull(mQueue.next());
+        assertEquals(10 - WINDOW, mQueue.getDepth(OutboundQueue.Lane.CONTROL));
+
+        mQueue.complete(inFlight[0]);
+        assertEquals(WINDOW - 1, mQueue.getInFlight());
+        assertEquals(WINDOW, idOf(mQueue.next()));
+        assertNull(mQueue.next());
+        assertEquals(WINDOW, mQueue.getMaxInFlight());
+    }
+
+    @Test
+    public void positionWaitsForFullWindow() {
+        for (int i = 0; i < WINDOW; i++) {
+            mQueue.add(NAMESPACE, ping(i));
+        }
+        mQueue.add(NAMESPACE, position(1));
+
+        OutboundQueue.Entry first = null;
+        for (int i = 0; i < WINDOW; i++) {
+            OutboundQueue.Entry entry = mQueue.next();
+            if (first == null) {
+                first = entry;
+            }
+        }
+        assertNull(mQueue.next());
+        assertEquals(1, mQueue.getDepth(OutboundQueue.Lane.POSITION));
+
+        mQueue.complete(first);
+        assertTrue(mQueue.next().message instanceof PositionMessage);
+    }
+
+    @Test
+    public void onePositionInFlight() {
+        mQueue.add(NAMESPACE, position(1));
+        OutboundQueue.Entry sent = mQueue.next();
+        assertTrue(sent.message instanceof PositionMessage);
+
+        // Newer positions replace each other while the first one is under way...
+        mQueue.add(NAMESPACE, position(2));
+        mQueue.add(NAMESPACE, position(3));
+        assertNull(mQueue.next());
+
+        // ...but control messages still go out
+        mQueue.add(NAMESPACE, ping(1));
+        assertEquals(1, idOf(mQueue.next()));
+        assertNull(mQueue.next());
+
+        mQueue.complete(sent);
+        Message next = mQueue.next().message;
+        assertEquals(3, ((PositionMessage) next).location.latitude, 0);
+    }
+
+    @Test
+    public void resetWindow() {
+        for (int i = 0; i < WINDOW + 1; i++) {
+            mQueue.add(NAMESPACE, ping(i));
+        }
+        mQueue.add(NAMESPACE, position(1));
+        while (mQueue.next() != null) {
+            // Fill the window
+        }
+
+        // The previous session's completions never come
+        mQueue.resetWindow();
+        assertEquals(0, mQueue.getInFlight());
+        assertEquals(WINDOW, idOf(mQueue.next()));
+        assertTrue(mQueue.next().message instanceof PositionMessage);
+    }
+
+    @Test
+    public void completeNeverGoesNegative() {
+        mQueue.add(NAMESPACE, ping(1));
+        OutboundQueue.Entry entry = mQueue.next();
+        mQueue.resetWindow();
+        mQueue.complete(entry);
+        assertEquals(0, mQueue.getInFlight());
+    }
+
+    @Test
+    public void clear() {
+        mQueue.add(NAMESPACE, ping(1));
+        mQueue.add(NAMESPACE, position(1));
+        assertFalse(mQueue.isEmpty());
+
+        mQueue.clear();
+        assertTrue(mQueue.isEmpty());
+        assertNull(mQueue.next());
+    }
+
+    @Test
+    public void waitTimes() {
+        PingMessage ping = ping(1);
+        mQueue.add(NAMESPACE, ping);
+        assertSame(ping, mQueue.next().message);
+        assertEquals(1, mQueue.getWaitTimes(OutboundQueue.Lane.CONTROL).getCount());
+        assertEquals(0, mQueue.getWaitTimes(OutboundQueue.Lane.POSITION).getCount());
+    }
+}
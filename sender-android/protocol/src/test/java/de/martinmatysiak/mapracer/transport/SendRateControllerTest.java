@@ -0,0 +1,113 @@
+package de.martinmatysiak.mapracer.transport;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SendRateControllerTest {
+
+    private static final long MIN = 250;
+    private static final long MAX = 2000;
+    private static final long STEP = 10;
+    // In milliseconds, whereas send times are in microseconds
+    private static final long TARGET = 200;
+    private static final long TIMELY = 50000;
+    private static final long LATE = 300000;
+
+    private SendRateController mController;
+
+    @Before
+    public void setUp() {
+        mController = new SendRateController(MIN, MAX, STEP, TARGET);
+    }
+
+    @Test
+    public void startsAtMinimum() {
+        assertEquals(MIN, mController.getInterval());
+        mController.onSendComplete(0, TIMELY, true);
+        assertEquals(MIN, mController.getInterval());
+    }
+
+    @Test
+    public void lateSendDoublesInterval() {
+        mController.onSendComplete(0, LATE, true);
+        assertEquals(2 * MIN, mController.getInterval());
+        assertEquals(1, mController.getLateCount());
+        assertEquals(0, mController.getFailedCount());
+    }
+
+    @Test
+    public void failedSendDoublesInterval() {
+        mController.onSendComplete(0, TIMELY, false);
+        assertEquals(2 * MIN, mController.getInterval());
+        assertEquals(0, mController.getLateCount());
+        assertEquals(1, mController.getFailedCount());
+    }
+
+    @Test
+    public void targetLatencyIsInclusive() {
+        mController.onSendComplete(0, TARGET * 1000, true);
+        assertEquals(MIN, mController.getInterval());
+        mController.onSendComplete(0, TARGET * 1000 + 1, true);
+        assertEquals(2 * MIN, mController.getInterval());
+    }
+
+    @Test
+    public void doublesOncePerRoundTrip() {
+        // All of them were under way when the first one came back late
+        mController.onSendComplete(0, LATE, true);
+        mController.onSendComplete(10, LATE + 10, true);
+        mController.onSendComplete(20, LATE + 20, false);
+        assertEquals(2 * MIN, mController.getInterval());
+        assertEquals(2, mController.getLateCount());
+        assertEquals(1, mController.getFailedCount());
+
+        // Sent after the increase, so it counts again
+        mController.onSendComplete(LATE + 30, 2 * LATE, true);
+        assertEquals(4 * MIN, mController.getInterval());
+    }
+
+    @Test
+    public void increaseIsCapped() {
+        long time = 0;
+        for (int i = 0; i < 10; i++) {
+            mController.onSendComplete(time, time + LATE, true);
+            time += LATE + 1;
+        }
+        assertEquals(MAX, mController.getInterval());
+    }
+
+    @Test
+    public void timelySendsDecreaseInSteps() {
+        mController.onSendComplete(0, LATE, true);
+        mController.onSendComplete(LATE + 1, 2 * LATE, true);
+        assertEquals(4 * MIN, mController.getInterval());
+
+        long time = 2 * LATE;
+        for (int i = 1; i <= 5; i++) {
+            mController.onSendComplete(time, time + TIMELY, true);
+            time += TIMELY;
+            assertEquals(4 * MIN - i * STEP, mController.getInterval());
+        }
+
+        // Never below the minimum
+        for (int i = 0; i < 1000; i++) {
+            mController.onSendComplete(time, time + TIMELY, true);
+            time += TIMELY;
+        }
+        assertEquals(MIN, mController.getInterval());
+    }
+
+    @Test
+    public void reset() {
+        mController.onSendComplete(0, LATE, true);
+        mController.reset();
+        assertEquals(MIN, mController.getInterval());
+
+        // Sends of the previous session count again right away
+        mController.onSendComplete(0, LATE, true);
+        assertEquals(2 * MIN, mController.getInterval());
+        assertEquals(2, mController.getLateCount());
+    }
+}
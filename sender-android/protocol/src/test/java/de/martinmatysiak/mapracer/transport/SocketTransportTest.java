@@ -0,0 +1,204 @@
+package de.martinmatysiak.mapracer.transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs a SocketTransport against a plain server socket on the loopback interface.
+ */
+public class SocketTransportTest {
+
+    private static final long TIMEOUT = 5;
+    private static final String NAMESPACE = "urn:x-cast:test";
+
+    private ServerSocket mServer;
+    private SocketTransport mTransport;
+    private final Listener mListener = new Listener();
+
+    private static class Listener implements TransportListener {
+        final CountDownLatch connected = new CountDownLatch(1);
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+
+        @Override
+        public void onTransportConnected(boolean resumed) {
+            connected.countDown();
+        }
+
+        @Override
+        public void onTransportSuspended() {
+        }
+
+        @Override
+        public void onTransportDisconnected(boolean sessionEnded) {
+            disconnected.countDown();
+        }
+
+        @Override
+        public void onTransportMessage(String namespace, String message) {
+            messages.add(namespace + SocketTransport.SEPARATOR + message);
+        }
+    }
+
+    /** Counts the outcomes of sends. */
+    private static class Outcomes implements SendCallback {
+        final AtomicInteger succeeded = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final CountDownLatch done;
+
+        Outcomes(int count) {
+            done = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onSendComplete(boolean success) {
+            (success ? succeeded : failed).incrementAndGet();
+            done.countDown();
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        mServer.setSoTimeout((int) TimeUnit.SECONDS.toMillis(TIMEOUT));
+        mTransport = new SocketTransport(InetAddress.getLoopbackAddress().getHostAddress(),
+                mServer.getLocalPort());
+        mTransport.setListener(mListener);
+        mTransport.subscribe(NAMESPACE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mTransport.disconnect(true);
+        mServer.close();
+    }
+
+    private Socket connect() throws Exception {
+        mTransport.connect();
+        Socket client = mServer.accept();
+        assertTrue(mListener.connected.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(mTransport.isConnected());
+        return client;
+    }
+
+    @Test
+    public void sendsLines() throws Exception {
+        Socket client = connect();
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(client.getInputStream(), "UTF-8"));
+
+        Outcomes outcomes = new Outcomes(3);
+        mTransport.send(NAMESPACE, "{\"a\":1}", outcomes);
+        mTransport.send(NAMESPACE, "{\"b\":\"\\u00e4\"}", outcomes);
+        mTransport.send("other", "{}", outcomes);
+
+        assertEquals(NAMESPACE + "\t{\"a\":1}", in.readLine());
+        assertEquals(NAMESPACE + "\t{\"b\":\"\\u00e4\"}", in.readLine());
+        assertEquals("other\t{}", in.readLine());
+        assertTrue(outcomes.done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(3, outcomes.succeeded.get());
+        client.close();
+    }
+
+    @Test
+    public void receivesSubscribedNamespacesOnly() throws Exception {
+        Socket client = connect();
+        Writer out = new OutputStreamWriter(client.getOutputStream(), "UTF-8");
+        out.write("other\t{\"skip\":true}\n");
+        out.write("no separator\n");
+        out.write(NAMESPACE + "\t{\"type\":\"pong\"}\n");
+        out.flush();
+
+        assertEquals(NAMESPACE + "\t{\"type\":\"pong\"}",
+                mListener.messages.poll(TIMEOUT, TimeUnit.SECONDS));
+        assertNull(mListener.messages.poll(100, TimeUnit.MILLISECONDS));
+        client.close();
+    }
+
+    @Test
+    public void sendWithoutConnectionFails() {
+        Outcomes outcomes = new Outcomes(1);
+        mTransport.send(NAMESPACE, "{}", outcomes);
+        assertEquals(0, outcomes.done.getCount());
+        assertEquals(1, outcomes.failed.get());
+    }
+
+    @Test
+    public void disconnectCompletesEverySend() throws Exception {
+        final Socket client = connect();
+        // Keep reading on the server, so that the writer never blocks
+        Thread drain = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    BufferedReader in = new BufferedReader(
+                            new InputStreamReader(client.getInputStream(), "UTF-8"));
+                    while (in.readLine() != null) {
+                        // Discard
+                    }
+                } catch (IOException ex) {
+                    // Done
+                }
+            }
+        });
+        drain.start();
+
+        // Frames racing with the disconnect end up behind CLOSE, they have to fail instead of
+        // never completing
+        final int count = 20000;
+        final Outcomes outcomes = new Outcomes(count);
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    mTransport.send(NAMESPACE, "{\"i\":" + i + "}", outcomes);
+                }
+            }
+        });
+        sender.start();
+        Thread.sleep(1);
+        mTransport.disconnect(true);
+        sender.join();
+
+        assertTrue("Sends without outcome: " + outcomes.done.getCount(),
+                outcomes.done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(count, outcomes.succeeded.get() + outcomes.failed.get());
+        assertFalse(mTransport.isConnected());
+        drain.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        client.close();
+    }
+
+    @Test
+    public void receiverClosingFailsPendingSends() throws Exception {
+        Socket client = connect();
+        client.close();
+
+        assertTrue(mListener.disconnected.await(TIMEOUT, TimeUnit.SECONDS));
+        assertFalse(mTransport.isConnected());
+
+        Outcomes outcomes = new Outcomes(1);
+        mTransport.send(NAMESPACE, "{}", outcomes);
+        assertTrue(outcomes.done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(1, outcomes.failed.get());
+    }
+}